@@ -0,0 +1,101 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// BenchmarkData Class -- 3D Engine Benchmarks
+
+/*
+This class finds and generates the mesh files used by the
+benchmarks. Synthetic meshes are UV spheres written as .obj
+files, so that loading them exercises the same parser as real
+assets and rendering them covers the screen predictably.
+ */
+
+package raster.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import raster.MeshCache;
+
+public class BenchmarkData {
+
+    /** Returns the path of teapot.obj, which is looked up in the working directory and its parent
+     *  unless the raster.teapot system property names it. */
+    public static String teapotPath() {
+
+        String path = System.getProperty("raster.teapot");
+        if (path != null)
+            return path;
+
+        for (String candidate : new String[] {"teapot.obj", "../teapot.obj"}) {
+
+            if (new File(candidate).isFile())
+                return candidate;
+
+        }
+
+        throw new IllegalStateException("teapot.obj not found; set -Draster.teapot=<path>");
+
+    }
+
+    /** Writes a UV sphere of radius 2 with at least the given number of triangles to a temporary .obj file. */
+    public static File writeSphereObj(int triangles) throws IOException {
+
+        // a sphere with r rings and s segments has 2 * s * (r - 1) triangles;
+        // segments are kept at twice the rings so the quads stay roughly square
+        int rings = Math.max(2, (int)Math.ceil(Math.sqrt(triangles / 4.0)) + 1);
+        int segments = 2 * rings;
+
+        File file = File.createTempFile("sphere-" + triangles + "-", ".obj");
+        file.deleteOnExit();
+        MeshCache.cacheFileFor(file.toPath()).toFile().deleteOnExit();
+
+        // written the same way whatever the JVM's locale and charset, since .obj numbers always use a point
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.US_ASCII)) {
+
+            out.write("# synthetic sphere, " + rings + " rings, " + segments + " segments\n");
+
+            for (int r = 0; r <= rings; r++) {
+
+                double phi = Math.PI * r / rings;
+                for (int s = 0; s < segments; s++) {
+
+                    double theta = 2.0 * Math.PI * s / segments;
+                    out.write(String.format(Locale.ROOT, "v %f %f %f\n",
+                            2.0 * Math.sin(phi) * Math.cos(theta),
+                            2.0 * Math.cos(phi),
+                            2.0 * Math.sin(phi) * Math.sin(theta)));
+
+                }
+
+            }
+
+            // the two polar rings collapse to points, so their quads
+            // become single triangles
+            for (int r = 0; r < rings; r++) {
+
+                for (int s = 0; s < segments; s++) {
+
+                    int a = r * segments + s + 1;
+                    int b = r * segments + (s + 1) % segments + 1;
+                    int c = a + segments;
+                    int d = b + segments;
+
+                    if (r != 0)
+                        out.write("f " + a + " " + b + " " + c + "\n");
+                    if (r != rings - 1)
+                        out.write("f " + b + " " + d + " " + c + "\n");
+
+                }
+
+            }
+
+        }
+
+        return file;
+
+    }
+
+}
@@ -0,0 +1,45 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// BenchmarkRunner Class -- 3D Engine Benchmarks
+
+/*
+This program runs the benchmarks with JMH's usual command line
+options, but always attaches the GC profiler and writes the
+results as JSON. Every result is then reported both in ops/s
+and as an allocation rate, which is what upgrades are gated on.
+
+Usage: java -jar benchmarks/target/benchmarks.jar [JMH options] [benchmark regex]
+ */
+
+package raster.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkRunner {
+
+    /** Runs the benchmarks selected on the command line. */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cmd);
+        builder.addProfiler(GCProfiler.class);
+
+        if (!cmd.getResultFormat().hasValue())
+            builder.resultFormat(ResultFormatType.JSON);
+        if (!cmd.getResult().hasValue())
+            builder.result("benchmark-results.json");
+
+        Options options = builder.build();
+        new Runner(options).run();
+
+    }
+
+}
@@ -0,0 +1,94 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// FrameBenchmark Class -- 3D Engine Benchmarks
+
+/*
+This benchmark renders complete headless frames of the teapot
+turntable at several resolutions, on one thread and on every
+available core.
+ */
+
+package raster.bench;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import raster.Camera;
+import raster.Matrix;
+import raster.Mesh;
+import raster.RenderSettings;
+import raster.Renderer;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "--add-modules=jdk.incubator.vector"})
+public class FrameBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080", "3840x2160"})
+    public String resolution;
+
+    // 0 uses every available core
+    @Param({"1", "0"})
+    public int threads;
+
+    private Renderer renderer;
+    private ArrayList<Mesh> meshes;
+    private Camera camera;
+    private Matrix world, scratch;
+    private int frame;
+
+    @Setup
+    public void setup() {
+
+        RenderSettings settings = new RenderSettings();
+        String[] size = resolution.split("x");
+        settings.width  = Integer.parseInt(size[0]);
+        settings.height = Integer.parseInt(size[1]);
+        settings.threads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+
+        Mesh teapot = new Mesh();
+        teapot.loadFromFile(BenchmarkData.teapotPath());
+        meshes = new ArrayList<Mesh>();
+        meshes.add(teapot);
+
+        renderer = new Renderer(settings);
+        camera = new Camera();
+        world = new Matrix();
+        scratch = new Matrix();
+        frame = 0;
+
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        renderer.shutdown();
+
+    }
+
+    @Benchmark
+    public BufferedImage renderFrame() {
+
+        // advance the animation so that every frame sees a different pose
+        frame++;
+        Renderer.makeTurntable(frame / 60.0, world, scratch);
+        return renderer.render(meshes, camera, world);
+
+    }
+
+}
@@ -0,0 +1,108 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// MathBenchmark Class -- 3D Engine Benchmarks
+
+/*
+This benchmark measures the Matrix kernels used every frame, in
+both their allocating and destination-passing forms, and the
+batch vertex transform over struct-of-arrays positions.
+ */
+
+package raster.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import raster.Matrix;
+import raster.Vector;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class MathBenchmark {
+
+    private static final int POINTS = 10000;
+
+    private Matrix a, b, dest;
+    private Vector v, out;
+    private float[] xs, ys, zs;
+    private double[] outX, outY, outZ, outW;
+
+    @Setup
+    public void setup() {
+
+        a = Matrix.multiply(Matrix.makeRotationX(0.3), Matrix.makeRotationZ(1.1));
+        b = Matrix.makeProjection(90.0, 0.75, 0.1, 10000.0);
+        dest = new Matrix();
+        v = new Vector(1.5, -2.0, 6.0);
+        out = new Vector();
+
+        Random random = new Random(42);
+        xs = new float[POINTS];
+        ys = new float[POINTS];
+        zs = new float[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+
+            xs[i] = random.nextFloat() * 4 - 2;
+            ys[i] = random.nextFloat() * 4 - 2;
+            zs[i] = random.nextFloat() * 4 - 2;
+
+        }
+
+        outX = new double[POINTS];
+        outY = new double[POINTS];
+        outZ = new double[POINTS];
+        outW = new double[POINTS];
+
+    }
+
+    @Benchmark
+    public Matrix multiply() {
+
+        return Matrix.multiply(a, b);
+
+    }
+
+    @Benchmark
+    public Matrix multiplyInto() {
+
+        return Matrix.multiply(a, b, dest);
+
+    }
+
+    @Benchmark
+    public Vector multiplyVector() {
+
+        return Matrix.multiplyVector(b, v);
+
+    }
+
+    @Benchmark
+    public Vector multiplyVectorInto() {
+
+        return Matrix.multiplyVector(b, v, out);
+
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double[] projectPoints() {
+
+        Matrix.projectPoints(b, xs, ys, zs, 0, POINTS, outX, outY, outZ, outW);
+        return outW;
+
+    }
+
+}
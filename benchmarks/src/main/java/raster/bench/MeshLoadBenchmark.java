@@ -0,0 +1,70 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// MeshLoadBenchmark Class -- 3D Engine Benchmarks
+
+/*
+This benchmark measures Mesh.loadFromFile on teapot.obj and on
+synthetic spheres of increasing size, both parsing the .obj text
+and loading from a warm MeshCache file.
+ */
+
+package raster.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import raster.Mesh;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class MeshLoadBenchmark {
+
+    // "teapot" or a triangle count for a synthetic sphere
+    @Param({"teapot", "100000", "1000000"})
+    public String source;
+
+    // whether to load from the binary cache instead of parsing
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private String path;
+
+    @Setup
+    public void setup() throws IOException {
+
+        if (source.equals("teapot"))
+            path = BenchmarkData.teapotPath();
+        else
+            path = BenchmarkData.writeSphereObj(Integer.parseInt(source)).getPath();
+
+        // the first cached load writes the cache file, so every measured load is a warm one
+        if (cached)
+            new Mesh().loadFromFile(path, true);
+
+    }
+
+    @Benchmark
+    public Mesh loadFromFile() {
+
+        Mesh mesh = new Mesh();
+        mesh.loadFromFile(path, cached);
+        return mesh;
+
+    }
+
+}
@@ -0,0 +1,105 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// ShadingBenchmark Class -- 3D Engine Benchmarks
+
+/*
+This benchmark measures the per-triangle lighting function,
+both computed directly and looked up in a ShadeTable ramp, and
+the back-to-front triangle sort used by painter mode.
+ */
+
+package raster.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import raster.DepthSorter;
+import raster.GeometryStage;
+import raster.ShadeTable;
+import raster.TriangleBuffer;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ShadingBenchmark {
+
+    private static final int DOTS = 1024;
+
+    @Param({"10000", "100000"})
+    public int triangles;
+
+    private double[] dots;
+    private int[] ramp;
+    private TriangleBuffer source, work;
+    private DepthSorter sorter;
+
+    @Setup
+    public void setup() {
+
+        Random random = new Random(42);
+        dots = new double[DOTS];
+        for (int i = 0; i < DOTS; i++)
+            dots[i] = random.nextDouble();
+
+        ramp = new ShadeTable(2.0, 1, 0.0).ramp(0xFFFFFF);
+
+        // random screen-space triangles, as painter mode would receive them
+        source = new TriangleBuffer(triangles);
+        for (int t = 0; t < triangles; t++) {
+
+            source.add(random.nextFloat() * 800, random.nextFloat() * 600, random.nextFloat(),
+                       random.nextFloat() * 800, random.nextFloat() * 600, random.nextFloat(),
+                       random.nextFloat() * 800, random.nextFloat() * 600, random.nextFloat(),
+                       random.nextInt(0x1000000));
+
+        }
+
+        work = new TriangleBuffer(triangles);
+        sorter = new DepthSorter();
+
+    }
+
+    /** Lights a batch of DOTS triangles; divide ops/s by DOTS for the per-call rate. */
+    @Benchmark
+    public void lightScale(Blackhole bh) {
+
+        for (int i = 0; i < DOTS; i++)
+            bh.consume(GeometryStage.lightScale(0xFFFFFF, dots[i], 2.0, 1, 0.0));
+
+    }
+
+    /** Lights the same batch by ramp lookup, as the GeometryStage does. */
+    @Benchmark
+    public void shadeLookup(Blackhole bh) {
+
+        for (int i = 0; i < DOTS; i++)
+            bh.consume(ShadeTable.shade(ramp, dots[i]));
+
+    }
+
+    /** Copies the unsorted triangles and sorts them back-to-front. */
+    @Benchmark
+    public TriangleBuffer sortBackToFront() {
+
+        work.clear();
+        work.addAll(source);
+        sorter.sortBackToFront(work);
+        return work;
+
+    }
+
+}
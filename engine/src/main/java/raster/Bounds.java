@@ -0,0 +1,99 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// Bounds Class -- 3D Engine
+
+/*
+This class holds the bounding volumes of a set of points: an
+axis-aligned box and a sphere around it. Both are cheap to
+test against the view frustum, so whole objects that cannot
+be seen are skipped before any of their triangles are touched.
+ */
+
+package raster;
+
+public class Bounds {
+
+    // axis-aligned bounding box
+    public float minX, minY, minZ, maxX, maxY, maxZ;
+
+    // bounding sphere
+    public float centerX, centerY, centerZ, radius;
+
+    /** Default constructor. The bounds are empty until set. */
+    public Bounds() {
+
+        setEmpty();
+
+    }
+
+    /** Makes these bounds contain nothing. An empty box has min greater than max and a negative radius. */
+    public void setEmpty() {
+
+        minX = minY = minZ = Float.POSITIVE_INFINITY;
+        maxX = maxY = maxZ = Float.NEGATIVE_INFINITY;
+        centerX = centerY = centerZ = 0;
+        radius = -1;
+
+    }
+
+    /** Copies another set of bounds. */
+    public void set(Bounds other) {
+
+        minX = other.minX;
+        minY = other.minY;
+        minZ = other.minZ;
+        maxX = other.maxX;
+        maxY = other.maxY;
+        maxZ = other.maxZ;
+        centerX = other.centerX;
+        centerY = other.centerY;
+        centerZ = other.centerZ;
+        radius = other.radius;
+
+    }
+
+    /** Returns true if the bounds contain no points. */
+    public boolean isEmpty() {
+
+        return radius < 0;
+
+    }
+
+    /** Fits the box and sphere around the first n points of the coordinate arrays.
+     *  The sphere is centered on the box, which is quick to find and close to the smallest sphere
+     *  for the roughly convex shapes meshes usually have. */
+    public void fit(float[] xs, float[] ys, float[] zs, int n) {
+
+        setEmpty();
+        if (n == 0)
+            return;
+
+        for (int i = 0; i < n; i++) {
+
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            minZ = Math.min(minZ, zs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+            maxZ = Math.max(maxZ, zs[i]);
+
+        }
+
+        centerX = 0.5f * (minX + maxX);
+        centerY = 0.5f * (minY + maxY);
+        centerZ = 0.5f * (minZ + maxZ);
+
+        double maxDist2 = 0;
+        for (int i = 0; i < n; i++) {
+
+            double dx = xs[i] - centerX, dy = ys[i] - centerY, dz = zs[i] - centerZ;
+            maxDist2 = Math.max(maxDist2, dx * dx + dy * dy + dz * dz);
+
+        }
+
+        // round up so float error never leaves a vertex just outside the sphere
+        radius = Math.nextUp((float)Math.sqrt(maxDist2));
+
+    }
+
+}
@@ -8,6 +8,8 @@ acts as the "player" and provides information to
 the Screen to determine what should be rendered.
  */
 
+package raster;
+
 import javax.swing.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
@@ -18,7 +20,14 @@ public class Camera implements KeyListener {
     double yaw;         // y-axis rotation
 
     Vector vUp = new Vector(0, 1, 0);
-    boolean left, right, forward, back, up, down;
+    Vector step = new Vector();     // scratch space for movement, reused every update
+
+    // scratch space for building the camera matrix, reused every frame
+    private final Vector target = new Vector(), newLook = new Vector();
+    private final Matrix rotY = new Matrix();
+
+    // set by key events on the event dispatch thread and read by update on the simulation thread
+    volatile boolean left, right, forward, back, up, down;
     double gameSpeed;
 
 
@@ -94,16 +103,16 @@ public class Camera implements KeyListener {
     public void update() {
 
         if (up)
-            position = Vector.add(position, Vector.multiply(vUp, 1.0));
+            Vector.add(position, Vector.multiply(vUp, 1.0, step), position);
 
         if (down)
-            position = Vector.subtract(position, Vector.multiply(vUp, 1.0));
+            Vector.subtract(position, Vector.multiply(vUp, 1.0, step), position);
 
         if (forward)
-            position = Vector.subtract(position, Vector.multiply(lookDirection, 1.0));
+            Vector.subtract(position, Vector.multiply(lookDirection, 1.0, step), position);
 
         if (back)
-            position = Vector.add(position, Vector.multiply(lookDirection, 1.0));
+            Vector.add(position, Vector.multiply(lookDirection, 1.0, step), position);
 
         if (left)
             yaw -= 1.0 / gameSpeed;
@@ -113,6 +122,19 @@ public class Camera implements KeyListener {
 
     }
 
+    /** Builds the camera matrix for the current position and stores it in dest, then turns the
+     *  look direction to follow the yaw. The renderer calls this once per frame. Returns dest. */
+    public Matrix makeViewMatrix(Matrix dest) {
+
+        Vector.add(position, lookDirection, target);
+        Matrix.makeRotationY(yaw, rotY);
+        Matrix.multiplyVector(rotY, target, newLook);
+        newLook.normalize();
+        setLookDirection(newLook);
+        return Matrix.makePointAt(position, target, vUp, dest);
+
+    }
+
     /** Sets the position of the camera to the coordinates of the specified Vector. */
     public void setPosition(Vector newPos) {
 
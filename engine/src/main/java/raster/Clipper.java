@@ -0,0 +1,175 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// Clipper Class -- 3D Engine
+
+/*
+This class clips triangles in homogeneous clip space, before the
+perspective divide, using the Sutherland-Hodgman algorithm.
+Clipping against the near plane keeps w positive, so the divide
+never flips or explodes a vertex that was behind the camera.
+The side planes are not the screen edges but a guard band
+several screens wide: triangles that only poke past the screen
+edges are left whole for the Rasterizer to scissor, and only
+the rare triangle reaching past the band is cut, which bounds
+every screen coordinate the Rasterizer ever sees.
+
+Which planes a vertex is outside of is summarized in an outcode,
+so the common case of a triangle inside every plane costs three
+integer tests. One Clipper holds the scratch polygons for one
+thread; it does not allocate after construction.
+ */
+
+package raster;
+
+public class Clipper {
+
+    // outcode bits for the planes triangles are clipped against
+    public static final int NEAR = 1, FAR = 2;
+    public static final int GUARD_LEFT = 4, GUARD_RIGHT = 8, GUARD_BOTTOM = 16, GUARD_TOP = 32;
+    public static final int CLIP_PLANES = NEAR | FAR | GUARD_LEFT | GUARD_RIGHT | GUARD_BOTTOM | GUARD_TOP;
+
+    // outcode bits for the screen edges, which are only used to reject triangles
+    public static final int VIEW_LEFT = 64, VIEW_RIGHT = 128, VIEW_BOTTOM = 256, VIEW_TOP = 512;
+    public static final int REJECT_PLANES = NEAR | FAR | VIEW_LEFT | VIEW_RIGHT | VIEW_BOTTOM | VIEW_TOP;
+
+    // half-width of the guard band in normalized device coordinates, where the screen spans [-1, 1]
+    public static final double GUARD_BAND = 8.0;
+
+    // a triangle clipped by six planes has at most nine vertices
+    private static final int MAX_VERTICES = 9;
+
+    private double[] x = new double[MAX_VERTICES], y = new double[MAX_VERTICES];
+    private double[] z = new double[MAX_VERTICES], w = new double[MAX_VERTICES];
+    private double[] nextX = new double[MAX_VERTICES], nextY = new double[MAX_VERTICES];
+    private double[] nextZ = new double[MAX_VERTICES], nextW = new double[MAX_VERTICES];
+    private int count;
+
+    /** Returns the outcode of a clip-space point: one bit for every plane it is outside of. */
+    public static int outcode(double x, double y, double z, double w) {
+
+        int code = 0;
+        if (z < 0)                 code |= NEAR;
+        if (z > w)                 code |= FAR;
+        if (x < -GUARD_BAND * w)   code |= GUARD_LEFT;
+        if (x >  GUARD_BAND * w)   code |= GUARD_RIGHT;
+        if (y < -GUARD_BAND * w)   code |= GUARD_BOTTOM;
+        if (y >  GUARD_BAND * w)   code |= GUARD_TOP;
+        if (x < -w)                code |= VIEW_LEFT;
+        if (x >  w)                code |= VIEW_RIGHT;
+        if (y < -w)                code |= VIEW_BOTTOM;
+        if (y >  w)                code |= VIEW_TOP;
+        return code;
+
+    }
+
+    /** Clips the triangle made of clip-space vertices a, b, and c against the planes whose outcode bits
+     *  are set in planes. Returns the number of vertices in the resulting convex polygon, which is zero
+     *  if nothing is left; the vertices are then read with x(i), y(i), z(i), and w(i). */
+    public int clipTriangle(double[] xs, double[] ys, double[] zs, double[] ws, int a, int b, int c, int planes) {
+
+        x[0] = xs[a]; y[0] = ys[a]; z[0] = zs[a]; w[0] = ws[a];
+        x[1] = xs[b]; y[1] = ys[b]; z[1] = zs[b]; w[1] = ws[b];
+        x[2] = xs[c]; y[2] = ys[c]; z[2] = zs[c]; w[2] = ws[c];
+        count = 3;
+
+        for (int plane = NEAR; plane <= GUARD_TOP && count > 0; plane <<= 1) {
+
+            if ((planes & plane) != 0)
+                clipAgainst(plane);
+
+        }
+
+        return count;
+
+    }
+
+    /** Returns the X coordinate of vertex i of the last clipped polygon. */
+    public double x(int i) {
+
+        return x[i];
+
+    }
+
+    /** Returns the Y coordinate of vertex i of the last clipped polygon. */
+    public double y(int i) {
+
+        return y[i];
+
+    }
+
+    /** Returns the Z coordinate of vertex i of the last clipped polygon. */
+    public double z(int i) {
+
+        return z[i];
+
+    }
+
+    /** Returns the W coordinate of vertex i of the last clipped polygon. */
+    public double w(int i) {
+
+        return w[i];
+
+    }
+
+    /** Clips the current polygon against one plane, keeping the part where the plane's distance is positive. */
+    private void clipAgainst(int plane) {
+
+        int n = 0;
+        double prevDist = distance(plane, count - 1);
+        for (int cur = 0, prev = count - 1; cur < count; prev = cur, cur++) {
+
+            double curDist = distance(plane, cur);
+
+            // emit the crossing point whenever the edge from prev to cur changes sides
+            if ((prevDist >= 0) != (curDist >= 0)) {
+
+                double t = prevDist / (prevDist - curDist);
+                nextX[n] = x[prev] + t * (x[cur] - x[prev]);
+                nextY[n] = y[prev] + t * (y[cur] - y[prev]);
+                nextZ[n] = z[prev] + t * (z[cur] - z[prev]);
+                nextW[n] = w[prev] + t * (w[cur] - w[prev]);
+                n++;
+
+            }
+
+            if (curDist >= 0) {
+
+                nextX[n] = x[cur];
+                nextY[n] = y[cur];
+                nextZ[n] = z[cur];
+                nextW[n] = w[cur];
+                n++;
+
+            }
+
+            prevDist = curDist;
+
+        }
+
+        // swap the polygon buffers rather than copying
+        double[] tmp;
+        tmp = x; x = nextX; nextX = tmp;
+        tmp = y; y = nextY; nextY = tmp;
+        tmp = z; z = nextZ; nextZ = tmp;
+        tmp = w; w = nextW; nextW = tmp;
+        count = n;
+
+    }
+
+    /** Returns the signed distance of vertex i from a plane, positive on the inside. */
+    private double distance(int plane, int i) {
+
+        switch (plane) {
+
+            case NEAR:         return z[i];
+            case FAR:          return w[i] - z[i];
+            case GUARD_LEFT:   return GUARD_BAND * w[i] + x[i];
+            case GUARD_RIGHT:  return GUARD_BAND * w[i] - x[i];
+            case GUARD_BOTTOM: return GUARD_BAND * w[i] + y[i];
+            default:           return GUARD_BAND * w[i] - y[i];
+
+        }
+
+    }
+
+}
@@ -0,0 +1,180 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// DepthSorter Class -- 3D Engine
+
+/*
+This class orders screen-space triangles from furthest to
+closest for the painter's algorithm in linear time. Each
+triangle becomes one long key: the bits of its average depth,
+rearranged so that they sort as unsigned integers, in the high
+half, and its index in the low half. The keys are sorted by
+their depth half with an LSD radix sort, eight bits per pass.
+Every pass is stable, so triangles at the same depth keep
+their index order, and reading the keys backwards gives the
+same order as sorting by depth and then reversing the list.
+
+Large buffers are sorted in parallel on a ForkJoinPool: each
+pass counts digits in fixed-size chunks side by side, and every
+chunk then scatters its keys to the offsets its counts reserve.
+Chunks are the same size whatever the pool, so the result does
+not depend on the number of threads. Passes whose digit is the
+same for every key are skipped. The arrays are kept between
+frames, so sorting does not allocate once they are large enough.
+ */
+
+package raster;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+public class DepthSorter {
+
+    private static final int RADIX_BITS = 8;
+    private static final int BUCKETS = 1 << RADIX_BITS;
+    private static final int PASSES = 32 / RADIX_BITS;
+
+    // keys per chunk of a pass; buffers of a single chunk are sorted on the calling thread
+    public static final int CHUNK_SIZE = 16384;
+
+    private ForkJoinPool pool;
+    private long[] keys = new long[0], scratch = new long[0];
+    private int[] order = new int[0];
+    private int[][] chunkCounts = new int[0][];
+
+    /** Sets the pool used to sort large buffers in parallel. A null pool sorts on the calling thread. */
+    public void setPool(ForkJoinPool p) {
+
+        pool = p;
+
+    }
+
+    /** Reorders the triangles in a buffer from furthest to closest by their average Z. */
+    public void sortBackToFront(TriangleBuffer tris) {
+
+        tris.reorder(backToFront(tris));
+
+    }
+
+    /** Returns the indexes of the triangles in a buffer from furthest to closest by their average Z, without
+     *  moving them. Only the first tris.size() entries are used, and the array is reused by the next call. */
+    public int[] backToFront(TriangleBuffer tris) {
+
+        int n = tris.size();
+        ensureCapacity(n);
+
+        float[] coords = tris.coords();
+        for (int t = 0; t < n; t++) {
+
+            int i = 9 * t;
+            keys[t] = (long)sortableBits((coords[i + 2] + coords[i + 5] + coords[i + 8]) / 3.0f) << 32 | t;
+
+        }
+
+        long[] sorted = radixSort(n);
+        for (int i = 0; i < n; i++)
+            order[i] = (int)sorted[n - 1 - i];
+
+        return order;
+
+    }
+
+    /** Sorts the first n keys by their high 32 bits as an unsigned number, stably. Returns the array holding the result. */
+    private long[] radixSort(int n) {
+
+        long[] src = keys, dst = scratch;
+        int chunks = Math.max(1, (n + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        ensureChunks(chunks);
+
+        for (int pass = 0; pass < PASSES; pass++) {
+
+            int shift = 32 + pass * RADIX_BITS;
+            long[] from = src, to = dst;
+
+            // count the digits of every chunk
+            Parallel.forEach(pool, chunks, chunk -> {
+
+                int[] counts = chunkCounts[chunk];
+                Arrays.fill(counts, 0);
+                int end = Math.min(n, (chunk + 1) * CHUNK_SIZE);
+                for (int i = chunk * CHUNK_SIZE; i < end; i++)
+                    counts[(int)(from[i] >>> shift) & (BUCKETS - 1)]++;
+
+            });
+
+            // turn the counts into starting offsets, bucket by bucket and chunk by chunk within a bucket,
+            // which keeps the pass stable. A pass that leaves every key in one bucket changes nothing
+            int offset = 0;
+            boolean trivial = false;
+            for (int bucket = 0; bucket < BUCKETS && !trivial; bucket++) {
+
+                int total = 0;
+                for (int chunk = 0; chunk < chunks; chunk++) {
+
+                    int count = chunkCounts[chunk][bucket];
+                    chunkCounts[chunk][bucket] = offset + total;
+                    total += count;
+
+                }
+
+                trivial = total == n;
+                offset += total;
+
+            }
+
+            if (trivial)
+                continue;
+
+            // scatter every chunk's keys to their places
+            Parallel.forEach(pool, chunks, chunk -> {
+
+                int[] offsets = chunkCounts[chunk];
+                int end = Math.min(n, (chunk + 1) * CHUNK_SIZE);
+                for (int i = chunk * CHUNK_SIZE; i < end; i++)
+                    to[offsets[(int)(from[i] >>> shift) & (BUCKETS - 1)]++] = from[i];
+
+            });
+
+            src = to;
+            dst = from;
+
+        }
+
+        return src;
+
+    }
+
+    /** Returns the bits of a float rearranged so that comparing them as unsigned integers orders the floats. */
+    private static int sortableBits(float f) {
+
+        int bits = Float.floatToIntBits(f);
+        return bits ^ ((bits >> 31) | 0x80000000);
+
+    }
+
+    /** Grows the key and order arrays to hold at least n triangles. */
+    private void ensureCapacity(int n) {
+
+        if (keys.length >= n)
+            return;
+
+        keys = new long[n];
+        scratch = new long[n];
+        order = new int[n];
+
+    }
+
+    /** Makes sure there is a count array for each of n chunks. */
+    private void ensureChunks(int n) {
+
+        if (chunkCounts.length >= n)
+            return;
+
+        int[][] grown = new int[n][];
+        for (int i = 0; i < n; i++)
+            grown[i] = i < chunkCounts.length ? chunkCounts[i] : new int[BUCKETS];
+
+        chunkCounts = grown;
+
+    }
+
+}
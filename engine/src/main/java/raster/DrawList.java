@@ -0,0 +1,251 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// DrawList Class -- 3D Engine
+
+/*
+This class records everything that goes into one frame before
+any of it is drawn: the camera, and for every Mesh or instance
+in the scene, the detail level to draw, its color, its transform,
+and the rectangle of pixels it can cover. Comparing the list with
+the last frame's tells the Renderer how much of the frame has to
+be drawn again: nothing at all when every record matches, only
+the old and new rectangles of the objects that changed when the
+camera stayed still, and the whole frame otherwise.
+
+Records are compared in the order they were added, so a scene
+visited in the same order every frame lines up record by record.
+Objects outside the view are still recorded, with an empty
+rectangle, so one moving into view is noticed like any other change.
+ */
+
+package raster;
+
+import java.util.Arrays;
+
+public class DrawList {
+
+    // how a frame compares with the one before it
+    public static final int UNCHANGED = 0, PARTIAL = 1, FULL = 2;
+
+    // record flags
+    private static final byte CULLED = 1, OCCLUDER = 2;
+
+    // the camera: view-projection matrix, eye position, and the settings that change every pixel
+    private final double[] view = new double[16];
+    private double eyeX, eyeY, eyeZ;
+    private int clearColor;
+    private boolean painterMode;
+
+    // one record per Mesh or instance, in the order they were added
+    private Mesh[] meshes = new Mesh[16], levels = new Mesh[16];
+    private InstanceSet[] sets = new InstanceSet[16];
+    private int[] instances = new int[16], colors = new int[16], versions = new int[16];
+    private byte[] flags = new byte[16];
+    private double[] transforms = new double[16 * 16], projections = new double[16 * 16];
+    private int[] rects = new int[16 * 4];
+    private int count, occluderCount;
+
+    /** Removes every record and sets the camera the next records are seen through. */
+    public void begin(Matrix viewProj, Vector eye, int clear, boolean painter) {
+
+        System.arraycopy(viewProj.m, 0, view, 0, 16);
+        eyeX = eye.x;
+        eyeY = eye.y;
+        eyeZ = eye.z;
+        clearColor = clear;
+        painterMode = painter;
+        count = 0;
+        occluderCount = 0;
+
+    }
+
+    /** Records a Mesh, or instance i of a set when set is not null. Level is the detail level to draw,
+     *  meshWorld takes it to world space, and worldViewProj all the way to clip space. Rect holds the
+     *  inclusive pixel bounds it can cover, empty when the minimum is past the maximum. Culled objects
+     *  are outside the view and are not drawn. */
+    public void add(Mesh mesh, Mesh level, InstanceSet set, int i, int rgb, Matrix meshWorld,
+                    Matrix worldViewProj, int[] rect, boolean culled) {
+
+        if (count == meshes.length)
+            grow();
+
+        meshes[count] = mesh;
+        levels[count] = level;
+        sets[count] = set;
+        instances[count] = i;
+        colors[count] = rgb;
+        versions[count] = mesh.version();
+        flags[count] = (byte)((culled ? CULLED : 0) | (set == null && mesh.isOccluder() ? OCCLUDER : 0));
+        System.arraycopy(meshWorld.m, 0, transforms, 16 * count, 16);
+        System.arraycopy(worldViewProj.m, 0, projections, 16 * count, 16);
+        System.arraycopy(rect, 0, rects, 4 * count, 4);
+        count++;
+
+    }
+
+    /** Marks every record added so far as an occluder, to be drawn and rasterized into the occlusion
+     *  buffer before the rest. */
+    public void endOccluders() {
+
+        occluderCount = count;
+
+    }
+
+    /** Returns the number of records. */
+    public int size() {
+
+        return count;
+
+    }
+
+    /** Returns the number of records at the start of the list that are occluders. */
+    public int occluderCount() {
+
+        return occluderCount;
+
+    }
+
+    /** Returns the Mesh of record i, which for an instance is the set's shared Mesh. */
+    public Mesh mesh(int i) {
+
+        return meshes[i];
+
+    }
+
+    /** Returns the detail level to draw for record i. */
+    public Mesh level(int i) {
+
+        return levels[i];
+
+    }
+
+    /** Returns the packed RGB color of record i. */
+    public int color(int i) {
+
+        return colors[i];
+
+    }
+
+    /** Returns whether record i is outside the view. */
+    public boolean isCulled(int i) {
+
+        return (flags[i] & CULLED) != 0;
+
+    }
+
+    /** Returns whether record i is an occluder. */
+    public boolean isOccluder(int i) {
+
+        return (flags[i] & OCCLUDER) != 0;
+
+    }
+
+    /** Overwrites dest with the object-to-world transform of record i. Returns dest. */
+    public Matrix transform(int i, Matrix dest) {
+
+        System.arraycopy(transforms, 16 * i, dest.m, 0, 16);
+        return dest;
+
+    }
+
+    /** Overwrites dest with the object-to-clip-space transform of record i. Returns dest. */
+    public Matrix projection(int i, Matrix dest) {
+
+        System.arraycopy(projections, 16 * i, dest.m, 0, 16);
+        return dest;
+
+    }
+
+    /** Returns whether the pixels record i can cover overlap an inclusive rectangle. */
+    public boolean overlaps(int i, int[] rect) {
+
+        int r = 4 * i;
+        return rects[r] <= rects[r + 2] && rects[r] <= rect[2] && rects[r + 2] >= rect[0]
+                                        && rects[r + 1] <= rect[3] && rects[r + 3] >= rect[1];
+
+    }
+
+    /** Compares this frame's records with the last frame's. Returns UNCHANGED if every pixel would come out
+     *  the same, PARTIAL if only those in the rectangle stored in dirty can differ, or FULL if the camera
+     *  changed or the records no longer line up, in which case dirty is left alone. */
+    public int compare(DrawList last, int[] dirty) {
+
+        if (!Arrays.equals(view, last.view) || eyeX != last.eyeX || eyeY != last.eyeY || eyeZ != last.eyeZ
+                || clearColor != last.clearColor || painterMode != last.painterMode
+                || count != last.count || occluderCount != last.occluderCount)
+            return FULL;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+
+            if (meshes[i] != last.meshes[i] || sets[i] != last.sets[i] || instances[i] != last.instances[i])
+                return FULL;
+
+            if (sameRecord(i, last))
+                continue;
+
+            // a changed object may leave pixels where it was and cover pixels where it is now
+            int r = 4 * i;
+            if (rects[r] <= rects[r + 2]) {
+
+                minX = Math.min(minX, rects[r]);
+                minY = Math.min(minY, rects[r + 1]);
+                maxX = Math.max(maxX, rects[r + 2]);
+                maxY = Math.max(maxY, rects[r + 3]);
+
+            }
+
+            if (last.rects[r] <= last.rects[r + 2]) {
+
+                minX = Math.min(minX, last.rects[r]);
+                minY = Math.min(minY, last.rects[r + 1]);
+                maxX = Math.max(maxX, last.rects[r + 2]);
+                maxY = Math.max(maxY, last.rects[r + 3]);
+
+            }
+
+        }
+
+        // objects that changed entirely off screen leave every pixel as it was
+        if (minX > maxX)
+            return UNCHANGED;
+
+        dirty[0] = minX;
+        dirty[1] = minY;
+        dirty[2] = maxX;
+        dirty[3] = maxY;
+        return PARTIAL;
+
+    }
+
+    /** Returns whether record i draws exactly what the same record of another list did. */
+    private boolean sameRecord(int i, DrawList last) {
+
+        if (levels[i] != last.levels[i] || colors[i] != last.colors[i] || versions[i] != last.versions[i]
+                || flags[i] != last.flags[i])
+            return false;
+
+        return Arrays.equals(transforms, 16 * i, 16 * i + 16, last.transforms, 16 * i, 16 * i + 16)
+            && Arrays.equals(projections, 16 * i, 16 * i + 16, last.projections, 16 * i, 16 * i + 16);
+
+    }
+
+    /** Doubles the room for records. */
+    private void grow() {
+
+        int n = meshes.length * 2;
+        meshes = Arrays.copyOf(meshes, n);
+        levels = Arrays.copyOf(levels, n);
+        sets = Arrays.copyOf(sets, n);
+        instances = Arrays.copyOf(instances, n);
+        colors = Arrays.copyOf(colors, n);
+        versions = Arrays.copyOf(versions, n);
+        flags = Arrays.copyOf(flags, n);
+        transforms = Arrays.copyOf(transforms, n * 16);
+        projections = Arrays.copyOf(projections, n * 16);
+        rects = Arrays.copyOf(rects, n * 4);
+
+    }
+
+}
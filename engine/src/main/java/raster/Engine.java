@@ -0,0 +1,179 @@
+// Adam Rilatt
+// 05 / 17 / 20
+// Main Engine Class -- 3D Engine
+
+/*
+This program follows a javidx9 tutorial in order to implement a
+simple 3-dimensional rasterization engine.
+ */
+
+package raster;
+
+import java.awt.Color;
+import java.awt.Container;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import javax.management.JMException;
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+public class Engine extends JFrame implements Runnable {
+
+    // settings variables
+    private final double GAME_SPEED = 60.0;
+    private final int SCREEN_WIDTH  = 800;
+    private final int SCREEN_HEIGHT = 600;
+    private final double FOV = 90.0;
+    private final double FAR_PLANE  = 10000.0;
+    private final double NEAR_PLANE = 0.1;
+    private final int RENDER_THREADS = Runtime.getRuntime().availableProcessors();
+    private final int RENDER_PACING = RenderSettings.VSYNC;
+    private final double MAX_FPS = 144.0;
+    private final boolean SUBPIXEL = true;
+
+    // normal initializer variables -- do not touch, user!
+    private final GameLoop gameLoop = new GameLoop(GAME_SPEED, this);
+    private RenderLoop renderLoop;
+    private Screen screen;
+    private Camera cam;
+    private ArrayList<Mesh> sceneObjects;
+    private SceneBVH sceneIndex;
+    private double time;
+    private final Matrix world = new Matrix(), worldScratch = new Matrix();
+
+    /** Constructor. Initializes everything needed for engine operation. */
+    public Engine() {
+
+        // init JFrame
+        super();
+
+        // init scene data
+        sceneObjects = new ArrayList<Mesh>();
+
+        Mesh defaultCube = new Mesh();
+        defaultCube.loadFromFile("teapot.obj");
+        sceneObjects.add(defaultCube);
+
+        // the spatial index finds visible objects and answers picking queries
+        sceneIndex = new SceneBVH(sceneObjects);
+
+        // camera setup
+        cam = new Camera(new Vector(0, 0, 0),
+                         new Vector(0, 0, 1),
+                         GAME_SPEED);
+        addKeyListener(cam);
+
+        // JFrame setup
+        Container pane = getContentPane();
+        RenderSettings settings = new RenderSettings();
+        settings.width     = SCREEN_WIDTH;
+        settings.height    = SCREEN_HEIGHT;
+        settings.fov       = FOV;
+        settings.farPlane  = FAR_PLANE;
+        settings.nearPlane = NEAR_PLANE;
+        settings.threads   = RENDER_THREADS;
+        settings.pacing    = RENDER_PACING;
+        settings.maxFps    = MAX_FPS;
+        settings.subpixel  = SUBPIXEL;
+        screen = new Screen(settings, Color.BLACK);
+        screen.addMouseListener(new MouseAdapter() {
+
+            /** Reports the object under the mouse when the screen is clicked. */
+            @Override
+            public void mouseClicked(MouseEvent e) {
+
+                RayHit hit = new RayHit();
+                if (screen.pick(e.getX(), e.getY(), hit))
+                    System.out.println("Picked object " + hit.object + ", triangle " + hit.triangle);
+
+            }
+
+        });
+        pane.add(screen);
+        pack();
+
+        // F3 shows where frame time goes; the same numbers are published over JMX
+        addKeyListener(new KeyAdapter() {
+
+            /** Toggles the profiler overlay. */
+            @Override
+            public void keyPressed(KeyEvent e) {
+
+                if (e.getKeyCode() == KeyEvent.VK_F3)
+                    screen.setOverlay(!screen.isOverlay());
+
+            }
+
+        });
+
+        try {
+
+            screen.profiler().register("Engine");
+
+        } catch (JMException e) {
+
+            System.err.println("Could not publish render statistics: " + e);
+
+        }
+
+        setResizable(false);
+        setTitle("3D Game Engine");
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setBackground(Color.BLACK);
+        setLocationRelativeTo(null);
+        setVisible(true);
+
+        // the simulation and the drawing run on threads of their own
+        renderLoop = new RenderLoop(screen, settings);
+        gameLoop.start();
+        renderLoop.start();
+
+        requestFocus();
+
+    }
+
+    /** Advances the simulation by one step. The game loop runs this GAME_SPEED times per second of real time,
+     *  however long frames take to draw. */
+    @Override
+    public void run() {
+
+        // update camera position and the scene's animation
+        cam.update();
+        time += 1 / GAME_SPEED;
+        Renderer.makeTurntable(time, world, worldScratch);
+
+        // publish a snapshot of this step for the screen to draw, along with the step before it
+        FrameExchange frames = screen.frames();
+        FramePacket packet = frames.writePacket();
+        packet.clear();
+        packet.time = time;
+        packet.stepTime = gameLoop.stepTime();
+        packet.stepLength = gameLoop.stepLength();
+        packet.setCamera(cam);
+        packet.world.set(world);
+        packet.setScene(sceneIndex);
+        packet.follow(frames.lastPublished());
+        frames.publish();
+
+        // show the measured frame rate once a second
+        if (gameLoop.steps() % (long)GAME_SPEED == 0) {
+
+            String title = String.format("3D Game Engine (%.0f fps)", renderLoop.framesPerSecond());
+            SwingUtilities.invokeLater(() -> setTitle(title));
+
+        }
+
+    }
+
+    /** Creates a new Engine which will automatically run itself. */
+    public static void main(String[] args) {
+
+        System.out.println(Kernels.describe());
+        Engine gameSession = new Engine();
+
+    }
+
+}
@@ -0,0 +1,61 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// FrameEvent Class -- 3D Engine
+
+/*
+This class is a Java Flight Recorder event for one rendered
+frame, with the time spent in each stage of the pipeline and
+the triangle counts. A FrameProfiler only creates these while
+a recording is running with the event enabled, which it is by
+default, so they cost nothing when nothing is recording.
+ */
+
+package raster;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("raster.Frame")
+@Label("Frame")
+@Category("Raster")
+@Description("One frame drawn by a Renderer")
+@StackTrace(false)
+public class FrameEvent extends jdk.jfr.Event {
+
+    @Label("Transform")
+    @Timespan(Timespan.NANOSECONDS)
+    public long transform;
+
+    @Label("Cull")
+    @Timespan(Timespan.NANOSECONDS)
+    public long cull;
+
+    @Label("Light")
+    @Timespan(Timespan.NANOSECONDS)
+    public long light;
+
+    @Label("Sort")
+    @Timespan(Timespan.NANOSECONDS)
+    public long sort;
+
+    @Label("Fill")
+    @Timespan(Timespan.NANOSECONDS)
+    public long fill;
+
+    @Label("Triangles In")
+    public int trianglesIn;
+
+    @Label("Triangles Culled")
+    public int trianglesCulled;
+
+    @Label("Triangles Drawn")
+    public int trianglesDrawn;
+
+    @Label("Triangles Kept")
+    public int trianglesKept;
+
+}
@@ -0,0 +1,73 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// FrameExchange Class -- 3D Engine
+
+/*
+This class passes FramePackets from the thread that updates the
+world to the thread that draws it, using three packets. The
+writer always owns one packet to fill, the reader always owns
+one packet to draw, and the third is the newest complete packet,
+waiting. Publishing swaps the writer's packet with the waiting
+one, and acquiring swaps the reader's packet with it if a newer
+one has arrived, each with a single atomic exchange. Neither
+side ever waits for the other: a slow reader simply skips
+packets, and a slow writer means the reader draws the same
+packet again.
+ */
+
+package raster;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FrameExchange {
+
+    // the waiting packet's index, with this bit set if the reader has not seen it yet
+    private static final int FRESH = 4;
+    private static final int INDEX = 3;
+
+    private final FramePacket[] packets = {new FramePacket(), new FramePacket(), new FramePacket()};
+    private final AtomicInteger waiting = new AtomicInteger(1);
+    private int writing = 0, reading = 2;
+    private long published;
+
+    // the packet the writer published last; the reader may be drawing it, but neither side writes to it
+    private FramePacket last;
+
+    /** Returns the packet the writer should fill next. Only the writing thread may call this. */
+    public FramePacket writePacket() {
+
+        return packets[writing];
+
+    }
+
+    /** Hands the filled packet to the reader, replacing any packet it has not picked up yet, and gives
+     *  the writer a free packet in its place. Only the writing thread may call this. */
+    public void publish() {
+
+        last = packets[writing];
+        last.sequence = ++published;
+        writing = waiting.getAndSet(writing | FRESH) & INDEX;
+
+    }
+
+    /** Returns the packet published last, or null before the first publish, so the writer can carry state
+     *  over from it into the next packet. It must only be read. Only the writing thread may call this. */
+    public FramePacket lastPublished() {
+
+        return last;
+
+    }
+
+    /** Returns the newest published packet, or null if nothing has been published yet. The packet stays
+     *  the reader's until the next call. Only the reading thread may call this. */
+    public FramePacket readPacket() {
+
+        if ((waiting.get() & FRESH) != 0)
+            reading = waiting.getAndSet(reading) & INDEX;
+
+        FramePacket packet = packets[reading];
+        return packet.sequence > 0 ? packet : null;
+
+    }
+
+}
@@ -0,0 +1,255 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// FramePacket Class -- 3D Engine
+
+/*
+This class holds everything the Renderer needs to draw one
+frame: the camera pose, the world matrix, and the meshes and
+instances to draw, with their transforms copied in. The update
+side fills a packet and hands it over through a FrameExchange;
+from then on only the render side reads it, so moving objects
+or the camera while a frame is being drawn cannot tear it.
+
+A packet also carries the state of the simulation step before
+it, so a frame drawn between two steps can blend the camera,
+the world matrix, and each Mesh's transform from one to the
+other. Blending is linear in the matrix entries, which is close
+enough to a true rotation for the small turn of a single step.
+
+Meshes are referenced, not copied, since their geometry does
+not change from frame to frame. Packets are reused, and their
+arrays only grow, so filling one does not allocate once the
+scene has reached its largest size.
+ */
+
+package raster;
+
+import java.util.Arrays;
+
+public class FramePacket {
+
+    // camera pose: the view matrix and the camera's position in world space
+    public final Matrix view = new Matrix();
+    public final Vector cameraPosition = new Vector();
+
+    // matrix applied to every object after its own transform
+    public final Matrix world = Matrix.makeIdentity();
+
+    // the same, one simulation step earlier
+    public final Matrix previousView = new Matrix();
+    public final Vector previousCameraPosition = new Vector();
+    public final Matrix previousWorld = Matrix.makeIdentity();
+
+    // frame number and simulation time the snapshot was taken at
+    public long sequence;
+    public double time;
+
+    // the System.nanoTime at which the step was due, and the length of a step in nanoseconds
+    public long stepTime;
+    public long stepLength;
+
+    // meshes, each with a copy of its transform and its transform one step earlier (sixteen values per Mesh)
+    private Mesh[] meshes = new Mesh[16];
+    private double[] meshTransforms = new double[16 * 16];
+    private double[] previousTransforms = new double[16 * 16];
+    private int meshCount;
+
+    // copies of instance sets; the slots are kept between frames for reuse
+    private InstanceSet[] instances = new InstanceSet[4];
+    private int instanceCount;
+
+    // an optional scene index, shared rather than copied
+    private SceneBVH scene;
+
+    /** Empties the packet for a new frame, keeping its storage. */
+    public void clear() {
+
+        Arrays.fill(meshes, 0, meshCount, null);
+        meshCount = 0;
+        instanceCount = 0;
+        scene = null;
+
+    }
+
+    /** Records the camera's current view matrix and position. This advances the camera's look
+     *  direction by its yaw, exactly as rendering with the camera directly does. */
+    public void setCamera(Camera camera) {
+
+        camera.makeViewMatrix(view);
+        cameraPosition.set(camera.position);
+
+    }
+
+    /** Adds a Mesh to draw, copying its current transform. */
+    public void addMesh(Mesh mesh) {
+
+        if (meshCount == meshes.length) {
+
+            meshes = Arrays.copyOf(meshes, 2 * meshCount);
+            meshTransforms = Arrays.copyOf(meshTransforms, 16 * 2 * meshCount);
+            previousTransforms = Arrays.copyOf(previousTransforms, 16 * 2 * meshCount);
+
+        }
+
+        meshes[meshCount] = mesh;
+        System.arraycopy(mesh.getTransform().m, 0, meshTransforms, 16 * meshCount, 16);
+        meshCount++;
+
+    }
+
+    /** Adds a copy of an instance set's current transforms and colors. */
+    public void addInstances(InstanceSet set) {
+
+        if (instanceCount == instances.length)
+            instances = Arrays.copyOf(instances, 2 * instanceCount);
+
+        if (instances[instanceCount] == null || instances[instanceCount].mesh() != set.mesh())
+            instances[instanceCount] = new InstanceSet(set.mesh(), set.size());
+
+        instances[instanceCount++].copyFrom(set);
+
+    }
+
+    /** Draws the objects of a scene index this frame, culled through the hierarchy. The index is shared
+     *  with the update side rather than copied, so the objects in it must not be moved or refit while any
+     *  packet holding it may still be drawn; objects that move belong in the Mesh list instead. */
+    public void setScene(SceneBVH s) {
+
+        scene = s;
+
+    }
+
+    /** Records the last packet published as the state one step before this one, so that frames can be
+     *  blended between the two. A Mesh that was not at the same position in the last packet, and every
+     *  Mesh when last is null, starts from where it is now. Call this once the packet is filled. */
+    public void follow(FramePacket last) {
+
+        if (last == null) {
+
+            previousView.set(view);
+            previousCameraPosition.set(cameraPosition);
+            previousWorld.set(world);
+            System.arraycopy(meshTransforms, 0, previousTransforms, 0, 16 * meshCount);
+            return;
+
+        }
+
+        previousView.set(last.view);
+        previousCameraPosition.set(last.cameraPosition);
+        previousWorld.set(last.world);
+        for (int i = 0; i < meshCount; i++) {
+
+            double[] from = i < last.meshCount && last.meshes[i] == meshes[i] ? last.meshTransforms : meshTransforms;
+            System.arraycopy(from, 16 * i, previousTransforms, 16 * i, 16);
+
+        }
+
+    }
+
+    /** Returns how far a frame drawn at the given System.nanoTime should be blended from the previous step
+     *  toward this one: 0 when this step was due, rising to 1 a step later, and 1 if the packet has no step length. */
+    public double blendFactor(long now) {
+
+        if (stepLength <= 0)
+            return 1.0;
+
+        return Math.max(0.0, Math.min(1.0, (double)(now - stepTime) / stepLength));
+
+    }
+
+    /** Overwrites dest with the view matrix blended by t from the previous step to this one. Returns dest. */
+    public Matrix view(double t, Matrix dest) {
+
+        blend(previousView.m, 0, view.m, 0, t, dest.m);
+        return dest;
+
+    }
+
+    /** Overwrites dest with the world matrix blended by t from the previous step to this one. Returns dest. */
+    public Matrix world(double t, Matrix dest) {
+
+        blend(previousWorld.m, 0, world.m, 0, t, dest.m);
+        return dest;
+
+    }
+
+    /** Overwrites dest with the camera position blended by t from the previous step to this one. Returns dest. */
+    public Vector cameraPosition(double t, Vector dest) {
+
+        if (t >= 1)
+            return dest.set(cameraPosition);
+
+        return dest.set(previousCameraPosition.x + (cameraPosition.x - previousCameraPosition.x) * t,
+                        previousCameraPosition.y + (cameraPosition.y - previousCameraPosition.y) * t,
+                        previousCameraPosition.z + (cameraPosition.z - previousCameraPosition.z) * t);
+
+    }
+
+    /** Returns the number of meshes in the packet. */
+    public int meshCount() {
+
+        return meshCount;
+
+    }
+
+    /** Returns Mesh i. */
+    public Mesh mesh(int i) {
+
+        return meshes[i];
+
+    }
+
+    /** Overwrites dest with the transform Mesh i had when it was added. Returns dest. */
+    public Matrix meshTransform(int i, Matrix dest) {
+
+        System.arraycopy(meshTransforms, 16 * i, dest.m, 0, 16);
+        return dest;
+
+    }
+
+    /** Overwrites dest with the transform of Mesh i blended by t from the previous step to this one. Returns dest. */
+    public Matrix meshTransform(int i, double t, Matrix dest) {
+
+        blend(previousTransforms, 16 * i, meshTransforms, 16 * i, t, dest.m);
+        return dest;
+
+    }
+
+    /** Returns the number of instance sets in the packet. */
+    public int instanceSetCount() {
+
+        return instanceCount;
+
+    }
+
+    /** Returns the copy of instance set i. */
+    public InstanceSet instanceSet(int i) {
+
+        return instances[i];
+
+    }
+
+    /** Returns the scene index to draw, or null. */
+    public SceneBVH scene() {
+
+        return scene;
+
+    }
+
+    /** Writes the sixteen matrix entries blended by t from the entries at from[fromStart] to those at
+     *  to[toStart] into dest. At t = 1 the entries are copied exactly. */
+    private static void blend(double[] from, int fromStart, double[] to, int toStart, double t, double[] dest) {
+
+        if (t >= 1) {
+
+            System.arraycopy(to, toStart, dest, 0, 16);
+            return;
+
+        }
+
+        for (int k = 0; k < 16; k++)
+            dest[k] = from[fromStart + k] + (to[toStart + k] - from[fromStart + k]) * t;
+
+    }
+
+}
@@ -0,0 +1,278 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// FrameProfiler Class -- 3D Engine
+
+/*
+This class measures where a Renderer's frame time goes. Each
+stage of the pipeline is timed with System.nanoTime around
+whole passes rather than single triangles, so a frame costs a
+handful of clock reads and counter updates. The times of each
+finished frame are added to a LatencyHistogram per stage and
+are offered three ways: as a platform MXBean for monitoring,
+as a FrameEvent for Flight Recorder, and as plain accessors
+that the Screen's overlay reads.
+
+Only the rendering thread records. Other threads may read at
+any time; the last frame's numbers they see may then mix two
+frames, which is harmless for monitoring.
+ */
+
+package raster;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class FrameProfiler implements RenderStatsMXBean {
+
+    // pipeline stages, in the order a frame runs them, and the whole frame
+    public static final int TRANSFORM = 0, CULL = 1, LIGHT = 2, SORT = 3, FILL = 4, FRAME = 5;
+    public static final int STAGES = 6;
+
+    private static final String[] STAGE_NAMES = {"transform", "cull", "light", "sort", "fill", "frame"};
+
+    // nanoseconds spent in each stage by the frame in progress and by the last finished frame
+    private final long[] current = new long[STAGES];
+    private final long[] last = new long[STAGES];
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES];
+
+    // triangle counts of the frame in progress and of the last finished frame
+    private int trianglesIn, trianglesCulled, trianglesDrawn, trianglesKept;
+    private volatile int lastIn, lastCulled, lastDrawn, lastKept;
+
+    private long frameStart;
+    private volatile long frames, framesSkipped;
+
+    // the Flight Recorder event of the frame in progress, created only while it is enabled,
+    // and an event kept just to ask whether it is
+    private final FrameEvent probe = new FrameEvent();
+    private FrameEvent event;
+
+    /** Constructor. */
+    public FrameProfiler() {
+
+        for (int i = 0; i < STAGES; i++)
+            histograms[i] = new LatencyHistogram();
+
+    }
+
+    /** Returns the name of a stage. */
+    public static String stageName(int stage) {
+
+        return STAGE_NAMES[stage];
+
+    }
+
+    /** Registers this profiler with the platform MBean server as raster:type=Renderer,name=<name>. */
+    public void register(String name) throws JMException {
+
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("raster:type=Renderer,name=" + name));
+
+    }
+
+    /** Starts timing a frame. */
+    public void beginFrame() {
+
+        frameStart = System.nanoTime();
+        for (int i = 0; i < STAGES; i++)
+            current[i] = 0;
+
+        trianglesIn = 0;
+        trianglesCulled = 0;
+        trianglesDrawn = 0;
+        trianglesKept = 0;
+
+        if (probe.isEnabled()) {
+
+            event = new FrameEvent();
+            event.begin();
+
+        }
+
+    }
+
+    /** Adds nanoseconds to a stage of the frame in progress. */
+    public void add(int stage, long nanos) {
+
+        current[stage] += nanos;
+
+    }
+
+    /** Returns the nanoseconds a stage has taken so far in the frame in progress. */
+    public long elapsed(int stage) {
+
+        return current[stage];
+
+    }
+
+    /** Counts triangles the frame started with and how many of them it culled. */
+    public void countTriangles(int in, int culled) {
+
+        trianglesIn += in;
+        trianglesCulled += culled;
+
+    }
+
+    /** Counts triangles the frame started with that it left as the last frame drew them, because they lie
+     *  outside the pixels an incremental frame draws again. They are neither culled nor drawn. */
+    public void countKept(int kept) {
+
+        trianglesIn += kept;
+        trianglesKept += kept;
+
+    }
+
+    /** Finishes timing a frame that rasterized the given number of triangles, and records it. */
+    public void endFrame(int drawn) {
+
+        current[FRAME] = System.nanoTime() - frameStart;
+        trianglesDrawn = drawn;
+
+        for (int i = 0; i < STAGES; i++) {
+
+            last[i] = current[i];
+            histograms[i].record(current[i]);
+
+        }
+
+        lastIn = trianglesIn;
+        lastCulled = trianglesCulled;
+        lastDrawn = trianglesDrawn;
+        lastKept = trianglesKept;
+        frames++;
+
+        if (event != null) {
+
+            event.end();
+            event.transform = current[TRANSFORM];
+            event.cull = current[CULL];
+            event.light = current[LIGHT];
+            event.sort = current[SORT];
+            event.fill = current[FILL];
+            event.trianglesIn = trianglesIn;
+            event.trianglesCulled = trianglesCulled;
+            event.trianglesDrawn = trianglesDrawn;
+            event.trianglesKept = trianglesKept;
+            event.commit();
+            event = null;
+
+        }
+
+    }
+
+    /** Finishes a frame that was skipped because it would have matched the last one. It is only counted, so
+     *  the histograms and the last frame's numbers keep describing frames that were really drawn. */
+    public void skipFrame() {
+
+        framesSkipped++;
+        event = null;
+
+    }
+
+    /** Returns the nanoseconds a stage took in the last finished frame. */
+    public long lastFrame(int stage) {
+
+        return last[stage];
+
+    }
+
+    /** Returns the histogram of a stage's time per frame, in nanoseconds. */
+    public LatencyHistogram histogram(int stage) {
+
+        return histograms[stage];
+
+    }
+
+    @Override
+    public long getFrames() {
+
+        return frames;
+
+    }
+
+    @Override
+    public long getFramesSkipped() {
+
+        return framesSkipped;
+
+    }
+
+    @Override
+    public int getTrianglesIn() {
+
+        return lastIn;
+
+    }
+
+    @Override
+    public int getTrianglesCulled() {
+
+        return lastCulled;
+
+    }
+
+    @Override
+    public int getTrianglesDrawn() {
+
+        return lastDrawn;
+
+    }
+
+    @Override
+    public int getTrianglesKept() {
+
+        return lastKept;
+
+    }
+
+    @Override
+    public StageLatency getFrame() {
+
+        return StageLatency.of(histograms[FRAME]);
+
+    }
+
+    @Override
+    public StageLatency getTransform() {
+
+        return StageLatency.of(histograms[TRANSFORM]);
+
+    }
+
+    @Override
+    public StageLatency getCull() {
+
+        return StageLatency.of(histograms[CULL]);
+
+    }
+
+    @Override
+    public StageLatency getLight() {
+
+        return StageLatency.of(histograms[LIGHT]);
+
+    }
+
+    @Override
+    public StageLatency getSort() {
+
+        return StageLatency.of(histograms[SORT]);
+
+    }
+
+    @Override
+    public StageLatency getFill() {
+
+        return StageLatency.of(histograms[FILL]);
+
+    }
+
+    @Override
+    public void reset() {
+
+        for (int i = 0; i < STAGES; i++)
+            histograms[i].reset();
+
+    }
+
+}
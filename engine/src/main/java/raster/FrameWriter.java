@@ -0,0 +1,451 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// FrameWriter Class -- 3D Engine
+
+/*
+This class saves a sequence of rendered frames to disk without
+making the renderer wait for the encoding or the disk. A frame
+handed to it is copied into one of a fixed ring of buffers, and
+the renderer carries on with the next frame straight away; it
+only waits when every buffer is still in use. A pool of encoder
+threads turns the buffers into PNG files or into raw PPM or Y4M
+video, several frames at once, and a single writer thread saves
+the encoded frames in the order they were handed in. Each buffer
+goes back into the ring once its frame is on disk, so no memory
+is allocated per frame after the first few.
+
+PNG frames are written as numbered files in a directory. PPM
+frames are written one after another into a single file, as
+tools that read image streams expect, and Y4M frames follow a
+single stream header. Y4M video is written as full resolution
+4:4:4 with BT.601 studio range colors, so no pixel is averaged
+with its neighbors.
+ */
+
+package raster;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FrameWriter implements Closeable {
+
+    // output formats
+    public static final int PNG = 0, PPM = 1, Y4M = 2;
+
+    // tells the writer thread that no frames follow
+    private static final Future<Slot> END = CompletableFuture.completedFuture(null);
+
+    private final int format, width, height;
+    private final File output;
+
+    // buffers free to take the next frame, and frames being encoded in the order they were handed in
+    private final BlockingQueue<Slot> free;
+    private final BlockingQueue<Future<Slot>> pending = new LinkedBlockingQueue<Future<Slot>>();
+    private final ExecutorService encoders;
+    private final Thread writer;
+
+    // the single file a PPM or Y4M stream goes to
+    private final FileChannel stream;
+
+    // the first error met by an encoder or the writer, after which nothing more is written
+    private volatile Throwable failure;
+
+    private int framesHanded;
+    private volatile int framesWritten;
+    private long stallNanos;
+    private boolean closed;
+
+    /** Constructor. Frames of the given size will be saved in a format to output, which is a directory for
+     *  PNG and a file otherwise. The ring holds up to ringSize frames waiting for encoders or the disk, and
+     *  that many encoder threads work at once. Frames per second is only recorded in Y4M streams. */
+    public FrameWriter(File output, int format, int width, int height, int framesPerSecond,
+                       int ringSize, int encoderThreads) throws IOException {
+
+        if (format != PNG && format != PPM && format != Y4M)
+            throw new IllegalArgumentException("Unknown frame format " + format);
+
+        this.output = output;
+        this.format = format;
+        this.width = width;
+        this.height = height;
+
+        if (format == PNG) {
+
+            if (!output.isDirectory() && !output.mkdirs())
+                throw new IOException("Could not create output directory " + output);
+
+            stream = null;
+
+        } else {
+
+            stream = FileChannel.open(output.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                      StandardOpenOption.TRUNCATE_EXISTING);
+            if (format == Y4M)
+                writeFully(stream, ByteBuffer.wrap(ascii("YUV4MPEG2 W" + width + " H" + height
+                                                         + " F" + framesPerSecond + ":1 Ip A1:1 C444\n")));
+
+        }
+
+        free = new ArrayBlockingQueue<Slot>(ringSize);
+        for (int i = 0; i < ringSize; i++)
+            free.add(new Slot(width, height));
+
+        AtomicInteger encoderCount = new AtomicInteger();
+        encoders = Executors.newFixedThreadPool(encoderThreads, task -> {
+
+            Thread thread = new Thread(task, "frame-encoder-" + encoderCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+
+        });
+
+        writer = new Thread(this::writeFrames, "frame-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+    }
+
+    /** Chooses a format from the extension of a file name: Y4M for .y4m, PPM for .ppm, and otherwise PNG,
+     *  taking the name as a directory. */
+    public static int formatFor(String name) {
+
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".y4m"))
+            return Y4M;
+        if (lower.endsWith(".ppm"))
+            return PPM;
+        return PNG;
+
+    }
+
+    /** Hands over a frame of packed RGB pixels, row by row. The pixels are copied, so the array may be drawn
+     *  over as soon as this returns. Waits only when every buffer in the ring is in use. Throws if an earlier
+     *  frame could not be encoded or written. */
+    public void write(int[] pixels) throws IOException {
+
+        // checked before a buffer is taken, which would otherwise never go back to the ring
+        if (pixels.length < width * height)
+            throw new IllegalArgumentException("Frame has " + pixels.length + " pixels, expected " + width * height);
+
+        if (closed)
+            throw new IOException("FrameWriter is closed");
+
+        checkFailure();
+
+        Slot slot = free.poll();
+        if (slot == null) {
+
+            long start = System.nanoTime();
+            try {
+
+                slot = free.take();
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a free frame buffer");
+
+            }
+            stallNanos += System.nanoTime() - start;
+
+        }
+
+        System.arraycopy(pixels, 0, slot.pixels, 0, width * height);
+        slot.frame = ++framesHanded;
+        final Slot encoding = slot;
+        pending.add(encoders.submit(() -> encode(encoding)));
+
+    }
+
+    /** Waits for every frame handed over to be written, then stops the threads and closes the output.
+     *  Throws if any frame could not be encoded or written. */
+    public void close() throws IOException {
+
+        if (closed)
+            return;
+
+        closed = true;
+        pending.add(END);
+        try {
+
+            writer.join();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for frames to be written");
+
+        } finally {
+
+            encoders.shutdown();
+            for (Slot slot : free)
+                if (slot.png != null)
+                    slot.png.dispose();
+
+            if (stream != null)
+                stream.close();
+
+        }
+
+        checkFailure();
+
+    }
+
+    /** Returns the number of frames written to disk so far. */
+    public int framesWritten() {
+
+        return framesWritten;
+
+    }
+
+    /** Returns how long write has spent waiting for a free buffer, in nanoseconds. */
+    public long stallNanos() {
+
+        return stallNanos;
+
+    }
+
+    /** Throws the first error met by an encoder or the writer, if there was one. */
+    private void checkFailure() throws IOException {
+
+        Throwable t = failure;
+        if (t instanceof IOException)
+            throw new IOException("Could not save frames to " + output, t);
+        if (t != null)
+            throw new IOException("Could not encode frames for " + output, t);
+
+    }
+
+    /** Encodes the frame in a buffer, on an encoder thread. Returns the buffer. */
+    private Slot encode(Slot slot) {
+
+        if (failure != null)
+            return slot;
+
+        try {
+
+            slot.encoded.reset();
+            if (format == PNG)
+                encodePng(slot);
+            else if (format == PPM)
+                encodePpm(slot);
+            else
+                encodeY4m(slot);
+
+        } catch (IOException | RuntimeException e) {
+
+            fail(e);
+
+        }
+
+        return slot;
+
+    }
+
+    /** Compresses a frame to a PNG file's bytes. */
+    private void encodePng(Slot slot) throws IOException {
+
+        if (slot.png == null)
+            slot.png = ImageIO.getImageWritersByFormatName("png").next();
+
+        // an in-memory stream avoids the temporary files ImageIO would otherwise cache to
+        ImageOutputStream out = new MemoryCacheImageOutputStream(slot.encoded);
+        slot.png.setOutput(out);
+        slot.png.write(slot.image);
+        out.close();
+
+    }
+
+    /** Writes a frame as a binary PPM image: a short header, then three bytes per pixel. */
+    private void encodePpm(Slot slot) throws IOException {
+
+        slot.encoded.write(ascii("P6\n" + width + " " + height + "\n255\n"));
+        int at = slot.encoded.size();
+        byte[] b = slot.encoded.reserve(3 * width * height);
+        int[] pixels = slot.pixels;
+        for (int i = 0; i < width * height; i++, at += 3) {
+
+            int rgb = pixels[i];
+            b[at]     = (byte)(rgb >> 16);
+            b[at + 1] = (byte)(rgb >> 8);
+            b[at + 2] = (byte)rgb;
+
+        }
+
+    }
+
+    /** Writes a frame of a Y4M stream: a frame header, then the Y, Cb, and Cr planes at full resolution. */
+    private void encodeY4m(Slot slot) throws IOException {
+
+        slot.encoded.write(ascii("FRAME\n"));
+        int n = width * height;
+        int y = slot.encoded.size(), cb = y + n, cr = cb + n;
+        byte[] b = slot.encoded.reserve(3 * n);
+        int[] pixels = slot.pixels;
+        for (int i = 0; i < n; i++) {
+
+            // BT.601 in 8-bit fixed point, mapped to the studio range of 16 to 235 for luma and 16 to 240 for chroma
+            int rgb = pixels[i];
+            int r = (rgb >> 16) & 0xFF, g = (rgb >> 8) & 0xFF, bl = rgb & 0xFF;
+            b[y + i]  = (byte)(((66 * r + 129 * g + 25 * bl + 128) >> 8) + 16);
+            b[cb + i] = (byte)(((-38 * r - 74 * g + 112 * bl + 128) >> 8) + 128);
+            b[cr + i] = (byte)(((112 * r - 94 * g - 18 * bl + 128) >> 8) + 128);
+
+        }
+
+    }
+
+    /** Saves encoded frames in the order they were handed over, on the writer thread, returning each buffer
+     *  to the ring once its frame is saved. */
+    private void writeFrames() {
+
+        while (true) {
+
+            Slot slot;
+            try {
+
+                slot = pending.take().get();
+
+            } catch (InterruptedException e) {
+
+                fail(e);
+                return;
+
+            } catch (ExecutionException e) {
+
+                // encode catches its own exceptions, so only an Error lands here. Its buffer is lost,
+                // but write refuses more frames once a failure is recorded
+                fail(e.getCause());
+                continue;
+
+            }
+
+            if (slot == null)
+                return;
+
+            if (failure == null) {
+
+                try {
+
+                    if (format == PNG) {
+
+                        File file = new File(output, String.format("frame_%05d.png", slot.frame));
+                        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+                            writeFully(channel, slot.encoded.contents());
+
+                        }
+
+                    } else {
+
+                        writeFully(stream, slot.encoded.contents());
+
+                    }
+
+                    framesWritten++;
+
+                } catch (IOException e) {
+
+                    fail(e);
+
+                }
+
+            }
+
+            // after a failure frames are still taken off the queue, so write never waits forever
+            free.add(slot);
+
+        }
+
+    }
+
+    /** Records the first error met, so that later frames are dropped and the error reaches the caller. */
+    private synchronized void fail(Throwable t) {
+
+        if (failure == null)
+            failure = t;
+
+    }
+
+    /** Writes every remaining byte of a buffer to a channel. */
+    private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+
+    }
+
+    /** Returns the bytes of a header string. */
+    private static byte[] ascii(String s) {
+
+        return s.getBytes(StandardCharsets.US_ASCII);
+
+    }
+
+    /** One buffer of the ring: a frame's pixels, held in an image so PNG can encode them in place,
+     *  its encoded bytes, and the PNG encoder. */
+    private static class Slot {
+
+        final BufferedImage image;
+        final int[] pixels;
+        final Output encoded = new Output();
+        ImageWriter png;
+        int frame;
+
+        Slot(int width, int height) {
+
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+
+        }
+
+    }
+
+    /** A byte stream that is reused from frame to frame, and whose contents are written without being copied. */
+    private static class Output extends ByteArrayOutputStream {
+
+        /** Grows the stream by n bytes, to be filled in place. Returns the array the bytes are in. */
+        byte[] reserve(int n) {
+
+            if (count + n > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(2 * buf.length, count + n));
+
+            count += n;
+            return buf;
+
+        }
+
+        /** Returns the bytes written so far, without copying them. */
+        ByteBuffer contents() {
+
+            return ByteBuffer.wrap(buf, 0, count);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,140 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// Frustum Class -- 3D Engine
+
+/*
+This class holds the six planes of a view frustum, taken from a
+matrix that maps points to clip space. Points are row vectors,
+so clip coordinate j is the dot product of the point with
+column j of the matrix, and each plane is a sum or difference
+of two columns. The projection from Matrix.makeProjection keeps
+0 <= z <= w, so the near plane is the Z column alone.
+
+Planes taken from world * view * projection are in the object
+space of whatever world places, so bounds can be tested as they
+were computed at load time, without transforming them first.
+ */
+
+package raster;
+
+public class Frustum {
+
+    public static final int LEFT = 0, RIGHT = 1, BOTTOM = 2, TOP = 3, NEAR = 4, FAR = 5;
+
+    // results of classifyBox
+    public static final int OUTSIDE = 0, INTERSECTING = 1, INSIDE = 2;
+
+    // plane p is a * x + b * y + c * z + d >= 0, stored as planes[4p .. 4p + 3]
+    public final double[] planes = new double[24];
+
+    /** Default constructor. Call set before testing anything against the frustum. */
+    public Frustum() {
+
+    }
+
+    /** Overwrites the planes with those of the clip-space matrix ma. Returns this. */
+    public Frustum set(Matrix ma) {
+
+        double[] m = ma.m;
+        setPlane(LEFT,   m, 3, 0,  1);
+        setPlane(RIGHT,  m, 3, 0, -1);
+        setPlane(BOTTOM, m, 3, 1,  1);
+        setPlane(TOP,    m, 3, 1, -1);
+        setPlane(NEAR,   m, 2, 0,  0);
+        setPlane(FAR,    m, 3, 2, -1);
+        return this;
+
+    }
+
+    /** Returns false if the sphere is entirely outside at least one plane. */
+    public boolean intersectsSphere(double x, double y, double z, double radius) {
+
+        for (int i = 0; i < 24; i += 4) {
+
+            if (planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3] < -radius)
+                return false;
+
+        }
+
+        return true;
+
+    }
+
+    /** Returns false if the box is entirely outside at least one plane. */
+    public boolean intersectsBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+
+        for (int i = 0; i < 24; i += 4) {
+
+            // the corner furthest along the plane's normal is the last one to leave
+            double a = planes[i], b = planes[i + 1], c = planes[i + 2];
+            double x = a >= 0 ? maxX : minX;
+            double y = b >= 0 ? maxY : minY;
+            double z = c >= 0 ? maxZ : minZ;
+            if (a * x + b * y + c * z + planes[i + 3] < 0)
+                return false;
+
+        }
+
+        return true;
+
+    }
+
+    /** Returns OUTSIDE if the box is entirely outside at least one plane, INSIDE if it is entirely inside
+     *  all of them, and INTERSECTING otherwise. */
+    public int classifyBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+
+        int result = INSIDE;
+        for (int i = 0; i < 24; i += 4) {
+
+            // test the corners furthest along and against the plane's normal
+            double a = planes[i], b = planes[i + 1], c = planes[i + 2], d = planes[i + 3];
+            double nearDist = a * (a >= 0 ? maxX : minX) + b * (b >= 0 ? maxY : minY) + c * (c >= 0 ? maxZ : minZ) + d;
+            if (nearDist < 0)
+                return OUTSIDE;
+
+            double farDist = a * (a >= 0 ? minX : maxX) + b * (b >= 0 ? minY : maxY) + c * (c >= 0 ? minZ : maxZ) + d;
+            if (farDist < 0)
+                result = INTERSECTING;
+
+        }
+
+        return result;
+
+    }
+
+    /** Returns false if the bounds are empty or entirely outside the frustum. The sphere is tested
+     *  first because it is cheaper; the box then catches most of what the sphere lets through. */
+    public boolean intersects(Bounds b) {
+
+        return !b.isEmpty()
+                && intersectsSphere(b.centerX, b.centerY, b.centerZ, b.radius)
+                && intersectsBox(b.minX, b.minY, b.minZ, b.maxX, b.maxY, b.maxZ);
+
+    }
+
+    /** Sets a plane to column w plus sign times column col, scaled to a unit normal. */
+    private void setPlane(int plane, double[] m, int w, int col, double sign) {
+
+        double a = m[w]      + sign * m[col];
+        double b = m[4 + w]  + sign * m[4 + col];
+        double c = m[8 + w]  + sign * m[8 + col];
+        double d = m[12 + w] + sign * m[12 + col];
+        double length = Math.sqrt(a * a + b * b + c * c);
+        if (length > 0) {
+
+            a /= length;
+            b /= length;
+            c /= length;
+            d /= length;
+
+        }
+
+        int i = 4 * plane;
+        planes[i] = a;
+        planes[i + 1] = b;
+        planes[i + 2] = c;
+        planes[i + 3] = d;
+
+    }
+
+}
@@ -0,0 +1,144 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// GameLoop Class -- 3D Engine
+
+/*
+This class runs a simulation on its own thread in fixed steps
+of real time. Time that passes is added to an accumulator, and
+a step is taken for every whole step length the accumulator
+holds, so the simulation advances at the same rate however
+long each step or each rendered frame takes. When the thread
+falls far behind, as after a long pause, it runs at most a few
+steps to catch up and drops the rest of the backlog rather than
+spiralling further behind.
+
+Rendering happens elsewhere: each step publishes its state, and
+the render side draws the newest state as often as it can.
+ */
+
+package raster;
+
+import java.util.concurrent.locks.LockSupport;
+
+public class GameLoop implements Runnable {
+
+    // the most steps taken at once to catch up before the rest of the backlog is dropped
+    public static final int MAX_CATCH_UP_STEPS = 15;
+
+    private final Runnable step;
+    private final long stepLength;
+    private volatile boolean running;
+    private Thread thread;
+
+    // the System.nanoTime the current step was due at, and the number of steps taken and dropped
+    private long stepTime;
+    private volatile long steps, dropped;
+
+    /** Constructor. The loop will run step the given number of times per second of real time. */
+    public GameLoop(double stepsPerSecond, Runnable step) {
+
+        this.step = step;
+        stepLength = (long)(1e9 / stepsPerSecond);
+
+    }
+
+    /** Starts the simulation thread. */
+    public synchronized void start() {
+
+        if (running)
+            return;
+
+        running = true;
+        thread = new Thread(this, "simulation");
+        thread.start();
+
+    }
+
+    /** Stops the simulation thread, waiting for the step in progress to finish. */
+    public synchronized void stop() {
+
+        running = false;
+        if (thread == null)
+            return;
+
+        LockSupport.unpark(thread);
+        try {
+
+            thread.join();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+        thread = null;
+
+    }
+
+    /** Returns the length of one step in nanoseconds. */
+    public long stepLength() {
+
+        return stepLength;
+
+    }
+
+    /** Returns the System.nanoTime the current step was due at. Call this from within the step. */
+    public long stepTime() {
+
+        return stepTime;
+
+    }
+
+    /** Returns the number of steps taken so far. */
+    public long steps() {
+
+        return steps;
+
+    }
+
+    /** Returns the number of steps dropped because the loop fell too far behind. */
+    public long dropped() {
+
+        return dropped;
+
+    }
+
+    /** Takes steps as they come due until the loop is stopped. */
+    @Override
+    public void run() {
+
+        // the first step is due as soon as the loop starts
+        long previous = System.nanoTime();
+        long lag = stepLength;
+
+        while (running) {
+
+            long now = System.nanoTime();
+            lag += now - previous;
+            previous = now;
+
+            if (lag > MAX_CATCH_UP_STEPS * stepLength) {
+
+                dropped += lag / stepLength - MAX_CATCH_UP_STEPS;
+                lag = MAX_CATCH_UP_STEPS * stepLength;
+
+            }
+
+            while (lag >= stepLength && running) {
+
+                lag -= stepLength;
+                stepTime = now - lag;
+                step.run();
+                steps++;
+
+            }
+
+            // sleep until the next step is due
+            LockSupport.parkNanos(stepLength - lag);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,449 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// GeometryStage Class -- 3D Engine
+
+/*
+This class implements the front end of the render pipeline:
+it removes triangles that face away from the camera, lights the
+rest by looking their color up in a ShadeTable, transforms the
+vertices they use, removes triangles outside the view, clips
+the ones crossing the near or far plane or the guard band, and
+queues them in screen space for the Rasterizer.
+
+Facing and lighting are decided before any vertex moves. The
+camera and light are brought into the Mesh's own space instead,
+where they meet the unit normals the Mesh computed at load, so
+about half of all triangles are culled without a transform or a
+square root, and vertices only they use are never transformed.
+
+Every step is data-parallel. Vertices are transformed in
+fixed-size ranges, and triangles are processed in fixed-size
+chunks that each write to their own TriangleBuffer. The chunk
+buffers are then appended to the output in chunk order, so the
+output is the same no matter how many threads did the work.
+ */
+
+package raster;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+public class GeometryStage {
+
+    public static final int VERTEX_CHUNK_SIZE = 16384;
+    public static final int TRIANGLE_CHUNK_SIZE = 4096;
+
+    // how triangles react to light; see lightScale
+    public static final double LIGHT_CURVE = 2.0, LIGHT_WHITEPOINT = 1.0, LIGHT_BLACKPOINT = 0.0;
+
+    // marks a triangle facing away from the camera; every lit color fits in 24 bits
+    private static final int BACK_FACING = -1;
+
+    private final int width, height;
+    private ForkJoinPool pool;
+
+    // whether screen positions keep their fractions for the Rasterizer to snap, or are truncated to pixels
+    private boolean subpixel;
+
+    // post-transform vertex data, reused from frame to frame and
+    // grown to fit the largest Mesh processed so far. Only vertices
+    // marked as used by a front-facing triangle are filled in. Screen
+    // positions are kept in floats, as the TriangleBuffer holds them
+    private byte[] vertexUsed;
+    private double[] clipX, clipY, clipZ, clipW;
+    private float[] screenX, screenY, screenZ;
+    private int[] outcodes;
+
+    // the lit color of every triangle, or BACK_FACING
+    private int[] triangleShades;
+
+    // the inverse of the world matrix, which takes the camera and light into object space
+    private final Matrix toObject = new Matrix();
+
+    // one output buffer and one clipper per triangle chunk, and how many triangles each chunk culled
+    private TriangleBuffer[] chunkBuffers;
+    private Clipper[] chunkClippers;
+    private int[] chunkCulled;
+
+    // precomputed lighting ramps for every color drawn so far
+    private final ShadeTable shades = new ShadeTable(LIGHT_CURVE, LIGHT_WHITEPOINT, LIGHT_BLACKPOINT);
+
+    // where the time spent and triangles culled are recorded, if anywhere
+    private FrameProfiler profiler;
+
+    /** Constructor. Vertices are mapped onto a screen of w by h pixels. */
+    public GeometryStage(int w, int h) {
+
+        width = w;
+        height = h;
+        pool = null;
+        chunkBuffers = new TriangleBuffer[0];
+        chunkClippers = new Clipper[0];
+        chunkCulled = new int[0];
+        triangleShades = new int[0];
+        ensureVertexCapacity(0);
+
+    }
+
+    /** Sets the pool used to process chunks in parallel. A null pool processes them on the calling thread. */
+    public void setPool(ForkJoinPool p) {
+
+        pool = p;
+
+    }
+
+    /** Enables or disables subpixel mode, which must match the Rasterizer's. With it enabled, screen positions
+     *  are passed on with their fractions rather than truncated to whole pixels. */
+    public void setSubpixel(boolean enabled) {
+
+        subpixel = enabled;
+
+    }
+
+    /** Sets the profiler that vertex transform and triangle processing times and counts are added to,
+     *  as its TRANSFORM and LIGHT stages. A null profiler records nothing. */
+    public void setProfiler(FrameProfiler p) {
+
+        profiler = p;
+
+    }
+
+    /** Transforms, culls, and lights every triangle of a Mesh, appending the visible ones to out in screen space.
+     *  The world matrix places the Mesh in the world, and worldViewProj takes it all the way to clip space. */
+    public void process(Mesh mesh, Matrix world, Matrix worldViewProj,
+                        Vector cameraPos, Vector lightDirection, TriangleBuffer out) {
+
+        process(mesh, mesh.getColor().getRGB(), world, worldViewProj, cameraPos, lightDirection, out);
+
+    }
+
+    /** Processes a Mesh as above, drawing it in a packed RGB color instead of its own. */
+    public void process(Mesh mesh, int rgb, Matrix world, Matrix worldViewProj,
+                        Vector cameraPos, Vector lightDirection, TriangleBuffer out) {
+
+        int nVerts = mesh.vertexCount();
+        int nTris = mesh.triangleCount();
+        ensureVertexCapacity(nVerts);
+        if (triangleShades.length < nTris)
+            triangleShades = new int[nTris];
+
+        // a Mesh squashed flat has no inside or outside, and nothing of it is drawn
+        long began = System.nanoTime();
+        if (Matrix.invert(world, toObject) == null) {
+
+            if (profiler != null)
+                profiler.countTriangles(nTris, nTris);
+
+            return;
+
+        }
+
+        // bring the camera and the light into object space. The light direction is exact for rotations,
+        // translations, and uniform scales, which keep the angle between a normal and the light
+        double[] m = toObject.m;
+        double camX = cameraPos.x * m[0] + cameraPos.y * m[4] + cameraPos.z * m[8]  + m[12];
+        double camY = cameraPos.x * m[1] + cameraPos.y * m[5] + cameraPos.z * m[9]  + m[13];
+        double camZ = cameraPos.x * m[2] + cameraPos.y * m[6] + cameraPos.z * m[10] + m[14];
+        double lx = lightDirection.x * m[0] + lightDirection.y * m[4] + lightDirection.z * m[8];
+        double ly = lightDirection.x * m[1] + lightDirection.y * m[5] + lightDirection.z * m[9];
+        double lz = lightDirection.x * m[2] + lightDirection.y * m[6] + lightDirection.z * m[10];
+
+        // a mirroring transform reverses the winding of every triangle, and so which side is the front
+        double[] w = world.m;
+        double det = w[0] * (w[5] * w[10] - w[6] * w[9])
+                   - w[1] * (w[4] * w[10] - w[6] * w[8])
+                   + w[2] * (w[4] * w[9]  - w[5] * w[8]);
+        double side = det < 0 ? -1.0 : 1.0;
+        double lightLength = Math.sqrt(lx * lx + ly * ly + lz * lz);
+        if (lightLength != 0.0) {
+
+            lx *= side / lightLength;
+            ly *= side / lightLength;
+            lz *= side / lightLength;
+
+        }
+
+        // light the triangles facing the camera and mark the vertices they use
+        int triangleChunks = (nTris + TRIANGLE_CHUNK_SIZE - 1) / TRIANGLE_CHUNK_SIZE;
+        ensureChunkCapacity(triangleChunks);
+        int[] ramp = shades.ramp(rgb);
+        double llx = lx, lly = ly, llz = lz;
+        Arrays.fill(vertexUsed, 0, nVerts, (byte)0);
+        Parallel.forEach(pool, triangleChunks, chunk -> {
+
+            int start = chunk * TRIANGLE_CHUNK_SIZE;
+            shadeTriangles(mesh, ramp, camX, camY, camZ, side, llx, lly, llz,
+                           start, Math.min(start + TRIANGLE_CHUNK_SIZE, nTris));
+
+        });
+
+        long shaded = System.nanoTime();
+        int vertexChunks = (nVerts + VERTEX_CHUNK_SIZE - 1) / VERTEX_CHUNK_SIZE;
+        Parallel.forEach(pool, vertexChunks, chunk -> {
+
+            int start = chunk * VERTEX_CHUNK_SIZE;
+            transformVertices(mesh, worldViewProj, start, Math.min(start + VERTEX_CHUNK_SIZE, nVerts));
+
+        });
+
+        long transformed = System.nanoTime();
+        Parallel.forEach(pool, triangleChunks, chunk -> {
+
+            int start = chunk * TRIANGLE_CHUNK_SIZE;
+            chunkBuffers[chunk].clear();
+            chunkCulled[chunk] = processTriangles(mesh, start, Math.min(start + TRIANGLE_CHUNK_SIZE, nTris),
+                                                  chunkBuffers[chunk], chunkClippers[chunk]);
+
+        });
+
+        // merge in a fixed order so that the output is deterministic
+        int culled = 0;
+        for (int chunk = 0; chunk < triangleChunks; chunk++) {
+
+            out.addAll(chunkBuffers[chunk]);
+            culled += chunkCulled[chunk];
+
+        }
+
+        if (profiler != null) {
+
+            long end = System.nanoTime();
+            profiler.add(FrameProfiler.TRANSFORM, transformed - shaded);
+            profiler.add(FrameProfiler.LIGHT, (shaded - began) + (end - transformed));
+            profiler.countTriangles(nTris, culled);
+
+        }
+
+    }
+
+    /** Decides which of the triangles from start up to end face the camera, given in object space, and lights
+     *  those with a ShadeTable ramp and a unit object-space light direction. Marks every vertex they use.
+     *  Side is -1 if the world transform mirrors the Mesh, reversing which side of a triangle is its front. */
+    private void shadeTriangles(Mesh mesh, int[] ramp, double camX, double camY, double camZ, double side,
+                                double lx, double ly, double lz, int start, int end) {
+
+        int[] indices = mesh.indices();
+        float[] xs = mesh.xs(), ys = mesh.ys(), zs = mesh.zs();
+        float[] nxs = mesh.normalXs(), nys = mesh.normalYs(), nzs = mesh.normalZs();
+
+        for (int t = start; t < end; t++) {
+
+            int a = indices[3 * t], b = indices[3 * t + 1], c = indices[3 * t + 2];
+            double nx = nxs[t], ny = nys[t], nz = nzs[t];
+
+            // only draw the triangle if its surface normal faces toward the camera
+            double toTri = (xs[a] - camX) * nx + (ys[a] - camY) * ny + (zs[a] - camZ) * nz;
+            if (toTri * side < 0.0) {
+
+                // Illuminate the triangle with a customizable function, precomputed for its color
+                double lightDotTri = Math.max(0.0, lx * nx + ly * ny + lz * nz);
+                triangleShades[t] = ShadeTable.shade(ramp, lightDotTri);
+
+                // chunks sharing a vertex may mark it at the same time, but they all store the same byte
+                vertexUsed[a] = 1;
+                vertexUsed[b] = 1;
+                vertexUsed[c] = 1;
+
+            } else {
+
+                triangleShades[t] = BACK_FACING;
+
+            }
+
+        }
+
+    }
+
+    /** Transforms the vertices from start up to end that front-facing triangles use into clip space and screen space. */
+    private void transformVertices(Mesh mesh, Matrix worldViewProj, int start, int end) {
+
+        int i = start;
+        while (i < end) {
+
+            // every used vertex is transformed exactly once, no matter how many triangles share it.
+            // Used vertices come in long runs, which are transformed in batches
+            while (i < end && vertexUsed[i] == 0)
+                i++;
+
+            int run = i;
+            while (i < end && vertexUsed[i] != 0)
+                i++;
+
+            if (run == i)
+                continue;
+
+            Matrix.projectPoints(worldViewProj, mesh.xs(), mesh.ys(), mesh.zs(), run, i,
+                                 clipX, clipY, clipZ, clipW);
+
+            for (int v = run; v < i; v++) {
+
+                double x = clipX[v], y = clipY[v], z = clipZ[v], w = clipW[v];
+                outcodes[v] = Clipper.outcode(x, y, z, w);
+
+                // vertices outside a clip plane are only used through the Clipper, so their
+                // screen positions, which may have divided by zero, are never read
+                screenX[v] = (float)toScreenX(x / w);
+                screenY[v] = (float)toScreenY(y / w);
+                screenZ[v] = (float)(z / w);
+
+            }
+
+        }
+
+    }
+
+    /** Culls the lit triangles from start up to end against the view and appends the visible ones to out.
+     *  Returns the number of triangles culled, including those facing away and any clipped away entirely. */
+    private int processTriangles(Mesh mesh, int start, int end, TriangleBuffer out, Clipper clipper) {
+
+        int[] indices = mesh.indices();
+        int culled = 0;
+
+        // nothing in this loop allocates, so that chunks running side by side
+        // never touch shared state other than their own output buffer
+        for (int t = start; t < end; t++) {
+
+            int lightColor = triangleShades[t];
+            if (lightColor == BACK_FACING) {
+
+                culled++;
+                continue;
+
+            }
+
+            // skip triangles entirely behind the camera, past the far plane, or off one side of the screen
+            int a = indices[3 * t], b = indices[3 * t + 1], c = indices[3 * t + 2];
+            int codeA = outcodes[a], codeB = outcodes[b], codeC = outcodes[c];
+            if ((codeA & codeB & codeC & Clipper.REJECT_PLANES) != 0) {
+
+                culled++;
+                continue;
+
+            }
+
+            int crossed = (codeA | codeB | codeC) & Clipper.CLIP_PLANES;
+            if (crossed == 0) {
+
+                out.add(screenX[a], screenY[a], screenZ[a],
+                        screenX[b], screenY[b], screenZ[b],
+                        screenX[c], screenY[c], screenZ[c],
+                        lightColor);
+
+            } else if (!addClipped(clipper, a, b, c, crossed, lightColor, out)) {
+
+                culled++;
+
+            }
+
+        }
+
+        return culled;
+
+    }
+
+    /** Clips a triangle against the planes it crosses and appends what is left to out as a triangle fan.
+     *  Returns false if nothing was left. */
+    private boolean addClipped(Clipper clipper, int a, int b, int c, int planes, int rgb, TriangleBuffer out) {
+
+        int n = clipper.clipTriangle(clipX, clipY, clipZ, clipW, a, b, c, planes);
+        if (n < 3)
+            return false;
+
+        // every vertex left is in front of the near plane, so w is positive
+        double w0 = clipper.w(0);
+        float x0 = (float)toScreenX(clipper.x(0) / w0);
+        float y0 = (float)toScreenY(clipper.y(0) / w0);
+        float z0 = (float)(clipper.z(0) / w0);
+
+        double w1 = clipper.w(1);
+        float x1 = (float)toScreenX(clipper.x(1) / w1);
+        float y1 = (float)toScreenY(clipper.y(1) / w1);
+        float z1 = (float)(clipper.z(1) / w1);
+
+        for (int i = 2; i < n; i++) {
+
+            double w2 = clipper.w(i);
+            float x2 = (float)toScreenX(clipper.x(i) / w2);
+            float y2 = (float)toScreenY(clipper.y(i) / w2);
+            float z2 = (float)(clipper.z(i) / w2);
+
+            out.add(x0, y0, z0, x1, y1, z1, x2, y2, z2, rgb);
+
+            x1 = x2;
+            y1 = y2;
+            z1 = z2;
+
+        }
+
+        return true;
+
+    }
+
+    /** Maps a normalized device X coordinate in [-1, +1] to a pixel column, whole unless in subpixel mode. */
+    private double toScreenX(double ndcX) {
+
+        double x = (ndcX + 1) * 0.5 * width;
+        return subpixel ? x : (int)x;
+
+    }
+
+    /** Maps a normalized device Y coordinate in [-1, +1] to a pixel row, whole unless in subpixel mode. */
+    private double toScreenY(double ndcY) {
+
+        double y = (ndcY + 1) * 0.5 * height;
+        return subpixel ? y : (int)y;
+
+    }
+
+    /** Modifies how a packed RGB color reacts to light. This is exact but slow; the pipeline looks the
+     *  same values up in a ShadeTable instead. */
+    public static int lightScale(int shade, double dot, double curve, double whitepoint, double blackpoint) {
+
+        // https://www.desmos.com/calculator/sfxc1zt1y0
+
+        int newR = (int)(Math.max(0.0, Math.min(255.0, Math.pow(dot, curve) * ((shade >> 16) & 0xFF) * whitepoint + blackpoint)));
+        int newG = (int)(Math.max(0.0, Math.min(255.0, Math.pow(dot, curve) * ((shade >> 8) & 0xFF)  * whitepoint + blackpoint)));
+        int newB = (int)(Math.max(0.0, Math.min(255.0, Math.pow(dot, curve) * (shade & 0xFF)         * whitepoint + blackpoint)));
+
+        return (newR << 16) | (newG << 8) | newB;
+
+    }
+
+    /** Grows the post-transform vertex arrays so that they can hold at least n vertices. */
+    private void ensureVertexCapacity(int n) {
+
+        if (vertexUsed != null && vertexUsed.length >= n)
+            return;
+
+        vertexUsed = new byte[n];
+        clipX   = new double[n];
+        clipY   = new double[n];
+        clipZ   = new double[n];
+        clipW   = new double[n];
+        screenX = new float[n];
+        screenY = new float[n];
+        screenZ = new float[n];
+        outcodes = new int[n];
+
+    }
+
+    /** Makes sure there is an output buffer and a clipper for each of n triangle chunks. */
+    private void ensureChunkCapacity(int n) {
+
+        if (chunkBuffers.length >= n)
+            return;
+
+        int old = chunkBuffers.length;
+        chunkBuffers = Arrays.copyOf(chunkBuffers, n);
+        chunkClippers = Arrays.copyOf(chunkClippers, n);
+        chunkCulled = Arrays.copyOf(chunkCulled, n);
+        for (int i = old; i < n; i++) {
+
+            chunkBuffers[i] = new TriangleBuffer(TRIANGLE_CHUNK_SIZE / 2);
+            chunkClippers[i] = new Clipper();
+
+        }
+
+    }
+
+}
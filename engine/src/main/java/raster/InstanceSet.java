@@ -0,0 +1,194 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// InstanceSet Class -- 3D Engine
+
+/*
+This class draws one Mesh many times. The geometry is shared,
+and each instance adds only a transform and a color, stored
+together in primitive arrays: twelve floats for the affine part
+of the transform, row by row without the constant last column,
+and one packed RGB int. A forest of a thousand trees costs a
+thousand of these small records rather than a thousand copies
+of the tree.
+
+The Renderer culls every instance against the view frustum with
+the Mesh's bounds and then transforms the shared vertices
+directly, so no geometry is ever copied per instance.
+ */
+
+package raster;
+
+import java.util.Arrays;
+
+public class InstanceSet {
+
+    // twelve floats per instance: rows 0-3 of the transform, columns 0-2
+    public static final int TRANSFORM_STRIDE = 12;
+
+    private final Mesh mesh;
+    private float[] transforms;
+    private int[] colors;
+
+    // the detail level each instance was drawn at last frame. Only the rendering thread
+    // touches these; a copy made for a FramePacket keeps its levels in the original set
+    private byte[] lodLevels;
+    private InstanceSet lodOwner;
+    private int count;
+
+    /** Constructor. Reserves room for the given number of instances of a Mesh. */
+    public InstanceSet(Mesh m, int capacity) {
+
+        mesh = m;
+        transforms = new float[Math.max(1, capacity) * TRANSFORM_STRIDE];
+        colors = new int[Math.max(1, capacity)];
+        lodLevels = new byte[Math.max(1, capacity)];
+        count = 0;
+
+    }
+
+    /** Constructor. */
+    public InstanceSet(Mesh m) {
+
+        this(m, 16);
+
+    }
+
+    /** Returns the Mesh shared by every instance. */
+    public Mesh mesh() {
+
+        return mesh;
+
+    }
+
+    /** Returns the number of instances. */
+    public int size() {
+
+        return count;
+
+    }
+
+    /** Removes every instance, keeping the storage for reuse. */
+    public void clear() {
+
+        count = 0;
+
+    }
+
+    /** Adds an instance placed by an affine object-to-world transform, drawn in a packed RGB color.
+     *  Returns the new instance's index. */
+    public int add(Matrix transform, int rgb) {
+
+        if (count == colors.length) {
+
+            transforms = Arrays.copyOf(transforms, transforms.length * 2);
+            colors = Arrays.copyOf(colors, colors.length * 2);
+
+        }
+
+        int i = count++;
+        setTransform(i, transform);
+        colors[i] = rgb;
+        return i;
+
+    }
+
+    /** Replaces the transform of instance i. Only the affine part of the matrix is kept. */
+    public void setTransform(int i, Matrix transform) {
+
+        double[] m = transform.m;
+        int t = i * TRANSFORM_STRIDE;
+        for (int row = 0; row < 4; row++) {
+
+            transforms[t++] = (float)m[row * 4];
+            transforms[t++] = (float)m[row * 4 + 1];
+            transforms[t++] = (float)m[row * 4 + 2];
+
+        }
+
+    }
+
+    /** Overwrites dest with the transform of instance i. Returns dest. */
+    public Matrix getTransform(int i, Matrix dest) {
+
+        double[] m = dest.m;
+        int t = i * TRANSFORM_STRIDE;
+        for (int row = 0; row < 4; row++) {
+
+            m[row * 4]     = transforms[t++];
+            m[row * 4 + 1] = transforms[t++];
+            m[row * 4 + 2] = transforms[t++];
+            m[row * 4 + 3] = row == 3 ? 1 : 0;
+
+        }
+
+        return dest;
+
+    }
+
+    /** Sets the packed RGB color of instance i. */
+    public void setColor(int i, int rgb) {
+
+        colors[i] = rgb;
+
+    }
+
+    /** Returns the packed RGB color of instance i. */
+    public int getColor(int i) {
+
+        return colors[i];
+
+    }
+
+    /** Chooses the detail level to draw instance i at, for the screen area it covers, as Mesh.selectLod does.
+     *  Each instance remembers its own level, so instances switch levels independently. Returns the level. */
+    public int updateLod(int i, double pixels) {
+
+        if (lodOwner != null)
+            return lodOwner.updateLod(i, pixels);
+
+        if (lodLevels.length <= i)
+            lodLevels = Arrays.copyOf(lodLevels, Math.max(i + 1, 2 * lodLevels.length));
+
+        int level = mesh.selectLod(pixels, lodLevels[i]);
+        lodLevels[i] = (byte)level;
+        return level;
+
+    }
+
+    /** Overwrites this set's instances with copies of another set's transforms and colors. Both sets
+     *  must share a Mesh. Detail levels chosen while drawing this copy are remembered by the original. */
+    public void copyFrom(InstanceSet other) {
+
+        if (other.mesh != mesh)
+            throw new IllegalArgumentException("Instance sets draw different meshes");
+
+        if (transforms.length < other.count * TRANSFORM_STRIDE) {
+
+            transforms = new float[other.transforms.length];
+            colors = new int[other.colors.length];
+
+        }
+
+        System.arraycopy(other.transforms, 0, transforms, 0, other.count * TRANSFORM_STRIDE);
+        System.arraycopy(other.colors, 0, colors, 0, other.count);
+        count = other.count;
+        lodOwner = other.lodOwner != null ? other.lodOwner : other;
+
+    }
+
+    /** Returns the set this one was copied from by copyFrom, or this set if it is not a copy. Copies made
+     *  for FramePackets of the same set all share one original. */
+    public InstanceSet original() {
+
+        return lodOwner != null ? lodOwner : this;
+
+    }
+
+    /** Returns the transform block, twelve floats per instance. Writes to it take effect on the next frame. */
+    public float[] transforms() {
+
+        return transforms;
+
+    }
+
+}
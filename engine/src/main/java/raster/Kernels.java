@@ -0,0 +1,181 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// Kernels Class -- 3D Engine
+
+/*
+This class holds the innermost loops of the pipeline: transforming
+vertices, filling spans of pixels, and clearing the frame. The
+loops here handle one value at a time and run on any JVM. When
+the JVM was started with the jdk.incubator.vector module, get()
+instead returns a VectorKernels, which does the same work on
+whole SIMD registers at once, such as eight vertices or eight
+pixels per instruction on AVX2.
+
+The vector class is loaded by name only after the module has
+been found, so nothing else in the engine refers to the
+incubator API, and a JVM without it never sees those classes.
+Both versions produce exactly the same results, value for value.
+Start the JVM with --add-modules jdk.incubator.vector to use the
+vector kernels, or set -Draster.simd=false to keep the scalar ones
+even then.
+ */
+
+package raster;
+
+import java.util.Arrays;
+
+public class Kernels {
+
+    private static final Kernels INSTANCE = load();
+
+    /** Returns the kernels chosen when the class was loaded: the vector kernels if the JVM can run them,
+     *  otherwise these scalar ones. */
+    public static Kernels get() {
+
+        return INSTANCE;
+
+    }
+
+    /** Returns a line telling which kernels were chosen, and how to get the vector ones if they were not,
+     *  for programs to print when they start. */
+    public static String describe() {
+
+        if (INSTANCE.getClass() != Kernels.class)
+            return "Using " + INSTANCE.name() + " kernels";
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+            return "Using scalar kernels; start the JVM with --add-modules jdk.incubator.vector for SIMD";
+        return "Using scalar kernels";
+
+    }
+
+    /** Returns a short description of these kernels. */
+    public String name() {
+
+        return "scalar";
+
+    }
+
+    /** Multiplies the points from index start up to end, stored as separate X, Y, and Z arrays, by an
+     *  affine matrix. Each point is treated as having a W of 1, and the results are written to the out arrays. */
+    public void transformPoints(Matrix ma, float[] xs, float[] ys, float[] zs, int start, int end,
+                                double[] outX, double[] outY, double[] outZ) {
+
+        double[] m = ma.m;
+        double m0 = m[0], m1 = m[1], m2  = m[2];
+        double m4 = m[4], m5 = m[5], m6  = m[6];
+        double m8 = m[8], m9 = m[9], m10 = m[10];
+        double m12 = m[12], m13 = m[13], m14 = m[14];
+
+        for (int i = start; i < end; i++) {
+
+            double x = xs[i], y = ys[i], z = zs[i];
+            outX[i] = x * m0 + y * m4 + z * m8  + m12;
+            outY[i] = x * m1 + y * m5 + z * m9  + m13;
+            outZ[i] = x * m2 + y * m6 + z * m10 + m14;
+
+        }
+
+    }
+
+    /** Multiplies the points from index start up to end, stored as separate X, Y, and Z arrays, by a projective
+     *  matrix. Each point is treated as having a W of 1, and all four result components are written to the out arrays. */
+    public void projectPoints(Matrix ma, float[] xs, float[] ys, float[] zs, int start, int end,
+                              double[] outX, double[] outY, double[] outZ, double[] outW) {
+
+        double[] m = ma.m;
+        double m0 = m[0], m1 = m[1], m2  = m[2],  m3  = m[3];
+        double m4 = m[4], m5 = m[5], m6  = m[6],  m7  = m[7];
+        double m8 = m[8], m9 = m[9], m10 = m[10], m11 = m[11];
+        double m12 = m[12], m13 = m[13], m14 = m[14], m15 = m[15];
+
+        for (int i = start; i < end; i++) {
+
+            double x = xs[i], y = ys[i], z = zs[i];
+            outX[i] = x * m0 + y * m4 + z * m8  + m12;
+            outY[i] = x * m1 + y * m5 + z * m9  + m13;
+            outZ[i] = x * m2 + y * m6 + z * m10 + m14;
+            outW[i] = x * m3 + y * m7 + z * m11 + m15;
+
+        }
+
+    }
+
+    /** Fills count pixels of a row starting at index, whose depth starts at z and steps by dz per pixel,
+     *  where they pass the depth test. */
+    public void fillSpan(int[] color, float[] depth, int index, int count, float z, float dz,
+                         int rgb, boolean depthTest) {
+
+        for (int k = 0; k < count; k++, index++) {
+
+            float zk = z + k * dz;
+            if (!depthTest || zk < depth[index]) {
+
+                depth[index] = zk;
+                color[index] = rgb;
+
+            }
+
+        }
+
+    }
+
+    /** Fills the pixels of a row span as fillSpan does, but only those inside all three edges of a triangle.
+     *  The edge functions have the given values at the first pixel and step by a01, a12, and a20 per pixel. */
+    public void scanSpan(int[] color, float[] depth, int index, int count,
+                         long e01, long e12, long e20, long a01, long a12, long a20,
+                         float z, float dz, int rgb, boolean depthTest) {
+
+        for (int k = 0; k < count; k++, index++) {
+
+            // a pixel is inside when all three edge functions are non-negative
+            float zk = z + k * dz;
+            if ((e01 | e12 | e20) >= 0 && (!depthTest || zk < depth[index])) {
+
+                depth[index] = zk;
+                color[index] = rgb;
+
+            }
+
+            e01 += a01;
+            e12 += a12;
+            e20 += a20;
+
+        }
+
+    }
+
+    /** Fills a color buffer with a packed RGB color and a depth buffer with a depth. */
+    public void clear(int[] color, int rgb, float[] depth, float z) {
+
+        Arrays.fill(color, rgb);
+        Arrays.fill(depth, z);
+
+    }
+
+    /** Picks the vector kernels if the module is present, they are not disabled, and the hardware suits them. */
+    private static Kernels load() {
+
+        if (!Boolean.parseBoolean(System.getProperty("raster.simd", "true")))
+            return new Kernels();
+
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+            return new Kernels();
+
+        try {
+
+            Class<?> vector = Class.forName("raster.VectorKernels");
+            if (!(Boolean) vector.getDeclaredMethod("isSupported").invoke(null))
+                return new Kernels();
+
+            return (Kernels) vector.getDeclaredConstructor().newInstance();
+
+        } catch (ReflectiveOperationException | LinkageError e) {
+
+            // the module is present but its classes could not be linked, as on a JVM built without it
+            return new Kernels();
+
+        }
+
+    }
+
+}
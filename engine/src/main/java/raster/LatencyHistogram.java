@@ -0,0 +1,115 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// LatencyHistogram Class -- 3D Engine
+
+/*
+This class counts durations in nanoseconds into log-linear
+buckets: every power of two is split into 32 equal buckets, so
+any recorded value is known to within about 3% from a nanosecond
+up to centuries, in a fixed 15 KB of counters. Recording is one
+atomic increment, and percentiles are read by walking the
+counts, so one thread can record while another reads.
+ */
+
+package raster;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+
+    // each power of two is split into 2^SUB_BITS buckets; values below 2 * SUB_COUNT get a bucket each
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** Adds one duration in nanoseconds. Negative durations count as zero. */
+    public void record(long nanos) {
+
+        counts.incrementAndGet(bucket(Math.max(0, nanos)));
+
+    }
+
+    /** Returns the number of durations recorded. */
+    public long count() {
+
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            total += counts.get(i);
+
+        return total;
+
+    }
+
+    /** Returns the duration in nanoseconds that a fraction q of the recorded durations do not exceed,
+     *  such as 0.99 for the 99th percentile, or 0 if nothing has been recorded. */
+    public long percentile(double q) {
+
+        long total = count();
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long)Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+
+            seen += counts.get(i);
+            if (seen >= rank)
+                return value(i);
+
+        }
+
+        // durations recorded while walking can leave the rank just out of reach
+        return max();
+
+    }
+
+    /** Returns the largest duration recorded, to the precision of its bucket, or 0 if nothing has been recorded. */
+    public long max() {
+
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+
+            if (counts.get(i) != 0)
+                return value(i);
+
+        }
+
+        return 0;
+
+    }
+
+    /** Forgets every recorded duration. */
+    public void reset() {
+
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+
+    }
+
+    /** Returns the bucket a non-negative value falls in. */
+    private static int bucket(long v) {
+
+        if (v < 2 * SUB_COUNT)
+            return (int)v;
+
+        // the top SUB_BITS + 1 bits of the value pick the bucket within its power of two
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        int mantissa = (int)(v >>> (exponent - SUB_BITS));
+        return (exponent - SUB_BITS) * SUB_COUNT + mantissa;
+
+    }
+
+    /** Returns the middle of the values that fall in bucket i. */
+    private static long value(int i) {
+
+        if (i < 2 * SUB_COUNT)
+            return i;
+
+        int shift = i / SUB_COUNT - 1;
+        long mantissa = i % SUB_COUNT + SUB_COUNT;
+        return (mantissa << shift) + ((1L << shift) >> 1);
+
+    }
+
+}
@@ -0,0 +1,412 @@
+// Adam Rilatt
+// 05 / 17 / 20
+// Matrix Class -- 3D Engine
+
+/*
+This class implements the Matrix object,
+which will be used to manipulate Vectors.
+Matrices are always 4x4 and are stored row by row in
+one flat array, so element (row, col) lives at m[row * 4 + col].
+Most operations come in two forms: one that returns a new
+object, and one that writes into a destination passed by the
+caller so that the render loop does not need to allocate.
+ */
+
+package raster;
+
+public class Matrix {
+
+    public final double[] m;
+
+    /** Default constructor. Initializes a 4x4 matrix of zeros. */
+    public Matrix() {
+
+        m = new double[16];
+
+    }
+
+    /** Constructor. Copies the values of another Matrix. */
+    public Matrix(Matrix other) {
+
+        m = other.m.clone();
+
+    }
+
+    /** Returns the element at the given row and column. */
+    public double get(int row, int col) {
+
+        return m[row * 4 + col];
+
+    }
+
+    /** Sets the element at the given row and column. */
+    public void set(int row, int col, double value) {
+
+        m[row * 4 + col] = value;
+
+    }
+
+    /** Copies the values of another Matrix into this one. */
+    public void set(Matrix other) {
+
+        System.arraycopy(other.m, 0, m, 0, 16);
+
+    }
+
+    /** Multiplies a vector by a matrix and returns the resulting vector. */
+    public static Vector multiplyVector(Matrix ma, Vector v) {
+
+        return multiplyVector(ma, v, new Vector());
+
+    }
+
+    /** Multiplies a vector by a matrix and stores the result in out, which may be v itself. Returns out. */
+    public static Vector multiplyVector(Matrix ma, Vector v, Vector out) {
+
+        double[] m = ma.m;
+        double x = v.x, y = v.y, z = v.z, w = v.w;
+
+        out.x = x * m[0] + y * m[4] + z * m[8]  + w * m[12];
+        out.y = x * m[1] + y * m[5] + z * m[9]  + w * m[13];
+        out.z = x * m[2] + y * m[6] + z * m[10] + w * m[14];
+        out.w = x * m[3] + y * m[7] + z * m[11] + w * m[15];
+
+        return out;
+
+    }
+
+    /** Multiplies the points from index start up to end, stored as separate X, Y, and Z arrays, by an
+     *  affine matrix. Each point is treated as having a W of 1, and the results are written to the out arrays. */
+    public static void transformPoints(Matrix ma, float[] xs, float[] ys, float[] zs, int start, int end,
+                                       double[] outX, double[] outY, double[] outZ) {
+
+        Kernels.get().transformPoints(ma, xs, ys, zs, start, end, outX, outY, outZ);
+
+    }
+
+    /** Multiplies the points from index start up to end, stored as separate X, Y, and Z arrays, by a projective
+     *  matrix. Each point is treated as having a W of 1, and all four result components are written to the out arrays. */
+    public static void projectPoints(Matrix ma, float[] xs, float[] ys, float[] zs, int start, int end,
+                                     double[] outX, double[] outY, double[] outZ, double[] outW) {
+
+        Kernels.get().projectPoints(ma, xs, ys, zs, start, end, outX, outY, outZ, outW);
+
+    }
+
+    /** Constructs a standard identity matrix which will only extract multiplied values. */
+    public static Matrix makeIdentity() {
+
+        return makeIdentity(new Matrix());
+
+    }
+
+    /** Overwrites dest with the identity matrix. Returns dest. */
+    public static Matrix makeIdentity(Matrix dest) {
+
+        double[] m = dest.m;
+        m[0]  = 1.0; m[1]  = 0.0; m[2]  = 0.0; m[3]  = 0.0;
+        m[4]  = 0.0; m[5]  = 1.0; m[6]  = 0.0; m[7]  = 0.0;
+        m[8]  = 0.0; m[9]  = 0.0; m[10] = 1.0; m[11] = 0.0;
+        m[12] = 0.0; m[13] = 0.0; m[14] = 0.0; m[15] = 1.0;
+        return dest;
+
+    }
+
+    /** Constructs a rotation matrix for the X axis based on a radian angle.
+     *  This should be biased in a different way than other rotation matrices
+     *  to avoid gimbal lock. */
+    public static Matrix makeRotationX(double angleRad) {
+
+        return makeRotationX(angleRad, new Matrix());
+
+    }
+
+    /** Overwrites dest with a rotation about the X axis. Returns dest. */
+    public static Matrix makeRotationX(double angleRad, Matrix dest) {
+
+        double c = Math.cos(angleRad), s = Math.sin(angleRad);
+        makeIdentity(dest);
+        dest.m[5]  = c;
+        dest.m[6]  = s;
+        dest.m[9]  = -s;
+        dest.m[10] = c;
+        return dest;
+
+    }
+
+    /** Constructs a rotation matrix for the Y axis based on a radian angle.
+     *  This should be biased in a different way than other rotation matrices
+     *  to avoid gimbal lock. */
+    public static Matrix makeRotationY(double angleRad) {
+
+        return makeRotationY(angleRad, new Matrix());
+
+    }
+
+    /** Overwrites dest with a rotation about the Y axis. Returns dest. */
+    public static Matrix makeRotationY(double angleRad, Matrix dest) {
+
+        double c = Math.cos(angleRad), s = Math.sin(angleRad);
+        makeIdentity(dest);
+        dest.m[0]  = c;
+        dest.m[2]  = s;
+        dest.m[8]  = -s;
+        dest.m[10] = c;
+        return dest;
+
+    }
+
+    /** Constructs a rotation matrix for the Z axis based on a radian angle.
+     *  This should be biased in a different way than other rotation matrices
+     *  to avoid gimbal lock. */
+    public static Matrix makeRotationZ(double angleRad) {
+
+        return makeRotationZ(angleRad, new Matrix());
+
+    }
+
+    /** Overwrites dest with a rotation about the Z axis. Returns dest. */
+    public static Matrix makeRotationZ(double angleRad, Matrix dest) {
+
+        double c = Math.cos(angleRad), s = Math.sin(angleRad);
+        makeIdentity(dest);
+        dest.m[0] = c;
+        dest.m[1] = s;
+        dest.m[4] = -s;
+        dest.m[5] = c;
+        return dest;
+
+    }
+
+    /** Constructs a translation matrix that will move Vectors by x, y, and z in their respective directions. */
+    public static Matrix makeTranslation(double x, double y, double z) {
+
+        return makeTranslation(x, y, z, new Matrix());
+
+    }
+
+    /** Overwrites dest with a translation by x, y, and z. Returns dest. */
+    public static Matrix makeTranslation(double x, double y, double z, Matrix dest) {
+
+        makeIdentity(dest);
+        dest.m[12] = x;
+        dest.m[13] = y;
+        dest.m[14] = z;
+        return dest;
+
+    }
+
+    /** Constructs a standard projection matrix based on field-of-view, screen aspect ratio, and Z-depth. */
+    public static Matrix makeProjection(double fov, double aspectRatio, double nearPlane, double farPlane) {
+
+        double invFOV = 1 / Math.tan((fov * 0.5) / 180.0 * Math.PI);
+        Matrix matProj = new Matrix();
+        matProj.m[0]  = aspectRatio * invFOV;
+        matProj.m[5]  = invFOV;
+        matProj.m[10] = farPlane / (farPlane - nearPlane);
+        matProj.m[11] = 1.0;
+        matProj.m[14] = (-farPlane * nearPlane) / (farPlane - nearPlane);
+        matProj.m[15] = 0.0;
+        return matProj;
+
+    }
+
+    /** Constructs a point-at matrix which transforms vectors multiplied by it to point at the target vector.
+     *  This allows for world movement relative to the camera. */
+    public static Matrix makePointAt(Vector position, Vector target, Vector up) {
+
+        return makePointAt(position, target, up, new Matrix());
+
+    }
+
+    /** Overwrites dest with a point-at matrix. Returns dest. */
+    public static Matrix makePointAt(Vector position, Vector target, Vector up, Matrix dest) {
+
+        double[] m = dest.m;
+        pointCoordsHelper(position, target, up, m);
+        double fx = m[0], fy = m[1], fz = m[2];
+        double ux = m[4], uy = m[5], uz = m[6];
+        double rx = m[8], ry = m[9], rz = m[10];
+
+        m[0]  = rx;         m[1]  = ry;         m[2]  = rz;         m[3]  = 0.0;
+        m[4]  = ux;         m[5]  = uy;         m[6]  = uz;         m[7]  = 0.0;
+        m[8]  = fx;         m[9]  = fy;         m[10] = fz;         m[11] = 0.0;
+        m[12] = position.x; m[13] = position.y; m[14] = position.z; m[15] = 1.0;
+
+        return dest;
+
+    }
+
+    /** Creates the inverse matrix of makePointAt, if needed. */
+    public static Matrix makeLookAt(Vector position, Vector target, Vector up) {
+
+        return makeLookAt(position, target, up, new Matrix());
+
+    }
+
+    /** Overwrites dest with the inverse of a point-at matrix. Returns dest. */
+    public static Matrix makeLookAt(Vector position, Vector target, Vector up, Matrix dest) {
+
+        double[] m = dest.m;
+        pointCoordsHelper(position, target, up, m);
+        double fx = m[0], fy = m[1], fz = m[2];
+        double ux = m[4], uy = m[5], uz = m[6];
+        double rx = m[8], ry = m[9], rz = m[10];
+
+        m[0]  = fx; m[1]  = ux; m[2]  = rx; m[3]  = 0.0;
+        m[4]  = fy; m[5]  = uy; m[6]  = ry; m[7]  = 0.0;
+        m[8]  = fz; m[9]  = uz; m[10] = rz; m[11] = 0.0;
+        m[12] = -(position.x * fx + position.y * fy + position.z * fz);
+        m[13] = -(position.x * ux + position.y * uy + position.z * uz);
+        m[14] = -(position.x * rx + position.y * ry + position.z * rz);
+        m[15] = 1.0;
+
+        return dest;
+
+    }
+
+    /** Helper method for makePointAt and makeLookAt methods. Writes the new forward, up,
+     *  and right vectors into the first three rows of m, in that order. */
+    private static void pointCoordsHelper(Vector position, Vector target, Vector up, double[] m) {
+
+        // calculate new forward vector
+        double fx = target.x - position.x, fy = target.y - position.y, fz = target.z - position.z;
+        double l = Math.sqrt(fx * fx + fy * fy + fz * fz);
+        if (l != 0.0) {
+
+            fx /= l; fy /= l; fz /= l;
+
+        }
+
+        // calculate new up vector
+        double d = up.x * fx + up.y * fy + up.z * fz;
+        double ux = up.x - fx * d, uy = up.y - fy * d, uz = up.z - fz * d;
+        l = Math.sqrt(ux * ux + uy * uy + uz * uz);
+        if (l != 0.0) {
+
+            ux /= l; uy /= l; uz /= l;
+
+        }
+
+        // calculate new right vector
+        m[0] = fx; m[1] = fy; m[2]  = fz;
+        m[4] = ux; m[5] = uy; m[6]  = uz;
+        m[8] = fy * uz - fz * uy;
+        m[9] = fz * ux - fx * uz;
+        m[10] = fx * uy - fy * ux;
+
+    }
+
+    /** Multiplies two matrices together and returns their product. */
+    public static Matrix multiply(Matrix m1, Matrix m2) {
+
+        return multiply(m1, m2, new Matrix());
+
+    }
+
+    /** Multiplies two matrices together and stores their product in dest, which may be
+     *  either of the inputs. Returns dest. */
+    public static Matrix multiply(Matrix m1, Matrix m2, Matrix dest) {
+
+        double[] a = m1.m, b = m2.m;
+
+        double b0  = b[0],  b1  = b[1],  b2  = b[2],  b3  = b[3];
+        double b4  = b[4],  b5  = b[5],  b6  = b[6],  b7  = b[7];
+        double b8  = b[8],  b9  = b[9],  b10 = b[10], b11 = b[11];
+        double b12 = b[12], b13 = b[13], b14 = b[14], b15 = b[15];
+
+        double a0 = a[0],  a1 = a[1],  a2 = a[2],  a3 = a[3];
+        double r0 = a0 * b0 + a1 * b4 + a2 * b8  + a3 * b12;
+        double r1 = a0 * b1 + a1 * b5 + a2 * b9  + a3 * b13;
+        double r2 = a0 * b2 + a1 * b6 + a2 * b10 + a3 * b14;
+        double r3 = a0 * b3 + a1 * b7 + a2 * b11 + a3 * b15;
+
+        a0 = a[4]; a1 = a[5]; a2 = a[6]; a3 = a[7];
+        double r4 = a0 * b0 + a1 * b4 + a2 * b8  + a3 * b12;
+        double r5 = a0 * b1 + a1 * b5 + a2 * b9  + a3 * b13;
+        double r6 = a0 * b2 + a1 * b6 + a2 * b10 + a3 * b14;
+        double r7 = a0 * b3 + a1 * b7 + a2 * b11 + a3 * b15;
+
+        a0 = a[8]; a1 = a[9]; a2 = a[10]; a3 = a[11];
+        double r8  = a0 * b0 + a1 * b4 + a2 * b8  + a3 * b12;
+        double r9  = a0 * b1 + a1 * b5 + a2 * b9  + a3 * b13;
+        double r10 = a0 * b2 + a1 * b6 + a2 * b10 + a3 * b14;
+        double r11 = a0 * b3 + a1 * b7 + a2 * b11 + a3 * b15;
+
+        a0 = a[12]; a1 = a[13]; a2 = a[14]; a3 = a[15];
+        double r12 = a0 * b0 + a1 * b4 + a2 * b8  + a3 * b12;
+        double r13 = a0 * b1 + a1 * b5 + a2 * b9  + a3 * b13;
+        double r14 = a0 * b2 + a1 * b6 + a2 * b10 + a3 * b14;
+        double r15 = a0 * b3 + a1 * b7 + a2 * b11 + a3 * b15;
+
+        double[] p = dest.m;
+        p[0]  = r0;  p[1]  = r1;  p[2]  = r2;  p[3]  = r3;
+        p[4]  = r4;  p[5]  = r5;  p[6]  = r6;  p[7]  = r7;
+        p[8]  = r8;  p[9]  = r9;  p[10] = r10; p[11] = r11;
+        p[12] = r12; p[13] = r13; p[14] = r14; p[15] = r15;
+
+        return dest;
+
+    }
+
+    /** Returns the inverse of a matrix, or null if it has none. */
+    public static Matrix invert(Matrix ma) {
+
+        return invert(ma, new Matrix());
+
+    }
+
+    /** Stores the inverse of a matrix in dest, which may be the input. Returns dest,
+     *  or null if the matrix has no inverse, in which case dest is left unchanged. */
+    public static Matrix invert(Matrix ma, Matrix dest) {
+
+        double[] a = ma.m;
+
+        // cofactor expansion using the 2x2 determinants of the top and bottom row pairs
+        double s0 = a[0] * a[5]  - a[4] * a[1];
+        double s1 = a[0] * a[6]  - a[4] * a[2];
+        double s2 = a[0] * a[7]  - a[4] * a[3];
+        double s3 = a[1] * a[6]  - a[5] * a[2];
+        double s4 = a[1] * a[7]  - a[5] * a[3];
+        double s5 = a[2] * a[7]  - a[6] * a[3];
+
+        double c5 = a[10] * a[15] - a[14] * a[11];
+        double c4 = a[9]  * a[15] - a[13] * a[11];
+        double c3 = a[9]  * a[14] - a[13] * a[10];
+        double c2 = a[8]  * a[15] - a[12] * a[11];
+        double c1 = a[8]  * a[14] - a[12] * a[10];
+        double c0 = a[8]  * a[13] - a[12] * a[9];
+
+        double det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+        if (det == 0 || Double.isNaN(det))
+            return null;
+
+        double inv = 1.0 / det;
+        double r0  = ( a[5]  * c5 - a[6]  * c4 + a[7]  * c3) * inv;
+        double r1  = (-a[1]  * c5 + a[2]  * c4 - a[3]  * c3) * inv;
+        double r2  = ( a[13] * s5 - a[14] * s4 + a[15] * s3) * inv;
+        double r3  = (-a[9]  * s5 + a[10] * s4 - a[11] * s3) * inv;
+        double r4  = (-a[4]  * c5 + a[6]  * c2 - a[7]  * c1) * inv;
+        double r5  = ( a[0]  * c5 - a[2]  * c2 + a[3]  * c1) * inv;
+        double r6  = (-a[12] * s5 + a[14] * s2 - a[15] * s1) * inv;
+        double r7  = ( a[8]  * s5 - a[10] * s2 + a[11] * s1) * inv;
+        double r8  = ( a[4]  * c4 - a[5]  * c2 + a[7]  * c0) * inv;
+        double r9  = (-a[0]  * c4 + a[1]  * c2 - a[3]  * c0) * inv;
+        double r10 = ( a[12] * s4 - a[13] * s2 + a[15] * s0) * inv;
+        double r11 = (-a[8]  * s4 + a[9]  * s2 - a[11] * s0) * inv;
+        double r12 = (-a[4]  * c3 + a[5]  * c1 - a[6]  * c0) * inv;
+        double r13 = ( a[0]  * c3 - a[1]  * c1 + a[2]  * c0) * inv;
+        double r14 = (-a[12] * s3 + a[13] * s1 - a[14] * s0) * inv;
+        double r15 = ( a[8]  * s3 - a[9]  * s1 + a[10] * s0) * inv;
+
+        double[] p = dest.m;
+        p[0]  = r0;  p[1]  = r1;  p[2]  = r2;  p[3]  = r3;
+        p[4]  = r4;  p[5]  = r5;  p[6]  = r6;  p[7]  = r7;
+        p[8]  = r8;  p[9]  = r9;  p[10] = r10; p[11] = r11;
+        p[12] = r12; p[13] = r13; p[14] = r14; p[15] = r15;
+
+        return dest;
+
+    }
+
+}
@@ -0,0 +1,463 @@
+// Adam Rilatt
+// 05 / 17 / 20
+// Mesh Class -- 3D Raster Engine
+
+/*
+This class implements a Mesh object, which holds
+indexed triangle data to be drawn by the Engine.
+Vertex positions are stored once each in primitive arrays,
+and every Triangle is three indexes into those arrays, so
+a vertex shared by several triangles only has to be transformed
+once per frame. Meshes represent "objects" in the Engine world.
+Parsed geometry is kept in a MeshCache file beside the .obj,
+so only the first load of an asset has to parse text.
+Each Mesh also carries its own transform, which places it in
+the world, and bounds that let the Renderer skip it entirely
+when it is outside the view.
+
+Detailed meshes also keep a chain of simplified copies, each
+with about half the triangles of the one before. Every frame
+the Renderer draws the coarsest level that still has enough
+triangles for the Mesh's size on screen.
+ */
+
+package raster;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+public class Mesh {
+
+    // meshes with fewer triangles than this are drawn at full detail only
+    public static final int LOD_MIN_TRIANGLES = 1024;
+
+    // levels stop once they would have fewer triangles than this
+    public static final int LOD_FLOOR_TRIANGLES = 64;
+    public static final int MAX_LOD_LEVELS = 6;
+
+    // a level is detailed enough while it has one triangle per this many pixels of screen area
+    public static final double PIXELS_PER_TRIANGLE = 6.0;
+
+    // a coarser level is only switched to once it has this fraction more triangles than needed,
+    // so that a Mesh sitting near a threshold does not flicker between levels
+    public static final double LOD_HYSTERESIS = 0.25;
+
+    // vertex positions, stored as separate X, Y, and Z arrays
+    private float[] xs, ys, zs;
+    private int vertexCount;
+
+    // three vertex indexes per triangle, listed in clockwise order
+    private int[] indices;
+    private int triangleCount;
+
+    // the unit normal of every triangle in object space, computed whenever the geometry changes
+    private float[] normalXs, normalYs, normalZs;
+
+    // bounding box and sphere of the vertices, refitted whenever the geometry changes
+    private final Bounds bounds;
+
+    // object-to-world transform, applied before the world matrix passed to the Renderer
+    private final Matrix transform;
+
+    // simplified copies of this Mesh, from finest to coarsest; level 0 is the Mesh itself
+    private Mesh[] lods;
+    private int lodLevel;
+
+    private Color color;
+    private String mapFilePath;
+
+    // whether the Mesh is drawn first and used to hide the meshes behind it
+    private boolean occluder;
+
+    // counts changes to the geometry and detail levels, so a Renderer can tell the Mesh looks different
+    private int version;
+
+    /** Default constructor. */
+    public Mesh() {
+
+        xs = new float[0];
+        ys = new float[0];
+        zs = new float[0];
+        indices = new int[0];
+        normalXs = new float[0];
+        normalYs = new float[0];
+        normalZs = new float[0];
+        bounds = new Bounds();
+        transform = Matrix.makeIdentity();
+        lods = new Mesh[0];
+        color = Color.WHITE;
+
+    }
+
+    /** Constructor. Attempts to read .obj data from a filepath, using the binary cache when it is up to date. */
+    public boolean loadFromFile(String filePath) {
+
+        return loadFromFile(filePath, true);
+
+    }
+
+    /** Constructor. Attempts to read .obj data from a filepath. When useCache is set, a current MeshCache
+     *  file is loaded instead of the .obj, and a fresh one is written after parsing. */
+    public boolean loadFromFile(String filePath, boolean useCache) {
+
+        mapFilePath = filePath;
+        Path source = Paths.get(mapFilePath);
+        MeshCache cache = new MeshCache(Boolean.getBoolean("raster.cache.verify"));
+
+        if (useCache) {
+
+            try {
+
+                if (cache.load(source, this))
+                    return true;
+
+            } catch (IOException | RuntimeException e) {
+
+                // an unreadable or malformed cache is treated as a miss; the .obj is still authoritative
+                System.err.println("Could not read mesh cache for " + filePath + ": " + e);
+
+            }
+
+        }
+
+        // the parser maps the file into memory and reads large files in parallel
+        try {
+
+            new ObjParser(ForkJoinPool.commonPool()).load(source, this);
+
+        } catch (IOException e) {
+
+            e.printStackTrace();
+            return false;
+
+        }
+
+        // the detail levels are cached along with the geometry, so they are only built once per asset
+        if (triangleCount >= LOD_MIN_TRIANGLES)
+            buildLods();
+
+        if (useCache) {
+
+            try {
+
+                cache.save(source, this);
+
+            } catch (IOException e) {
+
+                // read-only asset directories just go without a cache
+                System.err.println("Could not write mesh cache for " + filePath + ": " + e);
+
+            }
+
+        }
+
+        // .obj file successfully loaded
+        return true;
+
+    }
+
+    /** Replaces the Mesh's geometry. Triangle i uses the vertices at indices[3i], indices[3i + 1],
+     *  and indices[3i + 2], which must be valid positions in the coordinate arrays. The arrays are kept,
+     *  not copied; call this again after changing them so that the bounds and normals are refitted. */
+    public void setGeometry(float[] newXs, float[] newYs, float[] newZs, int[] newIndices) {
+
+        adoptGeometry(newXs, newYs, newZs, newIndices);
+        bounds.fit(xs, ys, zs, vertexCount);
+        computeNormals();
+
+    }
+
+    /** Replaces the Mesh's geometry as setGeometry does, but with its triangle normals and bounds already
+     *  known, as they are when read from a MeshCache file, so neither is computed again. */
+    void setGeometry(float[] newXs, float[] newYs, float[] newZs, int[] newIndices,
+                     float[] newNormalXs, float[] newNormalYs, float[] newNormalZs, Bounds newBounds) {
+
+        if (newNormalXs.length != newIndices.length / 3 || newNormalYs.length != newNormalXs.length
+                || newNormalZs.length != newNormalXs.length)
+            throw new IllegalArgumentException("One normal is needed per triangle");
+
+        adoptGeometry(newXs, newYs, newZs, newIndices);
+        normalXs = newNormalXs;
+        normalYs = newNormalYs;
+        normalZs = newNormalZs;
+        bounds.set(newBounds);
+
+    }
+
+    /** Keeps new vertex and index arrays, dropping the detail levels made from the old ones. */
+    private void adoptGeometry(float[] newXs, float[] newYs, float[] newZs, int[] newIndices) {
+
+        if (newYs.length != newXs.length || newZs.length != newXs.length || newIndices.length % 3 != 0)
+            throw new IllegalArgumentException("Mismatched vertex arrays or incomplete triangle");
+
+        xs = newXs;
+        ys = newYs;
+        zs = newZs;
+        vertexCount = newXs.length;
+        indices = newIndices;
+        triangleCount = newIndices.length / 3;
+
+        // any detail levels were made from the old geometry
+        lods = new Mesh[0];
+        lodLevel = 0;
+        version++;
+
+    }
+
+    /** Builds the chain of simplified levels, each with about half the triangles of the one before,
+     *  by quadric-error edge collapse. Replaces any existing levels. */
+    public void buildLods() {
+
+        MeshSimplifier simplifier = new MeshSimplifier();
+        Mesh[] levels = new Mesh[MAX_LOD_LEVELS - 1];
+        int count = 0;
+        Mesh previous = this;
+        while (count < levels.length && previous.triangleCount / 2 >= LOD_FLOOR_TRIANGLES) {
+
+            // each level is simplified from the last, which is much faster than starting over
+            // from the full Mesh and gives nearly the same result
+            Mesh level = new Mesh();
+            // every level is kept inside this Mesh's bounds, which the Renderer culls all of them by
+            simplifier.simplify(previous.xs, previous.ys, previous.zs, previous.indices,
+                                previous.triangleCount / 2, bounds, level);
+
+            // a Mesh that cannot be reduced much further is not worth another level
+            if (level.triangleCount > previous.triangleCount * 3 / 4)
+                break;
+
+            levels[count++] = level;
+            previous = level;
+
+        }
+
+        setLods(Arrays.copyOf(levels, count));
+
+    }
+
+    /** Replaces the simplified levels, ordered from finest to coarsest, not including the Mesh itself. */
+    public void setLods(Mesh[] levels) {
+
+        lods = levels.clone();
+        lodLevel = 0;
+        version++;
+
+    }
+
+    /** Returns the number of detail levels, including the full Mesh as level 0. */
+    public int lodCount() {
+
+        return lods.length + 1;
+
+    }
+
+    /** Returns detail level i. Level 0 is the Mesh itself; higher levels have fewer triangles. */
+    public Mesh lod(int level) {
+
+        return level == 0 ? this : lods[level - 1];
+
+    }
+
+    /** Chooses the level to draw for a Mesh covering the given screen area in pixels, given the level
+     *  drawn last frame. Switching to a finer level happens at once, but switching to a coarser level
+     *  waits until it has a margin to spare, so the choice does not flip back and forth. */
+    public int selectLod(double pixels, int current) {
+
+        double needed = pixels / PIXELS_PER_TRIANGLE;
+
+        // the coarsest level with enough triangles, and the coarsest with enough plus the margin
+        int fine = 0, coarse = 0;
+        for (int level = lods.length; level > 0; level--) {
+
+            if (lods[level - 1].triangleCount >= needed) {
+
+                fine = level;
+                break;
+
+            }
+
+        }
+
+        for (int level = fine; level > 0; level--) {
+
+            if (lods[level - 1].triangleCount >= needed * (1 + LOD_HYSTERESIS)) {
+
+                coarse = level;
+                break;
+
+            }
+
+        }
+
+        current = Math.min(current, lods.length);
+        if (current > fine)
+            return fine;
+
+        return Math.max(current, coarse);
+
+    }
+
+    /** Chooses the level to draw this frame, as selectLod does, remembering it for the next frame. Returns the level. */
+    public int updateLod(double pixels) {
+
+        lodLevel = selectLod(pixels, lodLevel);
+        return lodLevel;
+
+    }
+
+    /** Returns a number that changes whenever the geometry or detail levels are replaced. */
+    public int version() {
+
+        return version;
+
+    }
+
+    /** Returns the number of unique vertices in the Mesh. */
+    public int vertexCount() {
+
+        return vertexCount;
+
+    }
+
+    /** Returns the number of triangles in the Mesh. */
+    public int triangleCount() {
+
+        return triangleCount;
+
+    }
+
+    /** Returns the X coordinates of every vertex. */
+    public float[] xs() {
+
+        return xs;
+
+    }
+
+    /** Returns the Y coordinates of every vertex. */
+    public float[] ys() {
+
+        return ys;
+
+    }
+
+    /** Returns the Z coordinates of every vertex. */
+    public float[] zs() {
+
+        return zs;
+
+    }
+
+    /** Returns the index buffer. Triangle i uses the vertices at indices[3i], indices[3i + 1], and indices[3i + 2]. */
+    public int[] indices() {
+
+        return indices;
+
+    }
+
+    /** Returns the X components of every triangle's unit normal, in object space. */
+    public float[] normalXs() {
+
+        return normalXs;
+
+    }
+
+    /** Returns the Y components of every triangle's unit normal, in object space. */
+    public float[] normalYs() {
+
+        return normalYs;
+
+    }
+
+    /** Returns the Z components of every triangle's unit normal, in object space. */
+    public float[] normalZs() {
+
+        return normalZs;
+
+    }
+
+    /** Returns the object-space bounds of the Mesh's vertices. */
+    public Bounds bounds() {
+
+        return bounds;
+
+    }
+
+    /** Returns the object-to-world transform of the Mesh. It is the identity unless set. */
+    public Matrix getTransform() {
+
+        return transform;
+
+    }
+
+    /** Copies a new object-to-world transform into the Mesh. */
+    public void setTransform(Matrix m) {
+
+        transform.set(m);
+
+    }
+
+    /** Returns the color that the Mesh's triangles should be drawn with. */
+    public Color getColor() {
+
+        return color;
+
+    }
+
+    /** Sets the color that the Mesh's triangles should be drawn with. */
+    public void setColor(Color c) {
+
+        color = c;
+
+    }
+
+    /** Returns whether the Mesh is an occluder. */
+    public boolean isOccluder() {
+
+        return occluder;
+
+    }
+
+    /** Marks the Mesh as an occluder: a large, solid object such as a wall or floor that is drawn before the
+     *  rest of the scene, so that meshes entirely hidden behind it can be skipped. */
+    public void setOccluder(boolean o) {
+
+        occluder = o;
+
+    }
+
+    /** Computes the unit normal of every triangle from its vertices. Degenerate triangles get a zero normal,
+     *  which faces neither toward nor away from anything. */
+    private void computeNormals() {
+
+        normalXs = new float[triangleCount];
+        normalYs = new float[triangleCount];
+        normalZs = new float[triangleCount];
+
+        for (int t = 0; t < triangleCount; t++) {
+
+            int a = indices[3 * t], b = indices[3 * t + 1], c = indices[3 * t + 2];
+
+            // perform cross product of the two lines to obtain the triangle's surface normal,
+            // then normalize it into [-1, 1]
+            double l1x = xs[b] - xs[a], l1y = ys[b] - ys[a], l1z = zs[b] - zs[a];
+            double l2x = xs[c] - xs[a], l2y = ys[c] - ys[a], l2z = zs[c] - zs[a];
+            double nx = l1y * l2z - l1z * l2y;
+            double ny = l1z * l2x - l1x * l2z;
+            double nz = l1x * l2y - l1y * l2x;
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length != 0.0) {
+
+                normalXs[t] = (float)(nx / length);
+                normalYs[t] = (float)(ny / length);
+                normalZs[t] = (float)(nz / length);
+
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,376 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// MeshCache Class -- 3D Engine
+
+/*
+This class stores parsed Mesh geometry in a compact binary file
+next to the .obj it came from, so later runs can skip parsing.
+The cache file is a fixed header followed by the arrays exactly
+as a Mesh holds them in memory:
+
+    magic, version                  two ints
+    source size, mtime, CRC32C      three longs
+    vertex count, index count       two ints
+    detail level count              one int
+    padding to 64 bytes
+    X, Y, Z coordinates             three float arrays
+    indexes                         one int array
+    triangle normal X, Y, Z         three float arrays
+    bounding box and sphere         ten floats
+
+followed by each simplified detail level of the Mesh, coarser
+and coarser, as a vertex count and index count and then the
+same arrays and bounds.
+
+Everything is little-endian. Loading maps each array's region of
+the file and bulk-copies it into the Mesh's own array, so there
+is no parsing or per-element decoding, and since the normals and
+bounds are stored too, nothing is computed from the geometry
+again; the indexes are only checked to be in range, so a damaged
+file is rejected rather than failing once drawn. Each region is mapped on its own, with long offsets, so
+files larger than one mapping can hold still load. The mappings
+are only used for the copy and are released with the file.
+
+A cache file is only used while the source's size and
+modification time still match its header. With the system
+property raster.cache.verify set to true, the source's CRC32C
+must match as well, which catches edits that keep both, at the
+cost of reading the whole source on every load.
+ */
+
+package raster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+public class MeshCache {
+
+    public static final String EXTENSION = ".rmesh";
+
+    private static final int MAGIC = 0x48534D52;     // "RMSH" when read as little-endian bytes
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = 64;
+    private static final int BOUNDS_SIZE = 40;
+
+    // the most array elements copied out of one mapping
+    private static final int ELEMENTS_PER_MAP = 1 << 28;
+
+    private final boolean verifyHash;
+
+    /** Default constructor. Cache files are trusted when the source's size and modification time match. */
+    public MeshCache() {
+
+        this(false);
+
+    }
+
+    /** Constructor. When verifyHash is set, the source file is also hashed on every load and compared against
+     *  the cache header. This catches changes that keep the same size and time, at the cost of reading the
+     *  whole source. */
+    public MeshCache(boolean verifyHash) {
+
+        this.verifyHash = verifyHash;
+
+    }
+
+    /** Returns the path of the cache file for a source file. */
+    public static Path cacheFileFor(Path source) {
+
+        return source.resolveSibling(source.getFileName() + EXTENSION);
+
+    }
+
+    /** Loads the cached geometry for a source file into mesh. Returns false, leaving the mesh
+     *  untouched, if there is no cache file or it is out of date. */
+    public boolean load(Path source, Mesh mesh) throws IOException {
+
+        Path cache = cacheFileFor(source);
+        if (!Files.isRegularFile(cache) || !Files.isRegularFile(source))
+            return false;
+
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                return false;
+
+            ByteBuffer header = map(channel, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+                return false;
+
+            if (header.getLong(8) != Files.size(source)
+                    || header.getLong(16) != Files.getLastModifiedTime(source).toMillis())
+                return false;
+
+            if (verifyHash && header.getLong(24) != hash(source))
+                return false;
+
+            int levels = header.getInt(40);
+            if (levels < 0 || levels >= Mesh.MAX_LOD_LEVELS)
+                return false;
+
+            Mesh base = readGeometry(channel, size, header.getInt(32), header.getInt(36), HEADER_SIZE);
+            if (base == null)
+                return false;
+
+            // every detail level starts with its own two counts
+            Mesh[] lods = new Mesh[levels];
+            long position = HEADER_SIZE + sizeOf(base);
+            for (int level = 0; level < levels; level++) {
+
+                if (position + 8 > size)
+                    return false;
+
+                ByteBuffer counts = map(channel, position, 8);
+                lods[level] = readGeometry(channel, size, counts.getInt(0), counts.getInt(4), position + 8);
+                if (lods[level] == null)
+                    return false;
+
+                position += 8 + sizeOf(lods[level]);
+
+            }
+
+            if (position != size)
+                return false;
+
+            mesh.setGeometry(base.xs(), base.ys(), base.zs(), base.indices(),
+                             base.normalXs(), base.normalYs(), base.normalZs(), base.bounds());
+            mesh.setLods(lods);
+            return true;
+
+        }
+
+    }
+
+    /** Writes a Mesh's geometry to the cache file for its source. The file is written under a temporary
+     *  name and then moved into place, so other processes never see it half-written. */
+    public void save(Path source, Mesh mesh) throws IOException {
+
+        Path cache = cacheFileFor(source);
+        Path temp = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+
+        try {
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING)) {
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION);
+                header.putLong(Files.size(source));
+                header.putLong(Files.getLastModifiedTime(source).toMillis());
+                header.putLong(hash(source));
+                header.putInt(mesh.vertexCount()).putInt(mesh.indices().length);
+                header.putInt(mesh.lodCount() - 1);
+                header.clear();
+                writeFully(channel, header);
+
+                ByteBuffer data = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+                writeGeometry(channel, data, mesh);
+                for (int level = 1; level < mesh.lodCount(); level++) {
+
+                    Mesh lod = mesh.lod(level);
+                    data.clear();
+                    data.putInt(lod.vertexCount()).putInt(lod.indices().length).flip();
+                    writeFully(channel, data);
+                    writeGeometry(channel, data, lod);
+
+                }
+
+            }
+
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } finally {
+
+            Files.deleteIfExists(temp);
+
+        }
+
+    }
+
+    /** Reads geometry with the given counts whose arrays start at dataAt in a file of the given size.
+     *  Returns null if the counts or indexes are out of range or the arrays run past the end of the file. */
+    private static Mesh readGeometry(FileChannel channel, long size, int nVerts, int nIndices, long dataAt)
+            throws IOException {
+
+        if (nVerts < 0 || nIndices < 0 || nIndices % 3 != 0 || dataAt + sizeOf(nVerts, nIndices) > size)
+            return null;
+
+        int nTris = nIndices / 3;
+        long at = dataAt;
+        float[] xs = readFloats(channel, at, nVerts);
+        float[] ys = readFloats(channel, at += 4L * nVerts, nVerts);
+        float[] zs = readFloats(channel, at += 4L * nVerts, nVerts);
+        int[] indices = readInts(channel, at += 4L * nVerts, nIndices);
+
+        // a damaged file can keep every size right, and an index out of range would only fail once drawing
+        for (int i : indices)
+            if (i < 0 || i >= nVerts)
+                return null;
+
+        float[] normalXs = readFloats(channel, at += 4L * nIndices, nTris);
+        float[] normalYs = readFloats(channel, at += 4L * nTris, nTris);
+        float[] normalZs = readFloats(channel, at += 4L * nTris, nTris);
+
+        ByteBuffer box = map(channel, at + 4L * nTris, BOUNDS_SIZE);
+        Bounds bounds = new Bounds();
+        bounds.minX = box.getFloat(0);
+        bounds.minY = box.getFloat(4);
+        bounds.minZ = box.getFloat(8);
+        bounds.maxX = box.getFloat(12);
+        bounds.maxY = box.getFloat(16);
+        bounds.maxZ = box.getFloat(20);
+        bounds.centerX = box.getFloat(24);
+        bounds.centerY = box.getFloat(28);
+        bounds.centerZ = box.getFloat(32);
+        bounds.radius = box.getFloat(36);
+
+        Mesh geometry = new Mesh();
+        geometry.setGeometry(xs, ys, zs, indices, normalXs, normalYs, normalZs, bounds);
+        return geometry;
+
+    }
+
+    /** Maps a region of a file for reading, in little-endian order. */
+    private static ByteBuffer map(FileChannel channel, long at, long bytes) throws IOException {
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, at, bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+    }
+
+    /** Copies n floats starting at a file offset into a new array, mapping a piece of the file at a time. */
+    private static float[] readFloats(FileChannel channel, long at, int n) throws IOException {
+
+        float[] values = new float[n];
+        for (int start = 0; start < n; start += ELEMENTS_PER_MAP) {
+
+            int count = Math.min(ELEMENTS_PER_MAP, n - start);
+            map(channel, at + 4L * start, 4L * count).asFloatBuffer().get(values, start, count);
+
+        }
+
+        return values;
+
+    }
+
+    /** Copies n ints starting at a file offset into a new array, mapping a piece of the file at a time. */
+    private static int[] readInts(FileChannel channel, long at, int n) throws IOException {
+
+        int[] values = new int[n];
+        for (int start = 0; start < n; start += ELEMENTS_PER_MAP) {
+
+            int count = Math.min(ELEMENTS_PER_MAP, n - start);
+            map(channel, at + 4L * start, 4L * count).asIntBuffer().get(values, start, count);
+
+        }
+
+        return values;
+
+    }
+
+    /** Returns the number of bytes a Mesh's arrays and bounds take in the file. */
+    private static long sizeOf(Mesh geometry) {
+
+        return sizeOf(geometry.vertexCount(), geometry.indices().length);
+
+    }
+
+    /** Returns the number of bytes the arrays and bounds of geometry with the given counts take in the file. */
+    private static long sizeOf(int nVerts, int nIndices) {
+
+        return 12L * nVerts + 4L * nIndices + 12L * (nIndices / 3) + BOUNDS_SIZE;
+
+    }
+
+    /** Writes a Mesh's arrays and bounds. */
+    private static void writeGeometry(FileChannel channel, ByteBuffer data, Mesh geometry) throws IOException {
+
+        int nVerts = geometry.vertexCount();
+        int[] indices = geometry.indices();
+        int nTris = geometry.triangleCount();
+        writeFloats(channel, data, geometry.xs(), nVerts);
+        writeFloats(channel, data, geometry.ys(), nVerts);
+        writeFloats(channel, data, geometry.zs(), nVerts);
+        writeInts(channel, data, indices, indices.length);
+        writeFloats(channel, data, geometry.normalXs(), nTris);
+        writeFloats(channel, data, geometry.normalYs(), nTris);
+        writeFloats(channel, data, geometry.normalZs(), nTris);
+
+        Bounds b = geometry.bounds();
+        data.clear();
+        data.putFloat(b.minX).putFloat(b.minY).putFloat(b.minZ);
+        data.putFloat(b.maxX).putFloat(b.maxY).putFloat(b.maxZ);
+        data.putFloat(b.centerX).putFloat(b.centerY).putFloat(b.centerZ).putFloat(b.radius);
+        data.flip();
+        writeFully(channel, data);
+
+    }
+
+    /** Returns the CRC32C of a file's contents. */
+    public static long hash(Path file) throws IOException {
+
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+            while (channel.read(buf) > 0) {
+
+                buf.flip();
+                crc.update(buf);
+                buf.clear();
+
+            }
+
+        }
+
+        return crc.getValue();
+
+    }
+
+    /** Writes the first n floats of an array through a staging buffer. */
+    private static void writeFloats(FileChannel channel, ByteBuffer data, float[] values, int n) throws IOException {
+
+        int perBatch = data.capacity() / 4;
+        for (int start = 0; start < n; start += perBatch) {
+
+            int count = Math.min(perBatch, n - start);
+            data.clear();
+            data.asFloatBuffer().put(values, start, count);
+            data.limit(count * 4);
+            writeFully(channel, data);
+
+        }
+
+    }
+
+    /** Writes the first n ints of an array through a staging buffer. */
+    private static void writeInts(FileChannel channel, ByteBuffer data, int[] values, int n) throws IOException {
+
+        int perBatch = data.capacity() / 4;
+        for (int start = 0; start < n; start += perBatch) {
+
+            int count = Math.min(perBatch, n - start);
+            data.clear();
+            data.asIntBuffer().put(values, start, count);
+            data.limit(count * 4);
+            writeFully(channel, data);
+
+        }
+
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+
+        while (buf.hasRemaining())
+            channel.write(buf);
+
+    }
+
+}
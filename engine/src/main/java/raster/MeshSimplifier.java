@@ -0,0 +1,645 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// MeshSimplifier Class -- 3D Engine
+
+/*
+This class reduces a triangle mesh to fewer triangles by
+collapsing edges, choosing the cheapest collapses by quadric
+error (Garland and Heckbert). Every vertex carries a 4x4
+symmetric matrix summing the squared distances to the planes
+of the triangles around it, so the error of merging two
+vertices at a point is a single quadratic form, and the best
+point solves a 3x3 system.
+
+Rather than keeping a priority queue of edges, the collapse
+loop sweeps all triangles with an error threshold that grows
+every pass, collapsing any edge under it. This gives nearly the
+same result as strict cheapest-first ordering at a fraction of
+the cost. A collapse is skipped if it would flip a neighboring
+triangle, and open borders are only collapsed along themselves,
+so silhouettes and holes keep their shape.
+
+Coordinates are scaled into a unit box while simplifying, so
+the thresholds do not depend on the size of the model. A merged
+vertex goes where its quadric is smallest, which can lie outside
+the input's bounds, so the output is pulled back inside the
+bounding sphere and box it is given, by default the input's own.
+A Mesh's detail levels then never reach past the bounds the
+Renderer culls the full Mesh by.
+
+The collapse loop is a Java port of Sven Forstmann's Fast Quadric
+Mesh Simplification (https://github.com/sp4cerat/Fast-Quadric-Mesh-Simplification):
+its threshold schedule, flip test, border handling, and in-place
+reuse of the reference lists follow that code, which is
+distributed under the MIT license below.
+
+    Copyright (c) 2014 Sven Forstmann
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package raster;
+
+import java.util.Arrays;
+
+public class MeshSimplifier {
+
+    private static final int MAX_PASSES = 100;
+
+    // passes between compacting the triangle list and rebuilding vertex references
+    private static final int REBUILD_INTERVAL = 5;
+
+    // larger values raise the threshold faster: quicker, but a little lower in quality
+    private static final double AGGRESSIVENESS = 7.0;
+
+    // vertices, scaled into the unit box, and their quadrics (ten unique values each)
+    private double[] px, py, pz;
+    private double[] quadric;
+    private boolean[] border;
+    private int vertexCount;
+
+    // triangles, with the error of each of their three edges and the smallest of the three
+    private int[] tv;
+    private double[] edgeError;
+    private double[] normal;
+    private boolean[] deleted, dirty;
+    private int triangleCount;
+
+    // for each vertex, a run of (triangle, corner) references in refTri / refCorner
+    private int[] refStart, refCount;
+    private int[] refTri, refCorner;
+    private int refSize;
+
+    // scratch space
+    private boolean[] collapse0 = new boolean[16], collapse1 = new boolean[16];
+    private final double[] point = new double[3];
+
+    // the scale applied to fit the input in a unit box
+    private double offsetX, offsetY, offsetZ, scale;
+
+    // the sphere and box the output is kept inside
+    private final Bounds limits = new Bounds();
+
+    /** Simplifies the mesh in the coordinate and index arrays down to about targetTriangles triangles,
+     *  and stores the result in out, inside the bounds of the input. The input arrays are not changed. */
+    public void simplify(float[] xs, float[] ys, float[] zs, int[] indices, int targetTriangles, Mesh out) {
+
+        limits.fit(xs, ys, zs, xs.length);
+        simplify(xs, ys, zs, indices, targetTriangles, limits, out);
+
+    }
+
+    /** Simplifies as above, keeping the output inside the given bounds, which must hold the input. */
+    public void simplify(float[] xs, float[] ys, float[] zs, int[] indices, int targetTriangles, Bounds within,
+                         Mesh out) {
+
+        limits.set(within);
+        load(xs, ys, zs, indices);
+
+        int startCount = triangleCount;
+        int deletedCount = 0;
+        for (int pass = 0; pass < MAX_PASSES && startCount - deletedCount > targetTriangles; pass++) {
+
+            if (pass % REBUILD_INTERVAL == 0)
+                updateMesh(pass);
+
+            Arrays.fill(dirty, 0, triangleCount, false);
+
+            // only collapse edges whose error is under a threshold that rises every pass
+            double threshold = 1e-9 * Math.pow(pass + 3, AGGRESSIVENESS);
+
+            for (int t = 0; t < triangleCount && startCount - deletedCount > targetTriangles; t++) {
+
+                if (deleted[t] || dirty[t] || edgeError[4 * t + 3] > threshold)
+                    continue;
+
+                for (int corner = 0; corner < 3; corner++) {
+
+                    if (edgeError[4 * t + corner] >= threshold)
+                        continue;
+
+                    int i0 = tv[3 * t + corner], i1 = tv[3 * t + (corner + 1) % 3];
+                    if (border[i0] != border[i1])
+                        continue;
+
+                    // the merged vertex goes wherever the combined quadric is smallest
+                    collapseError(i0, i1, point);
+                    collapse0 = ensureCapacity(collapse0, refCount[i0]);
+                    collapse1 = ensureCapacity(collapse1, refCount[i1]);
+                    if (flipped(point, i0, i1, collapse0) || flipped(point, i1, i0, collapse1))
+                        continue;
+
+                    px[i0] = point[0];
+                    py[i0] = point[1];
+                    pz[i0] = point[2];
+                    for (int k = 0; k < 10; k++)
+                        quadric[10 * i0 + k] += quadric[10 * i1 + k];
+
+                    // move both vertices' triangles over to i0, dropping the ones the collapse destroyed
+                    int start = refSize;
+                    deletedCount += updateTriangles(i0, i0, collapse0);
+                    deletedCount += updateTriangles(i0, i1, collapse1);
+                    int count = refSize - start;
+
+                    // reuse i0's old reference run if the new one fits, otherwise point it at the new run
+                    if (count <= refCount[i0]) {
+
+                        System.arraycopy(refTri, start, refTri, refStart[i0], count);
+                        System.arraycopy(refCorner, start, refCorner, refStart[i0], count);
+                        refSize = start;
+
+                    } else {
+
+                        refStart[i0] = start;
+
+                    }
+
+                    refCount[i0] = count;
+                    break;
+
+                }
+
+            }
+
+        }
+
+        compact(out);
+
+    }
+
+    /** Copies the input into working arrays, scaled into the unit box. */
+    private void load(float[] xs, float[] ys, float[] zs, int[] indices) {
+
+        vertexCount = xs.length;
+        triangleCount = indices.length / 3;
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < vertexCount; i++) {
+
+            minX = Math.min(minX, xs[i]); maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]); maxY = Math.max(maxY, ys[i]);
+            minZ = Math.min(minZ, zs[i]); maxZ = Math.max(maxZ, zs[i]);
+
+        }
+
+        offsetX = minX;
+        offsetY = minY;
+        offsetZ = minZ;
+        double extent = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+        scale = extent > 0 ? extent : 1;
+
+        px = new double[vertexCount];
+        py = new double[vertexCount];
+        pz = new double[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+
+            px[i] = (xs[i] - offsetX) / scale;
+            py[i] = (ys[i] - offsetY) / scale;
+            pz[i] = (zs[i] - offsetZ) / scale;
+
+        }
+
+        quadric = new double[10 * vertexCount];
+        border = new boolean[vertexCount];
+        refStart = new int[vertexCount];
+        refCount = new int[vertexCount];
+
+        tv = Arrays.copyOf(indices, 3 * triangleCount);
+        edgeError = new double[4 * triangleCount];
+        normal = new double[3 * triangleCount];
+        deleted = new boolean[triangleCount];
+        dirty = new boolean[triangleCount];
+
+        refTri = new int[3 * triangleCount];
+        refCorner = new int[3 * triangleCount];
+
+    }
+
+    /** Compacts the triangle list and rebuilds the vertex references. On the first pass, also computes
+     *  the quadrics, edge errors, and border flags. */
+    private void updateMesh(int pass) {
+
+        if (pass > 0) {
+
+            int n = 0;
+            for (int t = 0; t < triangleCount; t++) {
+
+                if (deleted[t])
+                    continue;
+
+                tv[3 * n] = tv[3 * t];
+                tv[3 * n + 1] = tv[3 * t + 1];
+                tv[3 * n + 2] = tv[3 * t + 2];
+                System.arraycopy(edgeError, 4 * t, edgeError, 4 * n, 4);
+                System.arraycopy(normal, 3 * t, normal, 3 * n, 3);
+                deleted[n] = false;
+                n++;
+
+            }
+
+            triangleCount = n;
+
+        }
+
+        if (pass == 0) {
+
+            // each vertex's quadric sums the planes of the triangles around it
+            for (int t = 0; t < triangleCount; t++) {
+
+                int a = tv[3 * t], b = tv[3 * t + 1], c = tv[3 * t + 2];
+                double e1x = px[b] - px[a], e1y = py[b] - py[a], e1z = pz[b] - pz[a];
+                double e2x = px[c] - px[a], e2y = py[c] - py[a], e2z = pz[c] - pz[a];
+                double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+                double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+                if (length > 0) {
+
+                    nx /= length;
+                    ny /= length;
+                    nz /= length;
+
+                }
+
+                normal[3 * t] = nx;
+                normal[3 * t + 1] = ny;
+                normal[3 * t + 2] = nz;
+
+                double d = -(nx * px[a] + ny * py[a] + nz * pz[a]);
+                for (int corner = 0; corner < 3; corner++)
+                    addPlane(tv[3 * t + corner], nx, ny, nz, d);
+
+            }
+
+            for (int t = 0; t < triangleCount; t++)
+                updateEdgeErrors(t);
+
+        }
+
+        // rebuild the reference runs: every vertex lists the triangles that use it
+        Arrays.fill(refCount, 0);
+        for (int i = 0; i < 3 * triangleCount; i++)
+            refCount[tv[i]]++;
+
+        int start = 0;
+        for (int v = 0; v < vertexCount; v++) {
+
+            refStart[v] = start;
+            start += refCount[v];
+            refCount[v] = 0;
+
+        }
+
+        refTri = ensureCapacity(refTri, start);
+        refCorner = ensureCapacity(refCorner, start);
+        for (int t = 0; t < triangleCount; t++) {
+
+            for (int corner = 0; corner < 3; corner++) {
+
+                int v = tv[3 * t + corner];
+                int r = refStart[v] + refCount[v]++;
+                refTri[r] = t;
+                refCorner[r] = corner;
+
+            }
+
+        }
+
+        refSize = start;
+
+        if (pass == 0)
+            findBorders();
+
+    }
+
+    /** Marks every vertex on an edge used by only one triangle. */
+    private void findBorders() {
+
+        // for each vertex, count how many of its triangles each neighboring vertex appears in;
+        // a neighbor that appears only once shares a border edge with it
+        int[] neighbors = new int[16], neighborCount = new int[16];
+        for (int v = 0; v < vertexCount; v++) {
+
+            int n = 0;
+            for (int r = refStart[v], end = r + refCount[v]; r < end; r++) {
+
+                int t = refTri[r];
+                for (int corner = 0; corner < 3; corner++) {
+
+                    int other = tv[3 * t + corner];
+                    int j = 0;
+                    while (j < n && neighbors[j] != other)
+                        j++;
+
+                    if (j == n) {
+
+                        if (n == neighbors.length) {
+
+                            neighbors = Arrays.copyOf(neighbors, 2 * n);
+                            neighborCount = Arrays.copyOf(neighborCount, 2 * n);
+
+                        }
+
+                        neighbors[n] = other;
+                        neighborCount[n++] = 1;
+
+                    } else {
+
+                        neighborCount[j]++;
+
+                    }
+
+                }
+
+            }
+
+            for (int j = 0; j < n; j++) {
+
+                if (neighborCount[j] == 1)
+                    border[neighbors[j]] = true;
+
+            }
+
+        }
+
+    }
+
+    /** Returns true if moving vertex i0 to p, merging it with i1, would flip or squash one of i0's triangles.
+     *  Marks in collapsed which of i0's triangles contain i1 and so disappear with the collapse. */
+    private boolean flipped(double[] p, int i0, int i1, boolean[] collapsed) {
+
+        for (int k = 0; k < refCount[i0]; k++) {
+
+            int r = refStart[i0] + k;
+            int t = refTri[r], corner = refCorner[r];
+            if (deleted[t])
+                continue;
+
+            int id1 = tv[3 * t + (corner + 1) % 3], id2 = tv[3 * t + (corner + 2) % 3];
+            if (id1 == i1 || id2 == i1) {
+
+                collapsed[k] = true;
+                continue;
+
+            }
+
+            collapsed[k] = false;
+
+            double d1x = px[id1] - p[0], d1y = py[id1] - p[1], d1z = pz[id1] - p[2];
+            double d2x = px[id2] - p[0], d2y = py[id2] - p[1], d2z = pz[id2] - p[2];
+            double l1 = Math.sqrt(d1x * d1x + d1y * d1y + d1z * d1z);
+            double l2 = Math.sqrt(d2x * d2x + d2y * d2y + d2z * d2z);
+            if (l1 == 0 || l2 == 0)
+                return true;
+
+            d1x /= l1; d1y /= l1; d1z /= l1;
+            d2x /= l2; d2y /= l2; d2z /= l2;
+            if (Math.abs(d1x * d2x + d1y * d2y + d1z * d2z) > 0.999)
+                return true;
+
+            double nx = d1y * d2z - d1z * d2y, ny = d1z * d2x - d1x * d2z, nz = d1x * d2y - d1y * d2x;
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length == 0)
+                return true;
+
+            if ((nx * normal[3 * t] + ny * normal[3 * t + 1] + nz * normal[3 * t + 2]) / length < 0.2)
+                return true;
+
+        }
+
+        return false;
+
+    }
+
+    /** Repoints the triangles of vertex v at vertex i0, deleting the ones marked in collapsed, and appends
+     *  the survivors' references. Returns the number of triangles deleted. */
+    private int updateTriangles(int i0, int v, boolean[] collapsed) {
+
+        int removed = 0;
+        for (int k = 0, n = refCount[v]; k < n; k++) {
+
+            int r = refStart[v] + k;
+            int t = refTri[r], corner = refCorner[r];
+            if (deleted[t])
+                continue;
+
+            if (collapsed[k]) {
+
+                deleted[t] = true;
+                removed++;
+                continue;
+
+            }
+
+            tv[3 * t + corner] = i0;
+            dirty[t] = true;
+            updateEdgeErrors(t);
+
+            if (refSize == refTri.length) {
+
+                refTri = Arrays.copyOf(refTri, 2 * refSize);
+                refCorner = Arrays.copyOf(refCorner, 2 * refSize);
+
+            }
+
+            refTri[refSize] = t;
+            refCorner[refSize++] = corner;
+
+        }
+
+        return removed;
+
+    }
+
+    /** Recomputes the collapse error of a triangle's three edges, and their minimum. */
+    private void updateEdgeErrors(int t) {
+
+        double min = Double.POSITIVE_INFINITY;
+        for (int corner = 0; corner < 3; corner++) {
+
+            double error = collapseError(tv[3 * t + corner], tv[3 * t + (corner + 1) % 3], point);
+            edgeError[4 * t + corner] = error;
+            min = Math.min(min, error);
+
+        }
+
+        edgeError[4 * t + 3] = min;
+
+    }
+
+    /** Returns the error of merging vertices a and b, storing the best merged position in p. */
+    private double collapseError(int a, int b, double[] p) {
+
+        double[] q = quadric;
+        int qa = 10 * a, qb = 10 * b;
+        double q0 = q[qa] + q[qb],         q1 = q[qa + 1] + q[qb + 1], q2 = q[qa + 2] + q[qb + 2];
+        double q3 = q[qa + 3] + q[qb + 3], q4 = q[qa + 4] + q[qb + 4], q5 = q[qa + 5] + q[qb + 5];
+        double q6 = q[qa + 6] + q[qb + 6], q7 = q[qa + 7] + q[qb + 7], q8 = q[qa + 8] + q[qb + 8];
+        double q9 = q[qa + 9] + q[qb + 9];
+
+        // solve the 3x3 system for the point of least error with Cramer's rule,
+        // unless the system is singular or the edge is on a border that must stay put
+        double det = det3(q0, q1, q2, q1, q4, q5, q2, q5, q7);
+        if (det != 0 && !(border[a] && border[b])) {
+
+            p[0] = -det3(q1, q2, q3, q4, q5, q6, q5, q7, q8) / det;
+            p[1] =  det3(q0, q2, q3, q1, q5, q6, q2, q7, q8) / det;
+            p[2] = -det3(q0, q1, q3, q1, q4, q6, q2, q5, q8) / det;
+            return quadricError(q0, q1, q2, q3, q4, q5, q6, q7, q8, q9, p[0], p[1], p[2]);
+
+        }
+
+        // otherwise, take the best of the two ends and the midpoint
+        double mx = 0.5 * (px[a] + px[b]), my = 0.5 * (py[a] + py[b]), mz = 0.5 * (pz[a] + pz[b]);
+        double errorA = quadricError(q0, q1, q2, q3, q4, q5, q6, q7, q8, q9, px[a], py[a], pz[a]);
+        double errorB = quadricError(q0, q1, q2, q3, q4, q5, q6, q7, q8, q9, px[b], py[b], pz[b]);
+        double errorM = quadricError(q0, q1, q2, q3, q4, q5, q6, q7, q8, q9, mx, my, mz);
+        double error = Math.min(errorA, Math.min(errorB, errorM));
+        if (error == errorA) {
+
+            p[0] = px[a]; p[1] = py[a]; p[2] = pz[a];
+
+        } else if (error == errorB) {
+
+            p[0] = px[b]; p[1] = py[b]; p[2] = pz[b];
+
+        } else {
+
+            p[0] = mx; p[1] = my; p[2] = mz;
+
+        }
+
+        return error;
+
+    }
+
+    /** Adds the quadric of the plane nx * x + ny * y + nz * z + d = 0 to vertex v. */
+    private void addPlane(int v, double nx, double ny, double nz, double d) {
+
+        int q = 10 * v;
+        quadric[q]     += nx * nx;
+        quadric[q + 1] += nx * ny;
+        quadric[q + 2] += nx * nz;
+        quadric[q + 3] += nx * d;
+        quadric[q + 4] += ny * ny;
+        quadric[q + 5] += ny * nz;
+        quadric[q + 6] += ny * d;
+        quadric[q + 7] += nz * nz;
+        quadric[q + 8] += nz * d;
+        quadric[q + 9] += d * d;
+
+    }
+
+    /** Writes the surviving triangles and the vertices they use into out, in the original scale and
+     *  inside the limits. */
+    private void compact(Mesh out) {
+
+        int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+
+        int nTris = 0, nVerts = 0;
+        for (int t = 0; t < triangleCount; t++) {
+
+            if (deleted[t])
+                continue;
+
+            nTris++;
+            for (int corner = 0; corner < 3; corner++) {
+
+                int v = tv[3 * t + corner];
+                if (remap[v] < 0)
+                    remap[v] = nVerts++;
+
+            }
+
+        }
+
+        float[] xs = new float[nVerts], ys = new float[nVerts], zs = new float[nVerts];
+        for (int v = 0; v < vertexCount; v++) {
+
+            int i = remap[v];
+            if (i < 0)
+                continue;
+
+            double x = px[v] * scale + offsetX, y = py[v] * scale + offsetY, z = pz[v] * scale + offsetZ;
+
+            // pull a vertex outside the sphere in toward its center, a little inside so that rounding
+            // to float cannot leave it out; clamping to the box after only brings it nearer the center
+            double dx = x - limits.centerX, dy = y - limits.centerY, dz = z - limits.centerZ;
+            double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (distance > limits.radius) {
+
+                double shrink = limits.radius * (1 - 1e-6) / distance;
+                x = limits.centerX + dx * shrink;
+                y = limits.centerY + dy * shrink;
+                z = limits.centerZ + dz * shrink;
+
+            }
+
+            xs[i] = Math.min(Math.max((float)x, limits.minX), limits.maxX);
+            ys[i] = Math.min(Math.max((float)y, limits.minY), limits.maxY);
+            zs[i] = Math.min(Math.max((float)z, limits.minZ), limits.maxZ);
+
+        }
+
+        int[] indices = new int[3 * nTris];
+        int n = 0;
+        for (int t = 0; t < triangleCount; t++) {
+
+            if (deleted[t])
+                continue;
+
+            indices[n++] = remap[tv[3 * t]];
+            indices[n++] = remap[tv[3 * t + 1]];
+            indices[n++] = remap[tv[3 * t + 2]];
+
+        }
+
+        out.setGeometry(xs, ys, zs, indices);
+
+    }
+
+    /** Returns the determinant of a 3x3 matrix given row by row. */
+    private static double det3(double a, double b, double c, double d, double e, double f, double g, double h, double i) {
+
+        return a * e * i + c * d * h + b * f * g - c * e * g - a * f * h - b * d * i;
+
+    }
+
+    /** Evaluates a quadric at a point. */
+    private static double quadricError(double q0, double q1, double q2, double q3, double q4, double q5,
+                                       double q6, double q7, double q8, double q9, double x, double y, double z) {
+
+        return q0 * x * x + 2 * q1 * x * y + 2 * q2 * x * z + 2 * q3 * x + q4 * y * y
+                + 2 * q5 * y * z + 2 * q6 * y + q7 * z * z + 2 * q8 * z + q9;
+
+    }
+
+    private static boolean[] ensureCapacity(boolean[] array, int n) {
+
+        return array.length >= n ? array : new boolean[Math.max(n, 2 * array.length)];
+
+    }
+
+    private static int[] ensureCapacity(int[] array, int n) {
+
+        return array.length >= n ? array : Arrays.copyOf(array, Math.max(n, 2 * array.length));
+
+    }
+
+}
@@ -0,0 +1,517 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// ObjParser Class -- 3D Engine
+
+/*
+This class reads Wavefront .obj files into a Mesh. The file is
+memory-mapped and parsed byte by byte, so no String is created
+per line or per number. Large files are split into chunks at
+line boundaries and the chunks are parsed in parallel; a second
+pass then stitches the chunks together and resolves the face
+indexes, since negative (relative) indexes depend on how many
+vertices came before them in the whole file.
+
+Only vertex positions and faces are used. Faces may have any
+number of corners and use the v, v/vt, v//vn, or v/vt/vn forms;
+polygons are split into a fan of triangles.
+ */
+
+package raster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+public class ObjParser {
+
+    public static final int MIN_CHUNK_SIZE = 1 << 20;
+    public static final int MAX_CHUNK_SIZE = 1 << 28;
+
+    // exact powers of ten, for turning parsed digits into a correctly rounded double
+    private static final double[] POW10 = new double[23];
+    static {
+
+        POW10[0] = 1.0;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10.0;
+
+    }
+
+    private final ForkJoinPool pool;
+
+    /** Constructor. Chunks are parsed on the given pool, or on the calling thread if it is null. */
+    public ObjParser(ForkJoinPool p) {
+
+        pool = p;
+
+    }
+
+    /** Reads the .obj file at path and replaces the geometry of mesh with it. */
+    public void load(Path path, Mesh mesh) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            long[] bounds = splitAtLines(channel);
+            int nChunks = bounds.length - 1;
+            Chunk[] chunks = new Chunk[nChunks];
+            IOException[] failure = new IOException[1];
+
+            // first pass: parse every chunk on its own
+            Parallel.forEach(pool, nChunks, c -> {
+
+                try {
+
+                    MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY,
+                                                       bounds[c], bounds[c + 1] - bounds[c]);
+                    chunks[c] = new Chunk(buf, bounds[c]);
+                    chunks[c].parse();
+
+                } catch (IOException e) {
+
+                    synchronized (failure) {
+
+                        failure[0] = e;
+
+                    }
+
+                }
+
+            });
+
+            if (failure[0] != null)
+                throw failure[0];
+
+            // second pass: place each chunk's data after the chunks before it,
+            // and turn its indexes into indexes of the whole file
+            int[] vertexBase = new int[nChunks + 1];
+            int[] indexBase = new int[nChunks + 1];
+            for (int c = 0; c < nChunks; c++) {
+
+                vertexBase[c + 1] = Math.addExact(vertexBase[c], chunks[c].nVerts);
+                indexBase[c + 1] = Math.addExact(indexBase[c], chunks[c].nIndices);
+
+            }
+
+            int nVerts = vertexBase[nChunks];
+            float[] xs = new float[nVerts], ys = new float[nVerts], zs = new float[nVerts];
+            int[] indices = new int[indexBase[nChunks]];
+
+            Parallel.forEach(pool, nChunks, c -> {
+
+                Chunk chunk = chunks[c];
+                System.arraycopy(chunk.xs, 0, xs, vertexBase[c], chunk.nVerts);
+                System.arraycopy(chunk.ys, 0, ys, vertexBase[c], chunk.nVerts);
+                System.arraycopy(chunk.zs, 0, zs, vertexBase[c], chunk.nVerts);
+
+                for (int i = 0; i < chunk.nRelative; i++)
+                    chunk.indices[chunk.relativeAt[i]] += vertexBase[c];
+
+                System.arraycopy(chunk.indices, 0, indices, indexBase[c], chunk.nIndices);
+
+            });
+
+            for (int i = 0; i < indices.length; i++) {
+
+                if (indices[i] < 0 || indices[i] >= nVerts)
+                    throw new IOException(path + ": face references missing vertex " + (indices[i] + 1));
+
+            }
+
+            mesh.setGeometry(xs, ys, zs, indices);
+
+        }
+
+    }
+
+    /** Splits the file into chunks for parallel parsing. Returns the chunk boundaries, each of which
+     *  is either the start of the file, the end of the file, or just past a newline. */
+    private long[] splitAtLines(FileChannel channel) throws IOException {
+
+        long size = channel.size();
+        int threads = pool == null ? 1 : pool.getParallelism();
+        long target = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / (threads * 4L)));
+
+        ArrayList<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (size - start > target) {
+
+            // scan forward from the tentative boundary to the end of its line
+            long pos = start + target;
+            long boundary = -1;
+            while (boundary < 0 && pos < size) {
+
+                probe.clear();
+                int read = channel.read(probe, pos);
+                if (read <= 0)
+                    break;
+
+                for (int i = 0; i < read; i++) {
+
+                    if (probe.get(i) == '\n') {
+
+                        boundary = pos + i + 1;
+                        break;
+
+                    }
+
+                }
+
+                pos += read;
+
+            }
+
+            if (boundary < 0 || boundary >= size)
+                break;
+
+            if (boundary - start > Integer.MAX_VALUE)
+                throw new IOException("Line too long to parse near byte " + start);
+
+            bounds.add(boundary);
+            start = boundary;
+
+        }
+
+        if (size - start > Integer.MAX_VALUE)
+            throw new IOException("Line too long to parse near byte " + start);
+
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = bounds.get(i);
+
+        return result;
+
+    }
+
+    /** The vertices and faces found in one chunk of the file. Indexes are zero-based; positive
+     *  .obj indexes are already absolute, while relative ones are stored relative to the start
+     *  of the chunk and listed in relativeAt so that the second pass can fix them up. */
+    private static class Chunk {
+
+        private final MappedByteBuffer buf;
+        private final long offset;
+        private final int limit;
+        private int pos;
+
+        float[] xs = new float[1024], ys = new float[1024], zs = new float[1024];
+        int nVerts;
+        int[] indices = new int[3072];
+        int nIndices;
+        int[] relativeAt = new int[16];
+        int nRelative;
+
+        // corners of the face being parsed, and whether each is relative
+        private int[] corners = new int[16];
+        private boolean[] cornerRelative = new boolean[16];
+
+        Chunk(MappedByteBuffer b, long off) {
+
+            buf = b;
+            offset = off;
+            limit = b.limit();
+            pos = 0;
+
+        }
+
+        /** Parses every line in the chunk. */
+        void parse() throws IOException {
+
+            while (pos < limit) {
+
+                skipSpaces();
+                if (pos >= limit)
+                    break;
+
+                byte first = buf.get(pos);
+                byte second = pos + 1 < limit ? buf.get(pos + 1) : (byte)'\n';
+
+                // in .obj, 'v' indicates that the rest of the line is a vertex,
+                // and 'f' indicates a face made of vertex indexes
+                if (first == 'v' && isSpace(second)) {
+
+                    pos++;
+                    parseVertex();
+
+                }
+                else if (first == 'f' && isSpace(second)) {
+
+                    pos++;
+                    parseFace();
+
+                }
+
+                skipLine();
+
+            }
+
+        }
+
+        /** Parses the three coordinates of a vertex; any W coordinate is ignored. */
+        private void parseVertex() throws IOException {
+
+            if (nVerts == xs.length) {
+
+                xs = Arrays.copyOf(xs, nVerts * 2);
+                ys = Arrays.copyOf(ys, nVerts * 2);
+                zs = Arrays.copyOf(zs, nVerts * 2);
+
+            }
+
+            xs[nVerts] = (float)parseNumber();
+            ys[nVerts] = (float)parseNumber();
+            zs[nVerts] = (float)parseNumber();
+            nVerts++;
+
+        }
+
+        /** Parses the corners of a face and adds it as a fan of triangles. */
+        private void parseFace() throws IOException {
+
+            int n = 0;
+            while (true) {
+
+                skipSpaces();
+                if (pos >= limit || isLineEnd(buf.get(pos)))
+                    break;
+
+                if (n == corners.length) {
+
+                    corners = Arrays.copyOf(corners, n * 2);
+                    cornerRelative = Arrays.copyOf(cornerRelative, n * 2);
+
+                }
+
+                // negative indexes count backwards from the most recent vertex
+                long index = parseInteger();
+                if (index > 0) {
+
+                    corners[n] = (int)(index - 1);
+                    cornerRelative[n] = false;
+
+                }
+                else if (index < 0) {
+
+                    corners[n] = (int)(nVerts + index);
+                    cornerRelative[n] = true;
+
+                }
+                else {
+
+                    throw error("vertex index 0");
+
+                }
+
+                n++;
+
+                // skip any texture and normal indexes
+                while (pos < limit && !isSpace(buf.get(pos)))
+                    pos++;
+
+            }
+
+            if (n < 3)
+                throw error("face with fewer than three vertices");
+
+            for (int i = 1; i < n - 1; i++) {
+
+                addCorner(0);
+                addCorner(i);
+                addCorner(i + 1);
+
+            }
+
+        }
+
+        /** Appends one corner of the face being parsed to the index list. */
+        private void addCorner(int corner) {
+
+            if (nIndices == indices.length)
+                indices = Arrays.copyOf(indices, nIndices * 2);
+
+            if (cornerRelative[corner]) {
+
+                if (nRelative == relativeAt.length)
+                    relativeAt = Arrays.copyOf(relativeAt, nRelative * 2);
+
+                relativeAt[nRelative++] = nIndices;
+
+            }
+
+            indices[nIndices++] = corners[corner];
+
+        }
+
+        /** Parses an optionally signed integer. */
+        private long parseInteger() throws IOException {
+
+            boolean negative = false;
+            if (pos < limit && (buf.get(pos) == '-' || buf.get(pos) == '+'))
+                negative = buf.get(pos++) == '-';
+
+            int start = pos;
+            long value = 0;
+            while (pos < limit) {
+
+                int digit = buf.get(pos) - '0';
+                if (digit < 0 || digit > 9)
+                    break;
+
+                value = value * 10 + digit;
+                if (value > Integer.MAX_VALUE)
+                    throw error("index out of range");
+
+                pos++;
+
+            }
+
+            if (pos == start)
+                throw error("expected an index");
+
+            return negative ? -value : value;
+
+        }
+
+        /** Parses a decimal number such as -1.25 or 3e-4, after skipping leading spaces. */
+        private double parseNumber() throws IOException {
+
+            skipSpaces();
+
+            boolean negative = false;
+            if (pos < limit && (buf.get(pos) == '-' || buf.get(pos) == '+'))
+                negative = buf.get(pos++) == '-';
+
+            // collect up to 18 significant digits, which always fit in a long
+            long mantissa = 0;
+            int digits = 0, exponent = 0;
+            boolean any = false;
+
+            while (pos < limit) {
+
+                int digit = buf.get(pos) - '0';
+                if (digit < 0 || digit > 9)
+                    break;
+
+                any = true;
+                if (digits < 18) {
+
+                    mantissa = mantissa * 10 + digit;
+                    if (mantissa != 0)
+                        digits++;
+
+                }
+                else {
+
+                    exponent++;
+
+                }
+
+                pos++;
+
+            }
+
+            if (pos < limit && buf.get(pos) == '.') {
+
+                pos++;
+                while (pos < limit) {
+
+                    int digit = buf.get(pos) - '0';
+                    if (digit < 0 || digit > 9)
+                        break;
+
+                    any = true;
+                    if (digits < 18) {
+
+                        mantissa = mantissa * 10 + digit;
+                        exponent--;
+                        if (mantissa != 0)
+                            digits++;
+
+                    }
+
+                    pos++;
+
+                }
+
+            }
+
+            if (!any)
+                throw error("expected a number");
+
+            if (pos < limit && (buf.get(pos) == 'e' || buf.get(pos) == 'E')) {
+
+                pos++;
+                exponent += (int)parseInteger();
+
+            }
+
+            // with an exact mantissa and an exact power of ten, a single
+            // multiplication or division gives the correctly rounded result
+            double value = mantissa;
+            if (exponent < 0 && exponent >= -22 && mantissa < (1L << 53))
+                value /= POW10[-exponent];
+            else if (exponent > 0 && exponent <= 22 && mantissa < (1L << 53))
+                value *= POW10[exponent];
+            else if (exponent != 0)
+                value = Double.parseDouble(mantissa + "e" + exponent);
+
+            return negative ? -value : value;
+
+        }
+
+        /** Skips spaces and tabs, but not line endings. */
+        private void skipSpaces() {
+
+            while (pos < limit) {
+
+                byte b = buf.get(pos);
+                if (b != ' ' && b != '\t')
+                    break;
+
+                pos++;
+
+            }
+
+        }
+
+        /** Skips past the end of the current line. */
+        private void skipLine() {
+
+            while (pos < limit && buf.get(pos) != '\n')
+                pos++;
+
+            pos++;
+
+        }
+
+        private static boolean isSpace(byte b) {
+
+            return b == ' ' || b == '\t' || isLineEnd(b);
+
+        }
+
+        private static boolean isLineEnd(byte b) {
+
+            return b == '\n' || b == '\r';
+
+        }
+
+        /** Builds an exception describing malformed data at the current position. */
+        private IOException error(String message) {
+
+            return new IOException("Malformed .obj data at byte " + (offset + pos) + ": " + message);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,296 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// OcclusionBuffer Class -- 3D Engine
+
+/*
+This class finds objects hidden behind occluders before any of
+their triangles are processed. The occluders' screen-space
+triangles are rasterized into a depth buffer with one cell per
+CELL_SIZE by CELL_SIZE pixels, and the cells are reduced into a
+pyramid in which every cell holds the farthest depth of the four
+below it. An object is hidden if the nearest point of its bounding
+box is behind the farthest depth of every cell its screen
+rectangle covers; the pyramid answers that by looking at no
+more than four cells, on the level where the rectangle spans at
+most two of them in each direction.
+
+Every step errs toward drawing: a cell only takes an occluder's
+depth when every pixel center in it is inside one occluder
+triangle, and that depth is the farthest the triangle reaches
+in the cell. So an object is never skipped if any of its pixels
+could have been seen, though some hidden objects are still drawn,
+such as those behind the seam between two occluder triangles
+that each cover part of a cell. In subpixel mode, occluders are
+snapped and sampled just as the Rasterizer draws them.
+ */
+
+package raster;
+
+import java.util.Arrays;
+
+public class OcclusionBuffer {
+
+    // pixels per cell along each side of the finest level
+    public static final int CELL_SIZE = 4;
+
+    private final int width, height;
+
+    // the pyramid, finest level first, each level row by row
+    private final float[][] levels;
+    private final int[] levelWidth, levelHeight;
+
+    // whether any occluder covered a cell since the last clear
+    private boolean empty;
+
+    // whether positions are snapped to sixteenths of a pixel and sampled at pixel centers, as the Rasterizer does
+    private boolean subpixel;
+    private int scale, sampleOffset;
+
+    /** Constructor. Covers a screen of w by h pixels. */
+    public OcclusionBuffer(int w, int h) {
+
+        width = w;
+        height = h;
+
+        int count = 1;
+        for (int cw = cells(w), ch = cells(h); cw > 1 || ch > 1; cw = (cw + 1) / 2, ch = (ch + 1) / 2)
+            count++;
+
+        levels = new float[count][];
+        levelWidth = new int[count];
+        levelHeight = new int[count];
+        int cw = cells(w), ch = cells(h);
+        for (int l = 0; l < count; l++) {
+
+            levels[l] = new float[cw * ch];
+            levelWidth[l] = cw;
+            levelHeight[l] = ch;
+            cw = (cw + 1) / 2;
+            ch = (ch + 1) / 2;
+
+        }
+
+        scale = 1;
+        sampleOffset = 0;
+        empty = false;
+        clear();
+
+    }
+
+    /** Resets every cell to the far plane, so that nothing is hidden. */
+    public void clear() {
+
+        if (empty)
+            return;
+
+        for (float[] level : levels)
+            Arrays.fill(level, Float.POSITIVE_INFINITY);
+
+        empty = true;
+
+    }
+
+    /** Enables or disables subpixel mode, which must match the Rasterizer's. */
+    public void setSubpixel(boolean enabled) {
+
+        subpixel = enabled;
+        scale = enabled ? Rasterizer.SUBPIXEL_SCALE : 1;
+        sampleOffset = enabled ? Rasterizer.SUBPIXEL_SCALE / 2 : 0;
+
+    }
+
+    /** Returns true if no occluder has covered a cell since the last clear. */
+    public boolean isEmpty() {
+
+        return empty;
+
+    }
+
+    /** Rasterizes triangles first up to end of a buffer as occluders into the finest level. Call build
+     *  once every occluder has been added. */
+    public void addOccluders(TriangleBuffer tris, int first, int end) {
+
+        float[] coords = tris.coords();
+        for (int t = first; t < end; t++) {
+
+            int i = 9 * t;
+            addTriangle(Rasterizer.snap(coords[i],     subpixel), Rasterizer.snap(coords[i + 1], subpixel), coords[i + 2],
+                        Rasterizer.snap(coords[i + 3], subpixel), Rasterizer.snap(coords[i + 4], subpixel), coords[i + 5],
+                        Rasterizer.snap(coords[i + 6], subpixel), Rasterizer.snap(coords[i + 7], subpixel), coords[i + 8]);
+
+        }
+
+    }
+
+    /** Reduces the finest level into the coarser ones, each cell keeping the farthest depth of the four below it. */
+    public void build() {
+
+        for (int l = 1; l < levels.length; l++) {
+
+            float[] fine = levels[l - 1], coarse = levels[l];
+            int fw = levelWidth[l - 1], fh = levelHeight[l - 1], cw = levelWidth[l];
+            for (int y = 0; y < levelHeight[l]; y++) {
+
+                int y0 = 2 * y, y1 = Math.min(2 * y + 1, fh - 1);
+                for (int x = 0; x < cw; x++) {
+
+                    int x0 = 2 * x, x1 = Math.min(2 * x + 1, fw - 1);
+                    coarse[y * cw + x] = Math.max(Math.max(fine[y0 * fw + x0], fine[y0 * fw + x1]),
+                                                  Math.max(fine[y1 * fw + x0], fine[y1 * fw + x1]));
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /** Returns true if a box in object space, taken to clip space by worldViewProj, is certainly hidden
+     *  behind the occluders. Boxes reaching in front of the near plane are never hidden. */
+    public boolean isHidden(Bounds box, Matrix worldViewProj) {
+
+        if (empty)
+            return false;
+
+        double[] m = worldViewProj.m;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+
+        // project the eight corners; the box's nearest point is one of them
+        for (int corner = 0; corner < 8; corner++) {
+
+            double x = (corner & 1) == 0 ? box.minX : box.maxX;
+            double y = (corner & 2) == 0 ? box.minY : box.maxY;
+            double z = (corner & 4) == 0 ? box.minZ : box.maxZ;
+
+            double cx = x * m[0] + y * m[4] + z * m[8]  + m[12];
+            double cy = x * m[1] + y * m[5] + z * m[9]  + m[13];
+            double cz = x * m[2] + y * m[6] + z * m[10] + m[14];
+            double cw = x * m[3] + y * m[7] + z * m[11] + m[15];
+            if (cz < 0 || cw <= 0)
+                return false;
+
+            double sx = (cx / cw + 1) * 0.5 * width;
+            double sy = (cy / cw + 1) * 0.5 * height;
+            minX = Math.min(minX, sx);
+            maxX = Math.max(maxX, sx);
+            minY = Math.min(minY, sy);
+            maxY = Math.max(maxY, sy);
+            minZ = Math.min(minZ, cz / cw);
+
+        }
+
+        // the cells under the screen rectangle, widened by a pixel for rounding
+        int cellMinX = Math.max(0, (int)Math.floor(minX - 1) / CELL_SIZE);
+        int cellMinY = Math.max(0, (int)Math.floor(minY - 1) / CELL_SIZE);
+        int cellMaxX = Math.min(levelWidth[0] - 1, (int)Math.ceil(maxX + 1) / CELL_SIZE);
+        int cellMaxY = Math.min(levelHeight[0] - 1, (int)Math.ceil(maxY + 1) / CELL_SIZE);
+        if (cellMinX > cellMaxX || cellMinY > cellMaxY)
+            return false;
+
+        // climb to the level where the rectangle spans at most two cells each way
+        int l = 0;
+        while ((cellMaxX >> l) - (cellMinX >> l) > 1 || (cellMaxY >> l) - (cellMinY >> l) > 1)
+            l++;
+
+        float[] level = levels[l];
+        int lw = levelWidth[l];
+        for (int y = cellMinY >> l; y <= cellMaxY >> l; y++) {
+
+            for (int x = cellMinX >> l; x <= cellMaxX >> l; x++) {
+
+                if (minZ <= level[y * lw + x])
+                    return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /** Writes a screen-space triangle's depth into every finest-level cell it covers completely.
+     *  Positions are in snapped units, as the Rasterizer takes them. */
+    private void addTriangle(int x0, int y0, double z0, int x1, int y1, double z1, int x2, int y2, double z2) {
+
+        // twice the signed area; flip the winding so that it is always positive
+        long area = (long)(x1 - x0) * (y2 - y0) - (long)(y1 - y0) * (x2 - x0);
+        if (area == 0)
+            return;
+
+        if (area < 0) {
+
+            int tx = x1, ty = y1;
+            double tz = z1;
+            x1 = x2; y1 = y2; z1 = z2;
+            x2 = tx; y2 = ty; z2 = tz;
+            area = -area;
+
+        }
+
+        // only cells whose pixels all lie on the screen and in the triangle's bounding box can be covered
+        int minPX = Math.max(0, Math.floorDiv(Math.min(x0, Math.min(x1, x2)), scale));
+        int minPY = Math.max(0, Math.floorDiv(Math.min(y0, Math.min(y1, y2)), scale));
+        int minCX = (minPX + CELL_SIZE - 1) / CELL_SIZE;
+        int minCY = (minPY + CELL_SIZE - 1) / CELL_SIZE;
+        int maxCX = Math.min(width / CELL_SIZE, (Math.floorDiv(Math.max(x0, Math.max(x1, x2)), scale) + 1) / CELL_SIZE) - 1;
+        int maxCY = Math.min(height / CELL_SIZE, (Math.floorDiv(Math.max(y0, Math.max(y1, y2)), scale) + 1) / CELL_SIZE) - 1;
+        if (minCX > maxCX || minCY > maxCY)
+            return;
+
+        // the depth plane is stepped by whole pixels from the sample point of pixel (0, 0)
+        double invArea = 1.0 / area;
+        double dzdx = ((z1 - z0) * (y2 - y0) - (z2 - z0) * (y1 - y0)) * invArea;
+        double dzdy = ((z2 - z0) * (x1 - x0) - (z1 - z0) * (x2 - x0)) * invArea;
+        double zOrigin = z0 + (sampleOffset - x0) * dzdx + (sampleOffset - y0) * dzdy;
+        dzdx *= scale;
+        dzdy *= scale;
+
+        float[] cells = levels[0];
+        int cw = levelWidth[0];
+        int s = CELL_SIZE - 1;
+        for (int cy = minCY; cy <= maxCY; cy++) {
+
+            for (int cx = minCX; cx <= maxCX; cx++) {
+
+                // the triangle is convex, so it holds every pixel of the cell if it holds the corner pixels
+                int px = cx * CELL_SIZE, py = cy * CELL_SIZE;
+                int sx0 = px * scale + sampleOffset, sy0 = py * scale + sampleOffset;
+                int sx1 = sx0 + s * scale, sy1 = sy0 + s * scale;
+                if (!inside(x0, y0, x1, y1, x2, y2, sx0, sy0) || !inside(x0, y0, x1, y1, x2, y2, sx1, sy0) ||
+                    !inside(x0, y0, x1, y1, x2, y2, sx0, sy1) || !inside(x0, y0, x1, y1, x2, y2, sx1, sy1))
+                    continue;
+
+                // depth is a plane, so its farthest point in the cell is a corner
+                double za = zOrigin + px * dzdx + py * dzdy;
+                double zFar = Math.max(Math.max(za, za + s * dzdx), Math.max(za + s * dzdy, za + s * (dzdx + dzdy)));
+                int index = cy * cw + cx;
+                cells[index] = Math.min(cells[index], (float)zFar);
+                empty = false;
+
+            }
+
+        }
+
+    }
+
+    /** Returns true if point (x, y) is strictly inside a triangle with positive winding. Points on an edge
+     *  may be left to a neighboring triangle by the fill rule, so they do not count. */
+    private static boolean inside(int x0, int y0, int x1, int y1, int x2, int y2, int x, int y) {
+
+        return (long)(x1 - x0) * (y - y0) - (long)(y1 - y0) * (x - x0) > 0 &&
+               (long)(x2 - x1) * (y - y1) - (long)(y2 - y1) * (x - x1) > 0 &&
+               (long)(x0 - x2) * (y - y2) - (long)(y0 - y2) * (x - x2) > 0;
+
+    }
+
+    /** Returns the number of cells needed to cover n pixels. */
+    private static int cells(int n) {
+
+        return (n + CELL_SIZE - 1) / CELL_SIZE;
+
+    }
+
+}
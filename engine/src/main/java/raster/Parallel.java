@@ -0,0 +1,69 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// Parallel Class -- 3D Engine
+
+/*
+This class holds a small helper for running a loop body over
+a range of indexes on a ForkJoinPool. The range is split in
+half recursively until every task holds a single index, and the
+call returns once every index has been processed. Without a
+pool, the indexes simply run in order on the calling thread.
+ */
+
+package raster;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+public class Parallel {
+
+    /** Runs body once for every index in [0, count), in parallel when a pool with more than one thread is given. */
+    public static void forEach(ForkJoinPool pool, int count, IntConsumer body) {
+
+        if (pool == null || pool.getParallelism() <= 1 || count <= 1) {
+
+            for (int i = 0; i < count; i++)
+                body.accept(i);
+
+            return;
+
+        }
+
+        pool.invoke(new RangeTask(body, 0, count));
+
+    }
+
+    /** Processes a range of indexes, splitting it in half until each task holds a single index. */
+    private static class RangeTask extends RecursiveAction {
+
+        private final IntConsumer body;
+        private final int from, to;
+
+        RangeTask(IntConsumer body, int from, int to) {
+
+            this.body = body;
+            this.from = from;
+            this.to = to;
+
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from == 1) {
+
+                body.accept(from);
+                return;
+
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(body, from, mid),
+                      new RangeTask(body, mid, to));
+
+        }
+
+    }
+
+}
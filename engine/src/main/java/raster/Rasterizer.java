@@ -0,0 +1,430 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// Rasterizer Class -- 3D Engine
+
+/*
+This class implements a software rasterizer that fills
+screen-space triangles directly into an int[] color buffer,
+using a depth buffer to resolve visibility. Triangles are
+scanned with half-space edge functions in 8x8 pixel blocks, so
+blocks entirely outside a triangle are skipped and blocks
+entirely inside it are filled without per-pixel edge tests.
+
+Whole buffers of triangles can also be drawn in parallel. They
+are first binned into 64x64 pixel tiles, and then every tile is
+rasterized as an independent task on a ForkJoinPool. A tile only
+ever writes its own pixels, and draws its triangles in the order
+they were submitted, so no locking is needed and the result is
+identical to drawing on a single thread.
+
+Screen positions are normally whole pixels, and a pixel is
+covered when its top-left corner is inside a triangle. In
+subpixel mode they are snapped to 28.4 fixed point instead,
+sixteenths of a pixel, and pixels are sampled at their centers,
+so edges move smoothly as geometry moves. Either way the edge
+functions are exact integers, so triangles sharing an edge meet
+without gaps or overlap on every JVM. The loops over each
+row of a block are run by the Kernels, with SIMD instructions
+where the JVM supports them.
+ */
+
+package raster;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+public class Rasterizer {
+
+    public static final int BLOCK_SIZE = 8;
+    public static final int TILE_SIZE = 64;     // must be a multiple of BLOCK_SIZE
+
+    // subpixel mode snaps positions to 1 / SUBPIXEL_SCALE of a pixel
+    public static final int SUBPIXEL_BITS = 4;
+    public static final int SUBPIXEL_SCALE = 1 << SUBPIXEL_BITS;
+
+    // the per-pixel loops, vectorized when the JVM allows it
+    private static final Kernels KERNELS = Kernels.get();
+
+    private final int width, height;
+    private final int[] colorBuffer;
+    private final float[] depthBuffer;
+    private boolean depthTest;
+
+    // the inclusive rectangle of pixels that clearing and drawing are limited to
+    private int scissorMinX, scissorMinY, scissorMaxX, scissorMaxY;
+
+    // position units per pixel, and where in a pixel, in those units, coverage and depth are sampled
+    private int scale;
+    private int sampleOffset;
+
+    // tiles cover the screen in rows; each one keeps a list of the
+    // indexes of the triangles that overlap it
+    private final int tilesX, tilesY;
+    private final int[][] tileBins;
+    private final int[] tileCounts;
+    private ForkJoinPool pool;
+
+    /** Constructor. Draws into the given color buffer, which must hold w * h packed RGB pixels. */
+    public Rasterizer(int w, int h, int[] color) {
+
+        width = w;
+        height = h;
+        colorBuffer = color;
+        depthBuffer = new float[w * h];
+        depthTest = true;
+        setScissor(0, 0, w - 1, h - 1);
+        scale = 1;
+        sampleOffset = 0;
+
+        tilesX = (w + TILE_SIZE - 1) / TILE_SIZE;
+        tilesY = (h + TILE_SIZE - 1) / TILE_SIZE;
+        tileBins = new int[tilesX * tilesY][64];
+        tileCounts = new int[tilesX * tilesY];
+        pool = null;
+
+    }
+
+    /** Sets the pool used to rasterize tiles in parallel. A null pool draws every tile on the calling thread. */
+    public void setPool(ForkJoinPool p) {
+
+        pool = p;
+
+    }
+
+    /** Enables or disables the depth test. With it disabled, triangles are drawn in submission order. */
+    public void setDepthTest(boolean enabled) {
+
+        depthTest = enabled;
+
+    }
+
+    /** Limits clearing and drawing to an inclusive rectangle of pixels. Triangles are filled a whole block
+     *  at a time, so the rectangle is widened out to the block grid and then clamped to the screen.
+     *  Pixels outside it keep their colors and depths. */
+    public void setScissor(int minX, int minY, int maxX, int maxY) {
+
+        scissorMinX = Math.max(minX & ~(BLOCK_SIZE - 1), 0);
+        scissorMinY = Math.max(minY & ~(BLOCK_SIZE - 1), 0);
+        scissorMaxX = Math.min(maxX | (BLOCK_SIZE - 1), width - 1);
+        scissorMaxY = Math.min(maxY | (BLOCK_SIZE - 1), height - 1);
+
+    }
+
+    /** Overwrites dest with the inclusive scissor rectangle, as minX, minY, maxX, maxY. Returns dest. */
+    public int[] getScissor(int[] dest) {
+
+        dest[0] = scissorMinX;
+        dest[1] = scissorMinY;
+        dest[2] = scissorMaxX;
+        dest[3] = scissorMaxY;
+        return dest;
+
+    }
+
+    /** Lets clearing and drawing reach the whole screen again. */
+    public void clearScissor() {
+
+        setScissor(0, 0, width - 1, height - 1);
+
+    }
+
+    /** Enables or disables subpixel mode. With it enabled, triangle positions are snapped to sixteenths of a
+     *  pixel rather than truncated to whole pixels, and pixels are sampled at their centers. */
+    public void setSubpixel(boolean enabled) {
+
+        scale = enabled ? SUBPIXEL_SCALE : 1;
+        sampleOffset = enabled ? SUBPIXEL_SCALE / 2 : 0;
+
+    }
+
+    /** Returns a screen position as a whole number of the units used for raster setup: truncated to a pixel,
+     *  or in subpixel mode rounded to the nearest sixteenth of one. */
+    public static int snap(float position, boolean subpixel) {
+
+        return subpixel ? Math.round(position * SUBPIXEL_SCALE) : (int)position;
+
+    }
+
+    /** Fills the color buffer with a packed RGB color and resets every depth value to the far plane,
+     *  within the scissor rectangle. */
+    public void clear(int rgb) {
+
+        if (scissorMinX == 0 && scissorMinY == 0 && scissorMaxX == width - 1 && scissorMaxY == height - 1) {
+
+            KERNELS.clear(colorBuffer, rgb, depthBuffer, Float.POSITIVE_INFINITY);
+            return;
+
+        }
+
+        for (int y = scissorMinY; y <= scissorMaxY; y++) {
+
+            int row = y * width;
+            Arrays.fill(colorBuffer, row + scissorMinX, row + scissorMaxX + 1, rgb);
+            Arrays.fill(depthBuffer, row + scissorMinX, row + scissorMaxX + 1, Float.POSITIVE_INFINITY);
+
+        }
+
+    }
+
+    /** Returns the color buffer this Rasterizer draws into. */
+    public int[] colorBuffer() {
+
+        return colorBuffer;
+
+    }
+
+    /** Returns the depth buffer. Smaller values are closer to the camera. */
+    public float[] depthBuffer() {
+
+        return depthBuffer;
+
+    }
+
+    /** Fills every triangle in the buffer, in order. When a pool has been set, the
+     *  triangles are binned into tiles and the tiles are rasterized in parallel. */
+    public void drawTriangles(TriangleBuffer tris) {
+
+        float[] coords = tris.coords();
+        int[] colors = tris.colors();
+
+        if (pool == null || pool.getParallelism() <= 1) {
+
+            for (int t = 0; t < tris.size(); t++)
+                drawTriangle(coords, colors, t, scissorMinX, scissorMinY, scissorMaxX, scissorMaxY);
+
+            return;
+
+        }
+
+        binTriangles(tris);
+        Parallel.forEach(pool, tileCounts.length, tile -> drawTile(coords, colors, tile));
+
+    }
+
+    /** Fills a screen-space triangle. X and Y are pixel coordinates, Z is the post-projection depth
+     *  used for the depth test, and rgb is the packed fill color. Either winding order is accepted. */
+    public void drawTriangle(int x0, int y0, double z0,
+                             int x1, int y1, double z1,
+                             int x2, int y2, double z2, int rgb) {
+
+        drawTriangle(x0 * scale, y0 * scale, z0, x1 * scale, y1 * scale, z1, x2 * scale, y2 * scale, z2,
+                     rgb, scissorMinX, scissorMinY, scissorMaxX, scissorMaxY);
+
+    }
+
+    /** Adds the index of every triangle to the bin of each tile that its bounding box overlaps. */
+    private void binTriangles(TriangleBuffer tris) {
+
+        Arrays.fill(tileCounts, 0);
+        float[] coords = tris.coords();
+
+        for (int t = 0; t < tris.size(); t++) {
+
+            // rounding down is never tighter than snapping, which moves a position by at most half a unit
+            int i = 9 * t;
+            int x0 = (int)Math.floor(coords[i]), y0 = (int)Math.floor(coords[i + 1]);
+            int x1 = (int)Math.floor(coords[i + 3]), y1 = (int)Math.floor(coords[i + 4]);
+            int x2 = (int)Math.floor(coords[i + 6]), y2 = (int)Math.floor(coords[i + 7]);
+
+            int minX = Math.max(Math.min(x0, Math.min(x1, x2)), scissorMinX);
+            int minY = Math.max(Math.min(y0, Math.min(y1, y2)), scissorMinY);
+            int maxX = Math.min(Math.max(x0, Math.max(x1, x2)), scissorMaxX);
+            int maxY = Math.min(Math.max(y0, Math.max(y1, y2)), scissorMaxY);
+            if (minX > maxX || minY > maxY)
+                continue;
+
+            for (int ty = minY / TILE_SIZE; ty <= maxY / TILE_SIZE; ty++) {
+
+                for (int tx = minX / TILE_SIZE; tx <= maxX / TILE_SIZE; tx++) {
+
+                    int tile = ty * tilesX + tx;
+                    if (tileCounts[tile] == tileBins[tile].length)
+                        tileBins[tile] = Arrays.copyOf(tileBins[tile], tileCounts[tile] * 2);
+
+                    tileBins[tile][tileCounts[tile]++] = t;
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /** Rasterizes the triangles binned into one tile, clipped to the tile's pixels and the scissor rectangle. */
+    private void drawTile(float[] coords, int[] colors, int tile) {
+
+        int minX = (tile % tilesX) * TILE_SIZE;
+        int minY = (tile / tilesX) * TILE_SIZE;
+        int maxX = Math.min(Math.min(minX + TILE_SIZE, width) - 1, scissorMaxX);
+        int maxY = Math.min(Math.min(minY + TILE_SIZE, height) - 1, scissorMaxY);
+        minX = Math.max(minX, scissorMinX);
+        minY = Math.max(minY, scissorMinY);
+        if (minX > maxX || minY > maxY)
+            return;
+
+        int[] bin = tileBins[tile];
+        for (int i = 0; i < tileCounts[tile]; i++)
+            drawTriangle(coords, colors, bin[i], minX, minY, maxX, maxY);
+
+    }
+
+    /** Fills triangle t of a buffer's arrays, clipped to the given pixel rectangle. */
+    private void drawTriangle(float[] coords, int[] colors, int t,
+                              int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+
+        int i = 9 * t;
+        boolean subpixel = scale != 1;
+        drawTriangle(snap(coords[i],     subpixel), snap(coords[i + 1], subpixel), coords[i + 2],
+                     snap(coords[i + 3], subpixel), snap(coords[i + 4], subpixel), coords[i + 5],
+                     snap(coords[i + 6], subpixel), snap(coords[i + 7], subpixel), coords[i + 8],
+                     colors[t], clipMinX, clipMinY, clipMaxX, clipMaxY);
+
+    }
+
+    /** Fills a screen-space triangle, touching only the pixels inside the given clip rectangle. X and Y
+     *  are in snapped units, whole pixels or sixteenths of one, while the clip rectangle is in pixels.
+     *  Because blocks are always aligned to the screen, a pixel receives exactly the same value
+     *  no matter which rectangle it was drawn through. */
+    private void drawTriangle(int x0, int y0, double z0,
+                              int x1, int y1, double z1,
+                              int x2, int y2, double z2, int rgb,
+                              int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+
+        // twice the signed area; flip the winding so that it is always positive
+        long area = (long)(x1 - x0) * (y2 - y0) - (long)(y1 - y0) * (x2 - x0);
+        if (area == 0)
+            return;
+
+        if (area < 0) {
+
+            int tx = x1, ty = y1;
+            double tz = z1;
+            x1 = x2; y1 = y2; z1 = z2;
+            x2 = tx; y2 = ty; z2 = tz;
+            area = -area;
+
+        }
+
+        // bounding box in pixels, clipped to the screen and aligned to the block grid
+        int minX = Math.max(Math.floorDiv(Math.min(x0, Math.min(x1, x2)), scale), clipMinX);
+        int minY = Math.max(Math.floorDiv(Math.min(y0, Math.min(y1, y2)), scale), clipMinY);
+        int maxX = Math.min(Math.floorDiv(Math.max(x0, Math.max(x1, x2)), scale), clipMaxX);
+        int maxY = Math.min(Math.floorDiv(Math.max(y0, Math.max(y1, y2)), scale), clipMaxY);
+        if (minX > maxX || minY > maxY)
+            return;
+
+        minX &= ~(BLOCK_SIZE - 1);
+        minY &= ~(BLOCK_SIZE - 1);
+
+        // edge function coefficients: E(x, y) = A * x + B * y + C, positive on the inside
+        long a01 = y0 - y1, b01 = x1 - x0;
+        long a12 = y1 - y2, b12 = x2 - x1;
+        long a20 = y2 - y0, b20 = x0 - x2;
+
+        // the top-left fill rule: pixels exactly on an edge belong to only one of the
+        // two triangles sharing it, so shared edges are neither skipped nor drawn twice
+        long c01 = (long)x0 * y1 - (long)y0 * x1 + (isTopLeft(a01, b01) ? 0 : -1);
+        long c12 = (long)x1 * y2 - (long)y1 * x2 + (isTopLeft(a12, b12) ? 0 : -1);
+        long c20 = (long)x2 * y0 - (long)y2 * x0 + (isTopLeft(a20, b20) ? 0 : -1);
+
+        // depth is linear in screen space, so it is interpolated as a plane
+        double invArea = 1.0 / area;
+        double dzdx = ((z1 - z0) * (y2 - y0) - (z2 - z0) * (y1 - y0)) * invArea;
+        double dzdy = ((z2 - z0) * (x1 - x0) - (z1 - z0) * (x2 - x0)) * invArea;
+        double zOrigin = z0 + (sampleOffset - x0) * dzdx + (sampleOffset - y0) * dzdy;
+
+        // from here on the edge functions and depth step by whole pixels, sampled at each pixel's sample point
+        c01 += (a01 + b01) * sampleOffset;
+        c12 += (a12 + b12) * sampleOffset;
+        c20 += (a20 + b20) * sampleOffset;
+        a01 *= scale; b01 *= scale;
+        a12 *= scale; b12 *= scale;
+        a20 *= scale; b20 *= scale;
+        dzdx *= scale;
+        dzdy *= scale;
+
+        // offsets from a block's top-left corner to its corner that is furthest inside
+        // and furthest outside each edge
+        int s = BLOCK_SIZE - 1;
+        long in01 = Math.min(0, a01 * s) + Math.min(0, b01 * s), out01 = Math.max(0, a01 * s) + Math.max(0, b01 * s);
+        long in12 = Math.min(0, a12 * s) + Math.min(0, b12 * s), out12 = Math.max(0, a12 * s) + Math.max(0, b12 * s);
+        long in20 = Math.min(0, a20 * s) + Math.min(0, b20 * s), out20 = Math.max(0, a20 * s) + Math.max(0, b20 * s);
+
+        for (int by = minY; by <= maxY; by += BLOCK_SIZE) {
+
+            long e01Row = a01 * minX + b01 * by + c01;
+            long e12Row = a12 * minX + b12 * by + c12;
+            long e20Row = a20 * minX + b20 * by + c20;
+
+            for (int bx = minX; bx <= maxX; bx += BLOCK_SIZE) {
+
+                long e01 = e01Row, e12 = e12Row, e20 = e20Row;
+                e01Row += a01 * BLOCK_SIZE;
+                e12Row += a12 * BLOCK_SIZE;
+                e20Row += a20 * BLOCK_SIZE;
+
+                // trivially reject blocks that lie entirely outside any edge
+                if (e01 + out01 < 0 || e12 + out12 < 0 || e20 + out20 < 0)
+                    continue;
+
+                int x1b = Math.min(bx + s, maxX);
+                int y1b = Math.min(by + s, maxY);
+                double zBlock = zOrigin + bx * dzdx + by * dzdy;
+
+                // blocks entirely inside all three edges skip the per-pixel coverage test
+                if (e01 + in01 >= 0 && e12 + in12 >= 0 && e20 + in20 >= 0)
+                    fillBlock(bx, by, x1b, y1b, zBlock, dzdx, dzdy, rgb);
+                else
+                    scanBlock(bx, by, x1b, y1b, e01, e12, e20, a01, b01, a12, b12, a20, b20,
+                              zBlock, dzdx, dzdy, rgb);
+
+            }
+
+        }
+
+    }
+
+    /** Edges on the top or left of a triangle own the pixels lying exactly on them. */
+    private static boolean isTopLeft(long a, long b) {
+
+        return a > 0 || (a == 0 && b > 0);
+
+    }
+
+    /** Fills every pixel of a block that passes the depth test. */
+    private void fillBlock(int x0, int y0, int x1, int y1,
+                           double zBlock, double dzdx, double dzdy, int rgb) {
+
+        float dz = (float)dzdx;
+        for (int y = y0; y <= y1; y++) {
+
+            float z = (float)(zBlock + (y - y0) * dzdy);
+            KERNELS.fillSpan(colorBuffer, depthBuffer, y * width + x0, x1 - x0 + 1, z, dz, rgb, depthTest);
+
+        }
+
+    }
+
+    /** Fills the pixels of a block that lie inside all three edges, stepping the edge functions incrementally. */
+    private void scanBlock(int x0, int y0, int x1, int y1,
+                           long e01Row, long e12Row, long e20Row,
+                           long a01, long b01, long a12, long b12, long a20, long b20,
+                           double zBlock, double dzdx, double dzdy, int rgb) {
+
+        float dz = (float)dzdx;
+        for (int y = y0; y <= y1; y++) {
+
+            float z = (float)(zBlock + (y - y0) * dzdy);
+            KERNELS.scanSpan(colorBuffer, depthBuffer, y * width + x0, x1 - x0 + 1,
+                             e01Row, e12Row, e20Row, a01, a12, a20, z, dz, rgb, depthTest);
+
+            e01Row += b01;
+            e12Row += b12;
+            e20Row += b20;
+
+        }
+
+    }
+
+}
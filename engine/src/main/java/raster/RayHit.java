@@ -0,0 +1,50 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// RayHit Class -- 3D Engine
+
+/*
+This class holds the closest intersection found by a ray query:
+which object and which of its triangles the ray struck, and how
+far along the ray. A query fills in a RayHit passed by the
+caller, so repeated picking does not allocate.
+ */
+
+package raster;
+
+public class RayHit {
+
+    // the Mesh that was hit, and its position in the scene
+    public Mesh mesh;
+    public int object;
+
+    // the triangle of the Mesh that was hit
+    public int triangle;
+
+    // the hit point is origin + distance * direction
+    public double distance;
+
+    /** Default constructor. Holds no hit. */
+    public RayHit() {
+
+        clear();
+
+    }
+
+    /** Forgets any previous hit. */
+    public void clear() {
+
+        mesh = null;
+        object = -1;
+        triangle = -1;
+        distance = Double.POSITIVE_INFINITY;
+
+    }
+
+    /** Returns true if a hit has been recorded. */
+    public boolean isHit() {
+
+        return mesh != null;
+
+    }
+
+}
@@ -0,0 +1,167 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// RenderLoop Class -- 3D Engine
+
+/*
+This class draws frames to a Screen on its own thread, apart
+from the simulation, paced by the RenderSettings. VSYNC paces
+frames to the display's refresh rate, since Java2D gives a
+window no way to wait for the real vertical blank; CAPPED holds
+to a target frame rate; UNCAPPED draws back to back, to measure
+how fast frames can really be drawn. Each frame draws the
+newest published state, blended from the step before it by how
+much real time has passed since it was due, so motion stays
+smooth when frames come faster than steps.
+
+Frames are timed against deadlines rather than by sleeping a
+fixed amount after each one, so the rate does not drift by the
+time a frame takes. A frame that is late by more than a whole
+period moves the deadline instead of being followed by a burst
+of hurried frames.
+ */
+
+package raster;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.util.concurrent.locks.LockSupport;
+
+public class RenderLoop implements Runnable {
+
+    // the refresh rate assumed when the display does not report one
+    private static final double DEFAULT_REFRESH_RATE = 60.0;
+
+    // how long to wait for the first state to be published, in nanoseconds
+    private static final long IDLE_WAIT = 1_000_000;
+
+    private final Screen screen;
+    private final RenderSettings settings;
+    private volatile boolean running;
+    private Thread thread;
+
+    // frames drawn in total, and the rate measured over the last whole second
+    private volatile long frames;
+    private volatile double framesPerSecond;
+
+    /** Constructor. The loop will draw to the screen, paced as the settings say. */
+    public RenderLoop(Screen screen, RenderSettings settings) {
+
+        this.screen = screen;
+        this.settings = settings;
+
+    }
+
+    /** Starts the render thread. */
+    public synchronized void start() {
+
+        if (running)
+            return;
+
+        running = true;
+        thread = new Thread(this, "render");
+        thread.start();
+
+    }
+
+    /** Stops the render thread, waiting for the frame in progress to finish. */
+    public synchronized void stop() {
+
+        running = false;
+        if (thread == null)
+            return;
+
+        LockSupport.unpark(thread);
+        try {
+
+            thread.join();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+        thread = null;
+
+    }
+
+    /** Returns the number of frames drawn so far. */
+    public long frames() {
+
+        return frames;
+
+    }
+
+    /** Returns the frame rate measured over the last whole second. */
+    public double framesPerSecond() {
+
+        return framesPerSecond;
+
+    }
+
+    /** Returns the time between frames in nanoseconds for the settings' pacing, or 0 for UNCAPPED. */
+    public long framePeriod() {
+
+        switch (settings.pacing) {
+
+            case RenderSettings.VSYNC:  return (long)(1e9 / refreshRate());
+            case RenderSettings.CAPPED: return (long)(1e9 / settings.maxFps);
+            default:                    return 0;
+
+        }
+
+    }
+
+    /** Returns the refresh rate of the default display in frames per second, or 60 if it is unknown. */
+    public static double refreshRate() {
+
+        if (GraphicsEnvironment.isHeadless())
+            return DEFAULT_REFRESH_RATE;
+
+        int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_REFRESH_RATE : rate;
+
+    }
+
+    /** Draws frames until the loop is stopped. */
+    @Override
+    public void run() {
+
+        long period = framePeriod();
+        long deadline = System.nanoTime();
+        long second = deadline, framesAtSecond = 0;
+
+        while (running) {
+
+            if (!screen.renderFrame()) {
+
+                // nothing has been published yet
+                LockSupport.parkNanos(IDLE_WAIT);
+                continue;
+
+            }
+
+            frames++;
+            long now = System.nanoTime();
+            if (now - second >= 1_000_000_000L) {
+
+                framesPerSecond = (frames - framesAtSecond) * 1e9 / (now - second);
+                framesAtSecond = frames;
+                second = now;
+
+            }
+
+            if (period == 0)
+                continue;
+
+            deadline += period;
+            if (now - deadline > period)
+                deadline = now;
+            else if (deadline - now > 0)
+                LockSupport.parkNanos(deadline - now);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,54 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// RenderSettings Class -- 3D Engine
+
+/*
+This class holds the options that control how a Renderer
+draws a frame: image size, projection, threading, and how
+visibility is resolved. The defaults match the Engine window.
+ */
+
+package raster;
+
+public class RenderSettings {
+
+    public int width  = 800;
+    public int height = 600;
+    public double fov = 90.0;
+    public double nearPlane = 0.1;
+    public double farPlane  = 10000.0;
+
+    // number of threads used to process geometry and rasterize; 1 renders on the calling thread
+    public int threads = 1;
+
+    // draw back-to-front without a depth buffer instead of depth testing
+    public boolean painterMode = false;
+
+    // snap screen positions to sixteenths of a pixel and sample pixel centers, rather than
+    // truncating to whole pixels, so that edges move smoothly instead of shimmering
+    public boolean subpixel = false;
+
+    // draw only the pixels under objects that changed since the last frame, and nothing at all
+    // when nothing did. The image comes out the same either way
+    public boolean incremental = true;
+
+    // skip meshes hidden behind the meshes marked as occluders
+    public boolean occlusionCulling = true;
+
+    // packed RGB color every frame is cleared to
+    public int clearColor = 0x191919;
+
+    // how a RenderLoop paces frames: in step with the display's refresh rate, no faster
+    // than maxFps, or as fast as possible, which is for measuring throughput
+    public static final int VSYNC = 0, CAPPED = 1, UNCAPPED = 2;
+    public int pacing = VSYNC;
+    public double maxFps = 60.0;
+
+    /** Returns the screen aspect ratio, height over width, as used by the projection matrix. */
+    public double aspectRatio() {
+
+        return (double)height / (double)width;
+
+    }
+
+}
@@ -0,0 +1,58 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// RenderStatsMXBean Interface -- 3D Engine
+
+/*
+This interface is the management view of a FrameProfiler. Once
+registered with the platform MBean server, it can be read with
+JConsole, VisualVM, or any JMX-based monitoring agent, so frame
+time can be watched and alerted on without attaching a profiler.
+Latencies cover every frame since the last reset.
+ */
+
+package raster;
+
+public interface RenderStatsMXBean {
+
+    /** Returns the number of frames rendered. */
+    long getFrames();
+
+    /** Returns the number of frames skipped because nothing in them changed. These are not frames
+     *  rendered, and are left out of every latency. */
+    long getFramesSkipped();
+
+    /** Returns the number of triangles the last frame started with. */
+    int getTrianglesIn();
+
+    /** Returns the number of triangles the last frame culled. */
+    int getTrianglesCulled();
+
+    /** Returns the number of triangles the last frame rasterized. */
+    int getTrianglesDrawn();
+
+    /** Returns the number of triangles the last frame left as they were drawn before, outside the pixels
+     *  it drew again. */
+    int getTrianglesKept();
+
+    /** Returns the latency of whole frames. */
+    StageLatency getFrame();
+
+    /** Returns the latency of transforming vertices. */
+    StageLatency getTransform();
+
+    /** Returns the latency of culling objects and choosing their detail levels. */
+    StageLatency getCull();
+
+    /** Returns the latency of culling, lighting, and clipping triangles. */
+    StageLatency getLight();
+
+    /** Returns the latency of sorting triangles for the painter's algorithm. */
+    StageLatency getSort();
+
+    /** Returns the latency of rasterizing triangles. */
+    StageLatency getFill();
+
+    /** Forgets every latency measured so far. */
+    void reset();
+
+}
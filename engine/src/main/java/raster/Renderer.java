@@ -0,0 +1,650 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// Renderer Class -- 3D Engine
+
+/*
+This class implements the complete render pipeline, from
+meshes and a camera to finished pixels, without any Swing
+component. It can run on a headless machine: the frame is
+drawn into an int[] that backs a BufferedImage, which the
+caller can show in a window, save to disk, or read directly.
+
+Before any of a Mesh's triangles are processed, its bounds are
+tested against the view frustum, and meshes entirely outside
+it are skipped. Meshes that are drawn use the detail level that
+suits their size on screen. Large scenes can be given as a SceneBVH instead,
+which finds the visible objects without visiting all of them,
+and which also answers what is under a pixel of the frame.
+
+Meshes marked as occluders are drawn first and rasterized into
+an OcclusionBuffer, and every other Mesh or instance whose box
+is entirely hidden behind them is skipped before its geometry
+is processed.
+
+Every frame is measured by a FrameProfiler: the time spent in
+each stage and how many triangles came in, were culled, and
+were drawn. Objects the scene hierarchy skips never come in.
+
+Each frame is first recorded in a DrawList and compared with the
+last one. If nothing changed, the frame is left as it was and no
+work is done; if only some objects changed and the camera did
+not, only the pixels under their old and new screen rectangles
+are cleared and drawn again. Either way the result is exactly
+what drawing the whole frame would give.
+ */
+
+package raster;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class Renderer {
+
+    private final RenderSettings settings;
+    private final BufferedImage frame;
+    private final int[] pixels;
+    private final Rasterizer rasterizer;
+    private final GeometryStage geometry;
+    private final TriangleBuffer projected;
+    private final DepthSorter depthSorter;
+    private final OcclusionBuffer occlusion;
+    private final Matrix matProj;
+    private final Vector lightDirection;
+    private final FrameProfiler profiler;
+    private ForkJoinPool pool;
+    private boolean ownsPool;
+
+    // matrices rebuilt in place every frame
+    private final Matrix cam = new Matrix(), viewProj = new Matrix();
+    private final Matrix meshWorld = new Matrix(), worldViewProj = new Matrix();
+    private final Matrix sceneViewProj = new Matrix(), instanceMatrix = new Matrix(), pickMatrix = new Matrix();
+    private final Matrix packetTransform = new Matrix(), packetView = new Matrix(), packetWorld = new Matrix();
+    private final Vector eye = new Vector(), packetEye = new Vector();
+    private final Frustum frustum = new Frustum(), sceneFrustum = new Frustum();
+    private int[] visible = new int[0];
+    private int meshesCulled, meshesOccluded, meshesKept;
+    private int visibleCount;
+    private long cullStart;
+
+    // this frame's records and the last frame's, and the pixels the last frame drew, inclusive
+    private DrawList draws = new DrawList(), lastDraws = new DrawList();
+    private boolean lastDrawsValid;
+    private final int[] rect = new int[4], dirty = new int[4];
+
+    /** Constructor. Allocates the frame and, if more than one thread is requested, a thread pool. */
+    public Renderer(RenderSettings s) {
+
+        settings = s;
+
+        // frames are rasterized in software into the pixels of this image
+        frame = new BufferedImage(s.width, s.height, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        rasterizer = new Rasterizer(s.width, s.height, pixels);
+        rasterizer.setDepthTest(!s.painterMode);
+        rasterizer.setSubpixel(s.subpixel);
+        geometry = new GeometryStage(s.width, s.height);
+        geometry.setSubpixel(s.subpixel);
+        projected = new TriangleBuffer();
+        depthSorter = new DepthSorter();
+        occlusion = new OcclusionBuffer(s.width, s.height);
+        occlusion.setSubpixel(s.subpixel);
+        profiler = new FrameProfiler();
+        geometry.setProfiler(profiler);
+
+        // create simple light source for the scene. -1 is used for the direction because
+        // tris should be illuminated most when their surface normal aligns with the lighting direction;
+        // thus, (0, 0, -1) represents a light shining towards +Z.
+        lightDirection = new Vector(1, -1, -1);
+        lightDirection.normalize();
+
+        // initialize the projection matrix used to convert 3D points to 2D coordinates
+        matProj = Matrix.makeProjection(s.fov, s.aspectRatio(), s.nearPlane, s.farPlane);
+
+        if (s.threads > 1) {
+
+            setPool(new ForkJoinPool(s.threads));
+            ownsPool = true;
+
+        }
+
+    }
+
+    /** Sets the thread pool used to process geometry and rasterize in parallel, replacing any pool the
+     *  Renderer created itself. A null pool renders on the calling thread. Either way, the same image is produced. */
+    public void setPool(ForkJoinPool p) {
+
+        if (ownsPool)
+            pool.shutdown();
+
+        pool = p;
+        ownsPool = false;
+        geometry.setPool(p);
+        rasterizer.setPool(p);
+        depthSorter.setPool(p);
+
+    }
+
+    /** Switches between the depth buffer and painter's algorithm for resolving visibility.
+     *  The painter's algorithm sorts triangles back-to-front and draws them without a depth test. */
+    public void setPainterMode(boolean enabled) {
+
+        settings.painterMode = enabled;
+        rasterizer.setDepthTest(!enabled);
+
+    }
+
+    /** Renders one frame of the meshes as seen by the camera. Each Mesh is placed by its own transform
+     *  followed by the world matrix, which is shared by all of them.
+     *  The camera's look direction follows its yaw, just as when it is drawn in the Engine window.
+     *  Returns the image holding the frame, which is reused by the next call. */
+    public BufferedImage render(List<Mesh> meshes, Camera camera, Matrix world) {
+
+        return render(meshes, Collections.emptyList(), camera, world);
+
+    }
+
+    /** Renders one frame of the meshes and instance sets as seen by the camera. Every instance is placed by
+     *  its own transform followed by the world matrix, and is culled on its own before its triangles are touched. */
+    public BufferedImage render(List<Mesh> meshes, List<InstanceSet> instances, Camera camera, Matrix world) {
+
+        beginFrame(camera.makeViewMatrix(cam), camera.position, world);
+
+        // occluders go first, so that everything else can be tested against them
+        for (int pass = 0; pass < 2; pass++) {
+
+            boolean occluders = pass == 0;
+            for (int i = 0; i < meshes.size(); i++) {
+
+                if (meshes.get(i).isOccluder() == occluders)
+                    addMesh(meshes.get(i), meshes.get(i).getTransform(), world);
+
+            }
+
+            if (occluders)
+                draws.endOccluders();
+
+        }
+
+        for (int i = 0; i < instances.size(); i++)
+            addInstances(instances.get(i), world);
+
+        return endFrame();
+
+    }
+
+    /** Renders one frame from a snapshot taken by the update side. Everything drawn comes from the packet,
+     *  including each Mesh's transform, so the world may go on changing while the frame is drawn. */
+    public BufferedImage render(FramePacket packet) {
+
+        return render(packet, 1.0);
+
+    }
+
+    /** Renders one frame from a snapshot, with the camera, the world matrix, and each Mesh's transform blended
+     *  by t from the previous simulation step (t = 0) to the packet's own (t = 1). Instances and scene objects
+     *  are drawn where the packet has them. */
+    public BufferedImage render(FramePacket packet, double t) {
+
+        Matrix world = packet.world(t, packetWorld);
+        beginFrame(packet.view(t, packetView), packet.cameraPosition(t, packetEye), world);
+
+        if (packet.scene() != null)
+            cullScene(packet.scene());
+
+        for (int pass = 0; pass < 2; pass++) {
+
+            boolean occluders = pass == 0;
+            if (packet.scene() != null)
+                addScene(packet.scene(), world, occluders);
+
+            for (int i = 0; i < packet.meshCount(); i++) {
+
+                if (packet.mesh(i).isOccluder() == occluders)
+                    addMesh(packet.mesh(i), packet.meshTransform(i, t, packetTransform), world);
+
+            }
+
+            if (occluders)
+                draws.endOccluders();
+
+        }
+
+        for (int i = 0; i < packet.instanceSetCount(); i++)
+            addInstances(packet.instanceSet(i), world);
+
+        return endFrame();
+
+    }
+
+    /** Renders one frame of a scene as seen by the camera, exactly as render does with a list of its meshes.
+     *  The hierarchy finds the objects whose boxes touch the view, so objects far outside it cost nothing. */
+    public BufferedImage render(SceneBVH scene, Camera camera, Matrix world) {
+
+        beginFrame(camera.makeViewMatrix(cam), camera.position, world);
+        cullScene(scene);
+        addScene(scene, world, true);
+        draws.endOccluders();
+        addScene(scene, world, false);
+        return endFrame();
+
+    }
+
+    /** Finds the object under pixel (x, y) of the last frame rendered with this world matrix, storing it in hit.
+     *  Returns true if an object covers the pixel. */
+    public boolean pick(SceneBVH scene, Matrix world, int x, int y, RayHit hit) {
+
+        hit.clear();
+        Matrix.multiply(world, viewProj, pickMatrix);
+        if (Matrix.invert(pickMatrix, pickMatrix) == null)
+            return false;
+
+        // the ray runs through the pixel's center from the near plane (z = 0) to the far plane (z = w)
+        double ndcX = (x + 0.5) / settings.width * 2 - 1;
+        double ndcY = (y + 0.5) / settings.height * 2 - 1;
+        double[] m = pickMatrix.m;
+        double nx = ndcX * m[0] + ndcY * m[4] + m[12];
+        double ny = ndcX * m[1] + ndcY * m[5] + m[13];
+        double nz = ndcX * m[2] + ndcY * m[6] + m[14];
+        double nw = ndcX * m[3] + ndcY * m[7] + m[15];
+        double fx = nx + m[8], fy = ny + m[9], fz = nz + m[10], fw = nw + m[11];
+        nx /= nw; ny /= nw; nz /= nw;
+        fx /= fw; fy /= fw; fz /= fw;
+
+        return scene.raycast(nx, ny, nz, fx - nx, fy - ny, fz - nz, hit);
+
+    }
+
+    /** Sets up the camera for a new frame, and starts a new list of what it draws. */
+    private void beginFrame(Matrix view, Vector cameraPosition, Matrix world) {
+
+        profiler.beginFrame();
+        projected.clear();
+        meshesCulled = 0;
+        meshesOccluded = 0;
+        meshesKept = 0;
+        cullStart = System.nanoTime();
+
+        // the camera and projection matrices are combined so that each vertex
+        // is taken from world space to screen space with one multiplication
+        Matrix.multiply(view, matProj, viewProj);
+        eye.set(cameraPosition);
+
+        // world and view are also folded together once, so that scene boxes and
+        // instances can be culled with one multiplication each
+        Matrix.multiply(world, viewProj, sceneViewProj);
+        draws.begin(viewProj, eye, settings.clearColor, settings.painterMode);
+
+    }
+
+    /** Finds the objects of a scene whose boxes touch the view, for addScene. */
+    private void cullScene(SceneBVH scene) {
+
+        // the scene's boxes are placed by the Mesh transforms alone, so the frustum
+        // is taken in that space, with the world matrix folded into it
+        if (visible.length < scene.size())
+            visible = new int[scene.size()];
+
+        visibleCount = scene.cull(sceneFrustum.set(sceneViewProj), visible);
+
+        // draw in scene order, so that ties resolve as they would for the list of meshes
+        Arrays.sort(visible, 0, visibleCount);
+
+        meshesCulled += scene.size() - visibleCount;
+
+    }
+
+    /** Records the occluders, or the other objects, among those cullScene found in view. */
+    private void addScene(SceneBVH scene, Matrix world, boolean occluders) {
+
+        for (int i = 0; i < visibleCount; i++) {
+
+            Mesh mesh = scene.object(visible[i]);
+            if (mesh.isOccluder() == occluders)
+                addMesh(mesh, mesh.getTransform(), world);
+
+        }
+
+    }
+
+    /** Rasterizes the occluders projected so far, which are all the triangles queued, into the occlusion buffer. */
+    private void buildOcclusion() {
+
+        if (!settings.occlusionCulling || projected.size() == 0)
+            return;
+
+        occlusion.addOccluders(projected, 0, projected.size());
+        occlusion.build();
+
+    }
+
+    /** Records one Mesh, placed by a transform, choosing the detail level it is drawn at. */
+    private void addMesh(Mesh mesh, Matrix transform, Matrix world) {
+
+        Matrix.multiply(transform, world, meshWorld);
+        Matrix.multiply(meshWorld, viewProj, worldViewProj);
+        addRecord(mesh, null, 0, mesh.getColor().getRGB());
+
+    }
+
+    /** Records every instance of a set, each culled and given a detail level on its own. */
+    private void addInstances(InstanceSet set, Matrix world) {
+
+        Mesh mesh = set.mesh();
+        for (int i = 0; i < set.size(); i++) {
+
+            set.getTransform(i, instanceMatrix);
+            Matrix.multiply(instanceMatrix, sceneViewProj, worldViewProj);
+            Matrix.multiply(instanceMatrix, world, meshWorld);
+            addRecord(mesh, set, i, set.getColor(i));
+
+        }
+
+    }
+
+    /** Records a Mesh or instance placed by meshWorld and worldViewProj, noting whether it is outside the view. */
+    private void addRecord(Mesh mesh, InstanceSet set, int i, int rgb) {
+
+        // the frustum is taken in the Mesh's own object space, where its bounds were computed.
+        // They hold every detail level as well, so whichever level is drawn, it is outside when they are
+        Mesh level = mesh;
+        boolean culled = !frustum.set(worldViewProj).intersects(mesh.bounds());
+        if (culled) {
+
+            rect[0] = 0;
+            rect[1] = 0;
+            rect[2] = -1;
+            rect[3] = -1;
+
+        } else {
+
+            // draw the coarsest detail level that still suits the Mesh's size on screen
+            double area = screenArea(mesh.bounds(), meshWorld, worldViewProj);
+            level = mesh.lod(set == null ? mesh.updateLod(area) : set.updateLod(i, area));
+            screenRect(level.bounds(), worldViewProj, rect);
+
+        }
+
+        // copies of an instance set made for frame packets all stand for the set they came from
+        draws.add(mesh, level, set == null ? null : set.original(), i, rgb, meshWorld, worldViewProj, rect, culled);
+
+    }
+
+    /** Projects record i into the triangle queue, unless it is outside the view, entirely behind the occluders,
+     *  or away from the pixels being drawn. */
+    private void drawRecord(int i, int[] region) {
+
+        Mesh mesh = draws.mesh(i);
+        if (draws.isCulled(i)) {
+
+            meshesCulled++;
+            profiler.countTriangles(mesh.triangleCount(), mesh.triangleCount());
+            return;
+
+        }
+
+        // it is still on screen from an earlier frame, so it counts as neither culled nor drawn
+        if (!draws.overlaps(i, region)) {
+
+            meshesKept++;
+            profiler.countKept(draws.level(i).triangleCount());
+            return;
+
+        }
+
+        // skip it too if the level it is drawn at is entirely behind the occluders
+        draws.projection(i, worldViewProj);
+        if (!draws.isOccluder(i) && occlusion.isHidden(draws.level(i).bounds(), worldViewProj)) {
+
+            meshesOccluded++;
+            profiler.countTriangles(mesh.triangleCount(), mesh.triangleCount());
+            return;
+
+        }
+
+        geometry.process(draws.level(i), draws.color(i), draws.transform(i, meshWorld), worldViewProj,
+                         eye, lightDirection, projected);
+
+    }
+
+    /** Stores in dest the inclusive rectangle of pixels that an object with the given bounds can cover,
+     *  with a pixel to spare on every side. An object reaching behind the camera may cover any pixel. */
+    private void screenRect(Bounds box, Matrix worldViewProj, int[] dest) {
+
+        double[] m = worldViewProj.m;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int corner = 0; corner < 8; corner++) {
+
+            double x = (corner & 1) == 0 ? box.minX : box.maxX;
+            double y = (corner & 2) == 0 ? box.minY : box.maxY;
+            double z = (corner & 4) == 0 ? box.minZ : box.maxZ;
+
+            double cx = x * m[0] + y * m[4] + z * m[8]  + m[12];
+            double cy = x * m[1] + y * m[5] + z * m[9]  + m[13];
+            double cz = x * m[2] + y * m[6] + z * m[10] + m[14];
+            double cw = x * m[3] + y * m[7] + z * m[11] + m[15];
+            if (!(cz >= 0 && cw > 0)) {
+
+                minX = minY = Double.NEGATIVE_INFINITY;
+                maxX = maxY = Double.POSITIVE_INFINITY;
+                break;
+
+            }
+
+            double sx = (cx / cw + 1) * 0.5 * settings.width;
+            double sy = (cy / cw + 1) * 0.5 * settings.height;
+            minX = Math.min(minX, sx);
+            minY = Math.min(minY, sy);
+            maxX = Math.max(maxX, sx);
+            maxY = Math.max(maxY, sy);
+
+        }
+
+        dest[0] = (int)Math.max(0, Math.floor(minX) - 1);
+        dest[1] = (int)Math.max(0, Math.floor(minY) - 1);
+        dest[2] = (int)Math.min(settings.width - 1, Math.ceil(maxX) + 1);
+        dest[3] = (int)Math.min(settings.height - 1, Math.ceil(maxY) + 1);
+
+    }
+
+    /** Returns roughly how many pixels an object with the given bounds covers, from its bounding sphere.
+     *  Returns infinity if the camera is inside the sphere. */
+    private double screenArea(Bounds bounds, Matrix meshWorld, Matrix worldViewProj) {
+
+        // the sphere's radius grows by the largest scale in the transform, whose rows are the object's axes
+        double[] t = meshWorld.m;
+        double scale2 = Math.max(t[0] * t[0] + t[1] * t[1] + t[2] * t[2],
+                        Math.max(t[4] * t[4] + t[5] * t[5] + t[6] * t[6],
+                                 t[8] * t[8] + t[9] * t[9] + t[10] * t[10]));
+        double radius = bounds.radius * Math.sqrt(scale2);
+
+        // the projection leaves view depth in w
+        double[] m = worldViewProj.m;
+        double depth = bounds.centerX * m[3] + bounds.centerY * m[7] + bounds.centerZ * m[11] + m[15];
+        if (depth <= radius)
+            return Double.POSITIVE_INFINITY;
+
+        double pixelRadius = radius / depth * matProj.m[5] * 0.5 * settings.height;
+        return Math.PI * pixelRadius * pixelRadius;
+
+    }
+
+    /** Compares the frame with the last one, then projects, resolves visibility, and rasterizes whatever
+     *  has to be drawn again. Returns the finished frame. */
+    private BufferedImage endFrame() {
+
+        int change = DrawList.FULL;
+        if (settings.incremental && lastDrawsValid)
+            change = draws.compare(lastDraws, dirty);
+
+        // a frame identical to the last is already in the image
+        if (change == DrawList.UNCHANGED) {
+
+            dirty[0] = 0;
+            dirty[1] = 0;
+            dirty[2] = -1;
+            dirty[3] = -1;
+            profiler.skipFrame();
+            keepDraws();
+            return frame;
+
+        }
+
+        if (change == DrawList.FULL) {
+
+            dirty[0] = 0;
+            dirty[1] = 0;
+            dirty[2] = settings.width - 1;
+            dirty[3] = settings.height - 1;
+
+        }
+
+        // clear the pixels being drawn again, then project everything that can reach them
+        rasterizer.setScissor(dirty[0], dirty[1], dirty[2], dirty[3]);
+        rasterizer.getScissor(dirty);
+        rasterizer.clear(settings.clearColor);
+        occlusion.clear();
+        for (int i = 0; i < draws.size(); i++) {
+
+            if (i == draws.occluderCount())
+                buildOcclusion();
+
+            drawRecord(i, dirty);
+
+        }
+
+        // everything before this point that was not spent in the geometry stage went to
+        // culling objects, choosing their detail levels, and building their matrices
+        long sortStart = System.nanoTime();
+        profiler.add(FrameProfiler.CULL, sortStart - cullStart
+                     - profiler.elapsed(FrameProfiler.TRANSFORM) - profiler.elapsed(FrameProfiler.LIGHT));
+
+        // the depth buffer resolves visibility per pixel, so triangles can be drawn
+        // in any order. The painter's algorithm instead needs them ordered
+        // back-to-front, which is only an approximation for overlapping triangles.
+        if (settings.painterMode)
+            depthSorter.sortBackToFront(projected);
+
+        // rasterize the projected triangles into the frame
+        long fillStart = System.nanoTime();
+        rasterizer.drawTriangles(projected);
+        profiler.add(FrameProfiler.SORT, fillStart - sortStart);
+        profiler.add(FrameProfiler.FILL, System.nanoTime() - fillStart);
+        profiler.endFrame(projected.size());
+        keepDraws();
+
+        return frame;
+
+    }
+
+    /** Keeps this frame's records to compare the next frame with. */
+    private void keepDraws() {
+
+        DrawList swap = lastDraws;
+        lastDraws = draws;
+        draws = swap;
+        lastDrawsValid = true;
+
+    }
+
+    /** Makes the next frame be drawn in full, as when pixels of the image have been changed by something else. */
+    public void invalidate() {
+
+        lastDrawsValid = false;
+
+    }
+
+    /** Stores in dest the pixels the last frame drew, which are all of them unless only some objects changed,
+     *  and none if nothing did. Returns dest. */
+    public Rectangle lastDirtyRegion(Rectangle dest) {
+
+        dest.setBounds(dirty[0], dirty[1], dirty[2] - dirty[0] + 1, dirty[3] - dirty[1] + 1);
+        return dest;
+
+    }
+
+    /** Returns the number of frames left as they were because nothing in them changed. */
+    public long framesSkipped() {
+
+        return profiler.getFramesSkipped();
+
+    }
+
+    /** Returns the number of meshes and instances skipped by frustum culling in the last frame. */
+    public int meshesCulled() {
+
+        return meshesCulled;
+
+    }
+
+    /** Returns the number of meshes and instances skipped in the last frame because occluders hid them. */
+    public int meshesOccluded() {
+
+        return meshesOccluded;
+
+    }
+
+    /** Returns the number of meshes and instances left as the frame before drew them, because they lie
+     *  outside the pixels the last frame drew again. */
+    public int meshesKept() {
+
+        return meshesKept;
+
+    }
+
+    /** Returns the profiler that measures every frame this Renderer draws. */
+    public FrameProfiler profiler() {
+
+        return profiler;
+
+    }
+
+    /** Returns the image that frames are rendered into. */
+    public BufferedImage image() {
+
+        return frame;
+
+    }
+
+    /** Returns the packed RGB pixels of the frame, row by row. */
+    public int[] pixels() {
+
+        return pixels;
+
+    }
+
+    /** Returns the settings this Renderer was created with. */
+    public RenderSettings settings() {
+
+        return settings;
+
+    }
+
+    /** Releases the thread pool, if the Renderer created one. */
+    public void shutdown() {
+
+        if (ownsPool)
+            pool.shutdown();
+
+        ownsPool = false;
+
+    }
+
+    /** Overwrites dest with the spinning animation the Engine shows, at the given time in seconds, using
+     *  scratch to build each step in so that nothing is allocated. Returns dest. */
+    public static Matrix makeTurntable(double time, Matrix dest, Matrix scratch) {
+
+        // all rotations and translations in 3D space
+        // are combined into one world matrix
+        Matrix.makeRotationX(time * 0.5, dest);
+        Matrix.multiply(dest, Matrix.makeRotationZ(time, scratch), dest); // order is important! rotate, then translate
+        return Matrix.multiply(dest, Matrix.makeTranslation(0, 0, 6.0, scratch), dest);
+
+    }
+
+}
@@ -0,0 +1,568 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// SceneBVH Class -- 3D Engine
+
+/*
+This class implements a bounding volume hierarchy over the
+meshes of a scene, so that visibility and picking queries visit
+a logarithmic number of objects instead of every one of them.
+
+Each object's box is its Mesh bounds carried through the Mesh's
+transform. The tree is built top-down with the binned surface
+area heuristic: object centroids are dropped into a few bins
+along the longest axis, and the split between bins that
+minimizes the expected cost of a query is taken. Nodes live in
+flat arrays, children are always stored after their parent, and
+both children of a node are adjacent, so a refit after objects
+move is a single backward pass, and moving one object only
+touches the nodes above it.
+
+Queries share one traversal stack and must come from one thread
+at a time, like the Renderer that issues them.
+ */
+
+package raster;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class SceneBVH {
+
+    public static final int MAX_LEAF_SIZE = 4;
+    public static final int BINS = 16;
+
+    private final Mesh[] objects;
+
+    // per-object box (minX, minY, minZ, maxX, maxY, maxZ) in the space the Mesh transforms place them in
+    private final float[] objectBoxes;
+
+    // object indexes, grouped so that every node covers a contiguous range
+    private final int[] order;
+
+    // the leaf holding each object
+    private final int[] objectLeaf;
+
+    // per-node box, first child (the second is right after it, or -1 for leaves),
+    // parent, and range of order covered
+    private final float[] nodeBoxes;
+    private final int[] nodeChild, nodeParent, nodeFirst, nodeCount;
+    private int nodes;
+
+    // scratch space for building and querying
+    private int[] stack;
+    private final int[] binCount = new int[BINS];
+    private final float[] binBoxes = new float[6 * BINS];
+    private final float[] rightArea = new float[BINS];
+    private final float[] sweepBox = new float[6];
+    private final Matrix inverse = new Matrix();
+
+    /** Constructor. Builds the hierarchy over the meshes, which must not be added to or removed from afterwards.
+     *  Moving them is fine, as long as refit is called before the next query. */
+    public SceneBVH(List<Mesh> meshes) {
+
+        int n = meshes.size();
+        objects = meshes.toArray(new Mesh[0]);
+        objectBoxes = new float[6 * n];
+        order = new int[n];
+        objectLeaf = new int[n];
+
+        // a binary tree with at most one object per leaf has fewer than 2n nodes
+        int maxNodes = Math.max(1, 2 * n - 1);
+        nodeBoxes = new float[6 * maxNodes];
+        nodeChild = new int[maxNodes];
+        nodeParent = new int[maxNodes];
+        nodeFirst = new int[maxNodes];
+        nodeCount = new int[maxNodes];
+
+        rebuild();
+
+    }
+
+    /** Returns the number of objects in the hierarchy. */
+    public int size() {
+
+        return objects.length;
+
+    }
+
+    /** Returns object i, in the order the meshes were given. */
+    public Mesh object(int i) {
+
+        return objects[i];
+
+    }
+
+    /** Rebuilds the tree from scratch. Refitting is much cheaper, but after objects have moved
+     *  a long way, a rebuilt tree answers queries faster. */
+    public void rebuild() {
+
+        int n = objects.length;
+        for (int i = 0; i < n; i++) {
+
+            updateObjectBox(i);
+            order[i] = i;
+
+        }
+
+        nodes = 1;
+        nodeParent[0] = -1;
+        if (n == 0) {
+
+            nodeChild[0] = -1;
+            nodeFirst[0] = 0;
+            nodeCount[0] = 0;
+            setEmptyBox(nodeBoxes, 0);
+            stack = new int[2];
+            return;
+
+        }
+
+        // split nodes with an explicit work list, since a badly clustered scene can make the tree deep
+        int[] work = new int[Math.max(1, 2 * n - 1)];
+        int pending = 0, depth = 0;
+        int[] nodeDepth = new int[nodeChild.length];
+        nodeFirst[0] = 0;
+        nodeCount[0] = n;
+        work[pending++] = 0;
+
+        while (pending > 0) {
+
+            int node = work[--pending];
+            depth = Math.max(depth, nodeDepth[node]);
+            int left = split(node);
+            if (left >= 0) {
+
+                nodeDepth[left] = nodeDepth[left + 1] = nodeDepth[node] + 1;
+                work[pending++] = left;
+                work[pending++] = left + 1;
+
+            }
+
+        }
+
+        stack = new int[depth + 2];
+
+    }
+
+    /** Recomputes every object's box from its Mesh and transform, then every node's box, keeping the tree shape. */
+    public void refit() {
+
+        for (int i = 0; i < objects.length; i++)
+            updateObjectBox(i);
+
+        // children are stored after their parents, so a backward pass sees every child first
+        for (int node = nodes - 1; node >= 0; node--)
+            updateNodeBox(node);
+
+    }
+
+    /** Recomputes the box of one object that has moved, and of the nodes above it. */
+    public void refit(int object) {
+
+        updateObjectBox(object);
+        for (int node = objectLeaf[object]; node >= 0; node = nodeParent[node])
+            updateNodeBox(node);
+
+    }
+
+    /** Writes the indexes of all objects whose boxes touch the frustum into visible, in no particular order,
+     *  and returns how many there are. The frustum must be in the space the Mesh transforms place objects in,
+     *  and visible must have room for every object. */
+    public int cull(Frustum frustum, int[] visible) {
+
+        if (objects.length == 0)
+            return 0;
+
+        int count = 0, top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+
+            int node = stack[--top];
+            int b = 6 * node;
+            int side = frustum.classifyBox(nodeBoxes[b], nodeBoxes[b + 1], nodeBoxes[b + 2],
+                                           nodeBoxes[b + 3], nodeBoxes[b + 4], nodeBoxes[b + 5]);
+            if (side == Frustum.OUTSIDE)
+                continue;
+
+            int first = nodeFirst[node], end = first + nodeCount[node];
+            if (side == Frustum.INSIDE) {
+
+                // everything below a node inside the frustum is visible, with no further tests
+                System.arraycopy(order, first, visible, count, end - first);
+                count += end - first;
+
+            } else if (nodeChild[node] < 0) {
+
+                for (int i = first; i < end; i++) {
+
+                    int o = 6 * order[i];
+                    if (frustum.intersectsBox(objectBoxes[o], objectBoxes[o + 1], objectBoxes[o + 2],
+                                              objectBoxes[o + 3], objectBoxes[o + 4], objectBoxes[o + 5]))
+                        visible[count++] = order[i];
+
+                }
+
+            } else {
+
+                stack[top++] = nodeChild[node];
+                stack[top++] = nodeChild[node] + 1;
+
+            }
+
+        }
+
+        return count;
+
+    }
+
+    /** Finds the closest triangle hit by the ray origin + t * direction for t >= 0, storing it in hit.
+     *  The ray must be in the space the Mesh transforms place objects in. Both sides of a triangle count.
+     *  Returns true if anything was hit. */
+    public boolean raycast(double ox, double oy, double oz, double dx, double dy, double dz, RayHit hit) {
+
+        hit.clear();
+        if (objects.length == 0)
+            return false;
+
+        double invX = 1.0 / dx, invY = 1.0 / dy, invZ = 1.0 / dz;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+
+            int node = stack[--top];
+            if (slab(nodeBoxes, 6 * node, ox, oy, oz, invX, invY, invZ) >= hit.distance)
+                continue;
+
+            int child = nodeChild[node];
+            if (child < 0) {
+
+                for (int i = nodeFirst[node], end = i + nodeCount[node]; i < end; i++) {
+
+                    int object = order[i];
+                    if (slab(objectBoxes, 6 * object, ox, oy, oz, invX, invY, invZ) < hit.distance)
+                        raycastMesh(object, ox, oy, oz, dx, dy, dz, hit);
+
+                }
+
+                continue;
+
+            }
+
+            // visit the nearer child first, so that its hits let the farther one be skipped
+            double tLeft = slab(nodeBoxes, 6 * child, ox, oy, oz, invX, invY, invZ);
+            double tRight = slab(nodeBoxes, 6 * (child + 1), ox, oy, oz, invX, invY, invZ);
+            if (tLeft <= tRight) {
+
+                stack[top++] = child + 1;
+                stack[top++] = child;
+
+            } else {
+
+                stack[top++] = child;
+                stack[top++] = child + 1;
+
+            }
+
+        }
+
+        return hit.isHit();
+
+    }
+
+    /** Tests the ray against every triangle of one object, in the object's own space. */
+    private void raycastMesh(int object, double ox, double oy, double oz, double dx, double dy, double dz, RayHit hit) {
+
+        Mesh mesh = objects[object];
+        if (Matrix.invert(mesh.getTransform(), inverse) == null)
+            return;
+
+        // an affine transform keeps t the same along the ray, so hits compare directly across objects
+        double[] m = inverse.m;
+        double lox = ox * m[0] + oy * m[4] + oz * m[8]  + m[12];
+        double loy = ox * m[1] + oy * m[5] + oz * m[9]  + m[13];
+        double loz = ox * m[2] + oy * m[6] + oz * m[10] + m[14];
+        double ldx = dx * m[0] + dy * m[4] + dz * m[8];
+        double ldy = dx * m[1] + dy * m[5] + dz * m[9];
+        double ldz = dx * m[2] + dy * m[6] + dz * m[10];
+
+        float[] xs = mesh.xs(), ys = mesh.ys(), zs = mesh.zs();
+        int[] indices = mesh.indices();
+        for (int t = 0, nTris = mesh.triangleCount(); t < nTris; t++) {
+
+            int a = indices[3 * t], b = indices[3 * t + 1], c = indices[3 * t + 2];
+
+            // Moller-Trumbore: solve for the barycentric coordinates and distance together
+            double e1x = xs[b] - xs[a], e1y = ys[b] - ys[a], e1z = zs[b] - zs[a];
+            double e2x = xs[c] - xs[a], e2y = ys[c] - ys[a], e2z = zs[c] - zs[a];
+            double px = ldy * e2z - ldz * e2y, py = ldz * e2x - ldx * e2z, pz = ldx * e2y - ldy * e2x;
+            double det = e1x * px + e1y * py + e1z * pz;
+            if (det == 0)
+                continue;
+
+            double invDet = 1.0 / det;
+            double sx = lox - xs[a], sy = loy - ys[a], sz = loz - zs[a];
+            double u = (sx * px + sy * py + sz * pz) * invDet;
+            if (u < 0 || u > 1)
+                continue;
+
+            double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+            double v = (ldx * qx + ldy * qy + ldz * qz) * invDet;
+            if (v < 0 || u + v > 1)
+                continue;
+
+            double dist = (e2x * qx + e2y * qy + e2z * qz) * invDet;
+            if (dist >= 0 && dist < hit.distance) {
+
+                hit.mesh = mesh;
+                hit.object = object;
+                hit.triangle = t;
+                hit.distance = dist;
+
+            }
+
+        }
+
+    }
+
+    /** Returns the distance along the ray at which it enters a box, or infinity if it misses. */
+    private static double slab(float[] boxes, int b, double ox, double oy, double oz,
+                               double invX, double invY, double invZ) {
+
+        double t0 = (boxes[b] - ox) * invX,     t1 = (boxes[b + 3] - ox) * invX;
+        double tMin = Math.min(t0, t1), tMax = Math.max(t0, t1);
+
+        t0 = (boxes[b + 1] - oy) * invY;
+        t1 = (boxes[b + 4] - oy) * invY;
+        tMin = Math.max(tMin, Math.min(t0, t1));
+        tMax = Math.min(tMax, Math.max(t0, t1));
+
+        t0 = (boxes[b + 2] - oz) * invZ;
+        t1 = (boxes[b + 5] - oz) * invZ;
+        tMin = Math.max(tMin, Math.min(t0, t1));
+        tMax = Math.min(tMax, Math.max(t0, t1));
+
+        // NaN from a zero direction on a box face fails both tests and counts as a miss
+        if (!(tMax >= Math.max(tMin, 0)))
+            return Double.POSITIVE_INFINITY;
+
+        return Math.max(tMin, 0);
+
+    }
+
+    /** Splits a node with the binned surface area heuristic, or makes it a leaf.
+     *  Returns the index of the first child, or -1 for a leaf. */
+    private int split(int node) {
+
+        int first = nodeFirst[node], count = nodeCount[node], end = first + count;
+
+        // node bounds, and bounds of the object centers, which decide the split axis
+        setEmptyBox(nodeBoxes, node);
+        float cMinX = Float.POSITIVE_INFINITY, cMinY = Float.POSITIVE_INFINITY, cMinZ = Float.POSITIVE_INFINITY;
+        float cMaxX = Float.NEGATIVE_INFINITY, cMaxY = Float.NEGATIVE_INFINITY, cMaxZ = Float.NEGATIVE_INFINITY;
+        for (int i = first; i < end; i++) {
+
+            int o = order[i];
+            growBox(nodeBoxes, 6 * node, objectBoxes, 6 * o);
+            cMinX = Math.min(cMinX, centroid(o, 0)); cMaxX = Math.max(cMaxX, centroid(o, 0));
+            cMinY = Math.min(cMinY, centroid(o, 1)); cMaxY = Math.max(cMaxY, centroid(o, 1));
+            cMinZ = Math.min(cMinZ, centroid(o, 2)); cMaxZ = Math.max(cMaxZ, centroid(o, 2));
+
+        }
+
+        nodeChild[node] = -1;
+        for (int i = first; i < end; i++)
+            objectLeaf[order[i]] = node;
+
+        if (count <= MAX_LEAF_SIZE)
+            return -1;
+
+        int axis = 0;
+        float cMin = cMinX, extent = cMaxX - cMinX;
+        if (cMaxY - cMinY > extent) { axis = 1; cMin = cMinY; extent = cMaxY - cMinY; }
+        if (cMaxZ - cMinZ > extent) { axis = 2; cMin = cMinZ; extent = cMaxZ - cMinZ; }
+
+        int mid;
+        if (extent > 0) {
+
+            // drop every object into a bin by its center
+            Arrays.fill(binCount, 0);
+            for (int bin = 0; bin < BINS; bin++)
+                setEmptyBox(binBoxes, bin);
+
+            float scale = BINS / extent;
+            for (int i = first; i < end; i++) {
+
+                int o = order[i];
+                int bin = binOf(centroid(o, axis), cMin, scale);
+                binCount[bin]++;
+                growBox(binBoxes, 6 * bin, objectBoxes, 6 * o);
+
+            }
+
+            // sweep from the right, recording the area of everything right of each boundary,
+            // then from the left, costing each split as area * count on both sides
+            float[] box = sweepBox;
+            setEmptyBox(box, 0);
+            for (int bin = BINS - 1; bin > 0; bin--) {
+
+                growBox(box, 0, binBoxes, 6 * bin);
+                rightArea[bin] = halfArea(box, 0);
+
+            }
+
+            setEmptyBox(box, 0);
+            int leftCount = 0, bestSplit = -1;
+            double bestCost = Double.POSITIVE_INFINITY;
+            for (int bin = 1; bin < BINS; bin++) {
+
+                growBox(box, 0, binBoxes, 6 * (bin - 1));
+                leftCount += binCount[bin - 1];
+                int rightCount = count - leftCount;
+                if (leftCount == 0 || rightCount == 0)
+                    continue;
+
+                double cost = halfArea(box, 0) * leftCount + rightArea[bin] * rightCount;
+                if (cost < bestCost) {
+
+                    bestCost = cost;
+                    bestSplit = bin;
+
+                }
+
+            }
+
+            // partition the range so objects left of the chosen boundary come first
+            mid = first;
+            for (int i = first; i < end; i++) {
+
+                if (binOf(centroid(order[i], axis), cMin, scale) < bestSplit) {
+
+                    int tmp = order[i];
+                    order[i] = order[mid];
+                    order[mid++] = tmp;
+
+                }
+
+            }
+
+        } else {
+
+            // every center is in the same place, so any even split is as good as another
+            mid = first + count / 2;
+
+        }
+
+        int left = nodes;
+        nodes += 2;
+        nodeParent[left] = nodeParent[left + 1] = node;
+        nodeFirst[left] = first;
+        nodeCount[left] = mid - first;
+        nodeFirst[left + 1] = mid;
+        nodeCount[left + 1] = end - mid;
+        nodeChild[node] = left;
+        return left;
+
+    }
+
+    /** Recomputes the box of a node from its children, or from its objects if it is a leaf. */
+    private void updateNodeBox(int node) {
+
+        setEmptyBox(nodeBoxes, node);
+        int child = nodeChild[node];
+        if (child >= 0) {
+
+            growBox(nodeBoxes, 6 * node, nodeBoxes, 6 * child);
+            growBox(nodeBoxes, 6 * node, nodeBoxes, 6 * (child + 1));
+
+        } else {
+
+            for (int i = nodeFirst[node], end = i + nodeCount[node]; i < end; i++)
+                growBox(nodeBoxes, 6 * node, objectBoxes, 6 * order[i]);
+
+        }
+
+    }
+
+    /** Recomputes an object's box by carrying its Mesh's bounding box through the Mesh's transform. */
+    private void updateObjectBox(int object) {
+
+        Bounds bounds = objects[object].bounds();
+        double[] m = objects[object].getTransform().m;
+        int o = 6 * object;
+
+        // an empty Mesh is kept as a point where its origin lands, so it never spoils its node's box
+        float minX = bounds.minX, minY = bounds.minY, minZ = bounds.minZ;
+        float maxX = bounds.maxX, maxY = bounds.maxY, maxZ = bounds.maxZ;
+        if (bounds.isEmpty())
+            minX = minY = minZ = maxX = maxY = maxZ = 0;
+
+        // each axis of the transformed box is the translation plus the smaller and larger
+        // products of that axis's matrix entries with the box's extents
+        for (int col = 0; col < 3; col++) {
+
+            double lo = m[12 + col], hi = lo;
+            double a = m[col] * minX,     b = m[col] * maxX;
+            lo += Math.min(a, b);
+            hi += Math.max(a, b);
+            a = m[4 + col] * minY;
+            b = m[4 + col] * maxY;
+            lo += Math.min(a, b);
+            hi += Math.max(a, b);
+            a = m[8 + col] * minZ;
+            b = m[8 + col] * maxZ;
+            lo += Math.min(a, b);
+            hi += Math.max(a, b);
+
+            // round outward so the float box never shrinks inside the true one
+            objectBoxes[o + col] = Math.nextDown((float)lo);
+            objectBoxes[o + 3 + col] = Math.nextUp((float)hi);
+
+        }
+
+    }
+
+    /** Returns one coordinate of the center of an object's box. */
+    private float centroid(int object, int axis) {
+
+        return 0.5f * (objectBoxes[6 * object + axis] + objectBoxes[6 * object + 3 + axis]);
+
+    }
+
+    private static int binOf(float value, float min, float scale) {
+
+        return Math.min(BINS - 1, (int)((value - min) * scale));
+
+    }
+
+    /** Returns half the surface area of a box, which is all the heuristic needs to compare splits. */
+    private static float halfArea(float[] boxes, int b) {
+
+        float dx = boxes[b + 3] - boxes[b], dy = boxes[b + 4] - boxes[b + 1], dz = boxes[b + 5] - boxes[b + 2];
+        if (dx < 0 || dy < 0 || dz < 0)
+            return 0;
+
+        return dx * dy + dy * dz + dz * dx;
+
+    }
+
+    private static void setEmptyBox(float[] boxes, int box) {
+
+        int b = 6 * box;
+        boxes[b] = boxes[b + 1] = boxes[b + 2] = Float.POSITIVE_INFINITY;
+        boxes[b + 3] = boxes[b + 4] = boxes[b + 5] = Float.NEGATIVE_INFINITY;
+
+    }
+
+    /** Grows the box starting at boxes[b] to contain the box starting at other[o]. */
+    private static void growBox(float[] boxes, int b, float[] other, int o) {
+
+        for (int k = 0; k < 3; k++) {
+
+            boxes[b + k] = Math.min(boxes[b + k], other[o + k]);
+            boxes[b + 3 + k] = Math.max(boxes[b + 3 + k], other[o + 3 + k]);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,238 @@
+// Adam Rilatt
+// 05 / 17 / 20
+// Screen Class -- 3D Engine
+
+/*
+This class extends the standard JPanel in order
+to draw to the screen. The Engine publishes a snapshot of the
+world through the Screen's FrameExchange at a constant rate,
+and a RenderLoop asks the Screen to draw the newest snapshot
+as often as its pacing allows. The work of drawing each frame
+is done by a Renderer, and the Screen copies the finished
+image straight to the window from the rendering thread. Paints
+requested by Swing, such as when the window is uncovered, copy
+the last finished frame again. Only the part of the image the
+Renderer drew again is copied, and nothing when the frame did not
+change. An overlay can show where the last frame's time went, as
+measured by the Renderer's profiler.
+ */
+
+package raster;
+
+import javax.swing.JPanel;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+public class Screen extends JPanel {
+
+    // the Engine fills packets on its side of the exchange while the Screen
+    // draws from the other, so neither waits for or disturbs the other
+    private final FrameExchange frames;
+    private final Renderer renderer;
+
+    // the scene and blended world matrix of the last frame drawn, copied out of its packet for
+    // picking, since the packet goes back to the Engine once the next one is read.
+    // The Renderer's lock guards these and the Renderer itself
+    private boolean shown;
+    private SceneBVH shownScene;
+    private final Matrix shownWorld = new Matrix();
+
+    // whether the profiler's numbers are drawn over the frame
+    private volatile boolean overlay;
+
+    // whether the window shows the last frame without an overlay, so the next frame need
+    // only copy the pixels it changed, and the rectangle of those pixels
+    private boolean windowCurrent;
+    private final Rectangle dirty = new Rectangle();
+
+    /** Default constructor. */
+    public Screen(RenderSettings settings, Color c) {
+
+        setPreferredSize(new Dimension(settings.width, settings.height));
+        setBackground(c);
+
+        frames = new FrameExchange();
+        renderer = new Renderer(settings);
+
+    }
+
+    /** Returns the exchange that frame snapshots are published through. */
+    public FrameExchange frames() {
+
+        return frames;
+
+    }
+
+    /** Finds the scene object under a pixel of the last frame drawn, storing it in hit.
+     *  Returns false if nothing is there or the frame had no scene. Waits for a frame being drawn to finish. */
+    public boolean pick(int x, int y, RayHit hit) {
+
+        synchronized (renderer) {
+
+            if (shownScene == null) {
+
+                hit.clear();
+                return false;
+
+            }
+
+            return renderer.pick(shownScene, shownWorld, x, y, hit);
+
+        }
+
+    }
+
+    /** Draws the newest frame snapshot, blended from the step before it by how much time has passed since it
+     *  was due, and copies it to the window. Only one thread, normally a RenderLoop's, may call this.
+     *  Returns false if no snapshot has been published yet. */
+    public boolean renderFrame() {
+
+        FramePacket packet = frames.readPacket();
+        if (packet == null)
+            return false;
+
+        synchronized (renderer) {
+
+            double blend = packet.blendFactor(System.nanoTime());
+            renderer.render(packet, blend);
+            packet.world(blend, shownWorld);
+            shownScene = packet.scene();
+            shown = true;
+
+            // copy only the pixels that changed, unless the overlay was or is drawn over the frame
+            // or the last frame never reached the window
+            renderer.lastDirtyRegion(dirty);
+            boolean full = overlay || !windowCurrent;
+            if (!full && dirty.isEmpty())
+                return true;
+
+            Graphics g = getGraphics();
+            windowCurrent = g != null && !overlay;
+            if (g != null) {
+
+                BufferedImage image = renderer.image();
+                if (full) {
+
+                    g.drawImage(image, 0, 0, null);
+
+                } else {
+
+                    int x1 = dirty.x + dirty.width, y1 = dirty.y + dirty.height;
+                    g.drawImage(image, dirty.x, dirty.y, x1, y1, dirty.x, dirty.y, x1, y1, null);
+
+                }
+
+                if (overlay)
+                    drawOverlay(g);
+
+                Toolkit.getDefaultToolkit().sync();
+                g.dispose();
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /** Sets the thread pool used to process geometry and rasterize the frame in parallel. A null pool
+     *  renders on the painting thread alone. Either way, the same image is produced. */
+    public void setPool(ForkJoinPool pool) {
+
+        synchronized (renderer) {
+
+            renderer.setPool(pool);
+
+        }
+
+    }
+
+    /** Switches between the depth buffer and painter's algorithm for resolving visibility.
+     *  The painter's algorithm sorts triangles back-to-front and draws them without a depth test. */
+    public void setPainterMode(boolean enabled) {
+
+        synchronized (renderer) {
+
+            renderer.setPainterMode(enabled);
+
+        }
+
+    }
+
+    /** Returns the profiler that measures every frame the Screen draws. */
+    public FrameProfiler profiler() {
+
+        return renderer.profiler();
+
+    }
+
+    /** Shows or hides the time each stage of the last frame took, and its triangle counts, over the frame. */
+    public void setOverlay(boolean enabled) {
+
+        overlay = enabled;
+
+    }
+
+    /** Returns whether the profiler overlay is shown. */
+    public boolean isOverlay() {
+
+        return overlay;
+
+    }
+
+    /** Draws the last frame's stage times and triangle counts in the top left corner. */
+    private void drawOverlay(Graphics g) {
+
+        FrameProfiler p = renderer.profiler();
+        StringBuilder stages = new StringBuilder();
+        for (int stage = 0; stage < FrameProfiler.FRAME; stage++)
+            stages.append(String.format("%s %.2f  ", FrameProfiler.stageName(stage), p.lastFrame(stage) / 1e6));
+
+        String[] lines = {
+            String.format("frame %.2f ms  (p99 %.2f ms)", p.lastFrame(FrameProfiler.FRAME) / 1e6,
+                          p.histogram(FrameProfiler.FRAME).percentile(0.99) / 1e6),
+            stages.toString().trim(),
+            String.format("triangles %d in, %d culled, %d drawn, %d kept",
+                          p.getTrianglesIn(), p.getTrianglesCulled(), p.getTrianglesDrawn(), p.getTrianglesKept())
+        };
+
+        int lineHeight = g.getFontMetrics().getHeight();
+        for (int i = 0; i < lines.length; i++) {
+
+            g.setColor(Color.BLACK);
+            g.drawString(lines[i], 9, 9 + lineHeight * (i + 1));
+            g.setColor(Color.WHITE);
+            g.drawString(lines[i], 8, 8 + lineHeight * (i + 1));
+
+        }
+
+    }
+
+    /** Each update of paintComponent will draw the last finished frame to the screen. */
+    protected void paintComponent(Graphics g) {
+
+        super.paintComponent(g);
+
+        synchronized (renderer) {
+
+            if (shown) {
+
+                g.drawImage(renderer.image(), 0, 0, null);
+                if (overlay)
+                    drawOverlay(g);
+
+            }
+
+        }
+
+        g.dispose();
+
+    }
+
+}
@@ -0,0 +1,130 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// ShadeTable Class -- 3D Engine
+
+/*
+This class turns flat lighting into a table lookup. For each
+base color it is asked for, it builds a ramp of the color lit
+at evenly spaced values of N.L from 0 to 1, with the lighting
+curve, whitepoint, and blackpoint baked in, and keeps it. Lighting
+a triangle then costs one multiply and one array read, where
+GeometryStage.lightScale raises N.L to a power three times.
+
+Ramps are found through a small open-addressing table keyed by
+the packed RGB color, so asking for one does not box or allocate
+once it exists. A table is not safe for use by several threads;
+look ramps up on one thread and share the int[] they return.
+ */
+
+package raster;
+
+import java.util.Arrays;
+
+public class ShadeTable {
+
+    // entries per ramp; N.L is quantized to 1 / (LEVELS - 1)
+    public static final int LEVELS = 1024;
+
+    // key of an empty slot; packed RGB colors never have bits above the low 24 set
+    private static final int EMPTY = -1;
+
+    private final double curve, whitepoint, blackpoint;
+    private int[] keys;
+    private int[][] ramps;
+    private int size;
+
+    /** Constructor. Ramps are lit with GeometryStage.lightScale and these parameters. */
+    public ShadeTable(double curve, double whitepoint, double blackpoint) {
+
+        this.curve = curve;
+        this.whitepoint = whitepoint;
+        this.blackpoint = blackpoint;
+        keys = new int[16];
+        ramps = new int[16][];
+        Arrays.fill(keys, EMPTY);
+
+    }
+
+    /** Returns the ramp for a packed RGB base color, building it the first time the color is seen. */
+    public int[] ramp(int rgb) {
+
+        int key = rgb & 0xFFFFFF;
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+
+            if (keys[slot] == key)
+                return ramps[slot];
+
+            if (keys[slot] == EMPTY)
+                break;
+
+        }
+
+        // keep the table at most half full so probes stay short
+        if (2 * (size + 1) > keys.length)
+            grow();
+
+        int[] ramp = new int[LEVELS];
+        for (int i = 0; i < LEVELS; i++)
+            ramp[i] = GeometryStage.lightScale(key, (double)i / (LEVELS - 1), curve, whitepoint, blackpoint);
+
+        insert(key, ramp);
+        size++;
+        return ramp;
+
+    }
+
+    /** Returns the number of ramps built so far. */
+    public int size() {
+
+        return size;
+
+    }
+
+    /** Returns the packed RGB color of a ramp's base color lit at N.L = dot, which should be in [0, 1]. */
+    public static int shade(int[] ramp, double dot) {
+
+        return ramp[Math.min(LEVELS - 1, (int)(dot * (LEVELS - 1) + 0.5))];
+
+    }
+
+    /** Doubles the table, moving every ramp to its new slot. */
+    private void grow() {
+
+        int[] oldKeys = keys;
+        int[][] oldRamps = ramps;
+        keys = new int[2 * oldKeys.length];
+        ramps = new int[2 * oldKeys.length][];
+        Arrays.fill(keys, EMPTY);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+
+            if (oldKeys[i] != EMPTY)
+                insert(oldKeys[i], oldRamps[i]);
+
+        }
+
+    }
+
+    /** Puts a ramp in the first free slot for its key. */
+    private void insert(int key, int[] ramp) {
+
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY)
+            slot = (slot + 1) & mask;
+
+        keys[slot] = key;
+        ramps[slot] = ramp;
+
+    }
+
+    /** Spreads the bits of a color so that similar colors land in different slots. */
+    private static int hash(int key) {
+
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+
+    }
+
+}
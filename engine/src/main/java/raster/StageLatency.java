@@ -0,0 +1,76 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// StageLatency Class -- 3D Engine
+
+/*
+This class is a snapshot of how long one stage of the render
+pipeline has taken, in milliseconds, as read from its histogram.
+It is what RenderStatsMXBean reports for each stage, and JMX
+clients see it as a composite with one item per getter.
+ */
+
+package raster;
+
+import java.beans.ConstructorProperties;
+
+public class StageLatency {
+
+    private final long count;
+    private final double p50, p99, p999, max;
+
+    /** Constructor. Times are in milliseconds. */
+    @ConstructorProperties({"count", "p50Millis", "p99Millis", "p999Millis", "maxMillis"})
+    public StageLatency(long count, double p50Millis, double p99Millis, double p999Millis, double maxMillis) {
+
+        this.count = count;
+        p50 = p50Millis;
+        p99 = p99Millis;
+        p999 = p999Millis;
+        max = maxMillis;
+
+    }
+
+    /** Returns a snapshot of a histogram of nanosecond durations. */
+    public static StageLatency of(LatencyHistogram h) {
+
+        return new StageLatency(h.count(), h.percentile(0.5) / 1e6, h.percentile(0.99) / 1e6,
+                                h.percentile(0.999) / 1e6, h.max() / 1e6);
+
+    }
+
+    /** Returns the number of frames measured. */
+    public long getCount() {
+
+        return count;
+
+    }
+
+    /** Returns the median time, in milliseconds. */
+    public double getP50Millis() {
+
+        return p50;
+
+    }
+
+    /** Returns the 99th percentile time, in milliseconds. */
+    public double getP99Millis() {
+
+        return p99;
+
+    }
+
+    /** Returns the 99.9th percentile time, in milliseconds. */
+    public double getP999Millis() {
+
+        return p999;
+
+    }
+
+    /** Returns the longest time, in milliseconds. */
+    public double getMaxMillis() {
+
+        return max;
+
+    }
+
+}
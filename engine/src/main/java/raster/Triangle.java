@@ -11,16 +11,16 @@ order so that the Engine can calculate their normals
 consistently.
  */
 
-import java.awt.Color;
+package raster;
 
 public class Triangle implements Comparable<Triangle> {
 
     private Vector[] vectors;
-    private Color color;
+    private int color;
 
     /** Constructor. Note that the three vertices should be listed
-     *  in clockwise order. */
-    public Triangle(Vector a, Vector b, Vector c, Color col) {
+     *  in clockwise order. The color is packed RGB. */
+    public Triangle(Vector a, Vector b, Vector c, int col) {
 
         // note that the winding order of vertices should be clockwise.
         vectors = new Vector[3];
@@ -30,10 +30,10 @@ public class Triangle implements Comparable<Triangle> {
         color = col;
     }
 
-    /** Default constructor. Currently used when reading from files. */
+    /** Default constructor. The triangle is drawn in white. */
     public Triangle(Vector a, Vector b, Vector c) {
 
-        this(a, b, c, Color.WHITE);
+        this(a, b, c, 0xFFFFFF);
 
     }
 
@@ -44,8 +44,8 @@ public class Triangle implements Comparable<Triangle> {
 
     }
 
-    /** Returns the color that the triangle should be drawn with. */
-    public Color getColor() {
+    /** Returns the packed RGB color that the triangle should be drawn with. */
+    public int getColor() {
 
         return color;
 
@@ -0,0 +1,139 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// TriangleBuffer Class -- 3D Engine
+
+/*
+This class implements a growable list of screen-space
+triangles stored in primitive arrays. The Screen fills one
+every frame with the triangles that survive projection, and
+reuses it on the next frame, so queuing triangles for the
+Rasterizer does not allocate an object per triangle.
+ */
+
+package raster;
+
+import java.util.Arrays;
+
+public class TriangleBuffer {
+
+    // nine values per triangle: x0, y0, z0, x1, y1, z1, x2, y2, z2
+    private float[] coords;
+    private int[] colors;
+    private int size;
+
+    // a second set of arrays that reorder gathers into, made the first time it is needed
+    private float[] spareCoords;
+    private int[] spareColors;
+
+    /** Constructor. Reserves room for the given number of triangles. */
+    public TriangleBuffer(int capacity) {
+
+        coords = new float[Math.max(1, capacity) * 9];
+        colors = new int[Math.max(1, capacity)];
+        size = 0;
+
+    }
+
+    /** Default constructor. */
+    public TriangleBuffer() {
+
+        this(1024);
+
+    }
+
+    /** Removes every triangle, keeping the storage for reuse. */
+    public void clear() {
+
+        size = 0;
+
+    }
+
+    /** Returns the number of triangles in the buffer. */
+    public int size() {
+
+        return size;
+
+    }
+
+    /** Appends a triangle with a packed RGB color. */
+    public void add(float x0, float y0, float z0,
+                    float x1, float y1, float z1,
+                    float x2, float y2, float z2, int rgb) {
+
+        if (size == colors.length) {
+
+            coords = Arrays.copyOf(coords, coords.length * 2);
+            colors = Arrays.copyOf(colors, colors.length * 2);
+
+        }
+
+        int i = size * 9;
+        coords[i]     = x0; coords[i + 1] = y0; coords[i + 2] = z0;
+        coords[i + 3] = x1; coords[i + 4] = y1; coords[i + 5] = z1;
+        coords[i + 6] = x2; coords[i + 7] = y2; coords[i + 8] = z2;
+        colors[size++] = rgb;
+
+    }
+
+    /** Appends every triangle of another buffer, in order. */
+    public void addAll(TriangleBuffer other) {
+
+        int newSize = size + other.size;
+        if (newSize > colors.length) {
+
+            int capacity = Math.max(newSize, colors.length * 2);
+            coords = Arrays.copyOf(coords, capacity * 9);
+            colors = Arrays.copyOf(colors, capacity);
+
+        }
+
+        System.arraycopy(other.coords, 0, coords, size * 9, other.size * 9);
+        System.arraycopy(other.colors, 0, colors, size, other.size);
+        size = newSize;
+
+    }
+
+    /** Rearranges the triangles so that triangle i becomes the one that was at order[i].
+     *  The first size() entries of order must be a permutation of the triangle indexes. */
+    public void reorder(int[] order) {
+
+        if (spareColors == null || spareColors.length < colors.length) {
+
+            spareCoords = new float[coords.length];
+            spareColors = new int[colors.length];
+
+        }
+
+        for (int i = 0; i < size; i++) {
+
+            int from = 9 * order[i], to = 9 * i;
+            System.arraycopy(coords, from, spareCoords, to, 9);
+            spareColors[i] = colors[order[i]];
+
+        }
+
+        // swap the arrays rather than copying back
+        float[] tmpCoords = coords;
+        coords = spareCoords;
+        spareCoords = tmpCoords;
+        int[] tmpColors = colors;
+        colors = spareColors;
+        spareColors = tmpColors;
+
+    }
+
+    /** Returns the vertex coordinates. Triangle i occupies coords[9i] through coords[9i + 8]. */
+    public float[] coords() {
+
+        return coords;
+
+    }
+
+    /** Returns the packed RGB color of every triangle. */
+    public int[] colors() {
+
+        return colors;
+
+    }
+
+}
@@ -5,8 +5,13 @@
 /*
 This class implements a Vector object,
 which holds an X, Y, and Z coordinate in 3D space.
+Each arithmetic operation also has a form that writes
+its result into a destination Vector instead of allocating
+a new one; the destination may be one of the inputs.
  */
 
+package raster;
+
 public class Vector {
 
     public double x, y, z, w;
@@ -18,6 +23,13 @@ public class Vector {
 
     }
 
+    /** Adds Vector 2 to Vector 1 and stores the result in out. Returns out. */
+    public static Vector add(Vector v1, Vector v2, Vector out) {
+
+        return out.set(v1.x + v2.x, v1.y + v2.y, v1.z + v2.z);
+
+    }
+
     /** Subtracts Vector 2 from Vector 1 and returns the resulting vector. */
     public static Vector subtract(Vector v1, Vector v2) {
 
@@ -25,6 +37,13 @@ public class Vector {
 
     }
 
+    /** Subtracts Vector 2 from Vector 1 and stores the result in out. Returns out. */
+    public static Vector subtract(Vector v1, Vector v2, Vector out) {
+
+        return out.set(v1.x - v2.x, v1.y - v2.y, v1.z - v2.z);
+
+    }
+
     /** Returns the dot product of the two input Vectors.
      *  Always normalize the Vectors before performing this action. */
     public static double dot(Vector v1, Vector v2) {
@@ -40,26 +59,47 @@ public class Vector {
 
     }
 
+    /** Multiplies a vector by a multiplicand and stores the result in out. Returns out. */
+    public static Vector multiply(Vector v, double m, Vector out) {
+
+        return out.set(v.x * m, v.y * m, v.z * m);
+
+    }
+
     /** Divides a vector by a divisor and returns the resulting vector. */
     public static Vector divide(Vector v, double div) {
 
-        Vector quotient = new Vector(v);
+        return divide(v, div, new Vector());
+
+    }
+
+    /** Divides a vector by a divisor and stores the result in out. W is copied unchanged. Returns out. */
+    public static Vector divide(Vector v, double div, Vector out) {
+
+        out.set(v);
         if (div != 0) {
 
-            quotient.x /= div;
-            quotient.y /= div;
-            quotient.z /= div;
+            out.x /= div;
+            out.y /= div;
+            out.z /= div;
 
         }
 
-        return quotient;
+        return out;
 
     }
 
     /** Returns the cross product of the two input Vectors. */
     public static Vector cross(Vector vector1, Vector vector2) {
 
-        return new Vector(vector1.y * vector2.z - vector1.z * vector2.y,
+        return cross(vector1, vector2, new Vector());
+
+    }
+
+    /** Computes the cross product of the two input Vectors and stores it in out. Returns out. */
+    public static Vector cross(Vector vector1, Vector vector2, Vector out) {
+
+        return out.set(vector1.y * vector2.z - vector1.z * vector2.y,
                 vector1.z * vector2.x - vector1.x * vector2.z,
                 vector1.x * vector2.y - vector1.y * vector2.x);
 
@@ -93,6 +133,23 @@ public class Vector {
 
     }
 
+    /** Sets the X, Y, and Z coordinates of this Vector and resets W to 1, just like
+     *  the three-argument constructor. Returns this Vector. */
+    public Vector set(double newX, double newY, double newZ) {
+
+        x = newX; y = newY; z = newZ; w = 1;
+        return this;
+
+    }
+
+    /** Copies all four coordinates of another Vector into this one. Returns this Vector. */
+    public Vector set(Vector v) {
+
+        x = v.x; y = v.y; z = v.z; w = v.w;
+        return this;
+
+    }
+
     /** Returns the length of the Vector. */
     public double length() {
 
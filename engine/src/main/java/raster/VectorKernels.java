@@ -0,0 +1,208 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// VectorKernels Class -- 3D Engine
+
+/*
+This class implements the Kernels with the incubating Vector
+API. Vertices are transformed as many at a time as the widest
+double register holds, eight with AVX-512, converting the float
+positions up as they are loaded. Pixel spans are filled as one
+8-pixel block row per operation, the edge functions evaluated
+as ints and the depths as floats, with every write masked by
+coverage and the depth test. Each lane does the same arithmetic
+in the same order as the scalar loops, without fused
+multiply-adds, so the results are identical.
+
+Only Kernels refers to this class, by name, and only once the
+jdk.incubator.vector module is known to be present.
+ */
+
+package raster;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+class VectorKernels extends Kernels {
+
+    // vertices are transformed in doubles, loaded from as many floats as there are double lanes
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> POSITIONS =
+            VectorSpecies.of(float.class, VectorShape.forBitSize(DOUBLES.length() * Float.SIZE));
+
+    // one lane per pixel of a block row
+    private static final VectorSpecies<Integer> EDGES = IntVector.SPECIES_256;
+    private static final VectorSpecies<Float> DEPTHS = FloatVector.SPECIES_256;
+    private static final int SPAN = 8;
+
+    private static final IntVector LANE_INDEX = IntVector.fromArray(EDGES, new int[] {0, 1, 2, 3, 4, 5, 6, 7}, 0);
+    private static final FloatVector LANE_OFFSET = FloatVector.fromArray(DEPTHS, new float[] {0, 1, 2, 3, 4, 5, 6, 7}, 0);
+
+    /** Returns whether the hardware's vectors are wide enough to be worth using, which Kernels checks
+     *  before creating these kernels. */
+    static boolean isSupported() {
+
+        return DOUBLES.length() >= 4 && IntVector.SPECIES_PREFERRED.length() >= SPAN && SPAN == Rasterizer.BLOCK_SIZE;
+
+    }
+
+    @Override
+    public String name() {
+
+        return "vector (" + DOUBLES.vectorBitSize() + "-bit)";
+
+    }
+
+    @Override
+    public void transformPoints(Matrix ma, float[] xs, float[] ys, float[] zs, int start, int end,
+                                double[] outX, double[] outY, double[] outZ) {
+
+        double[] m = ma.m;
+        int upper = start + DOUBLES.loopBound(end - start);
+        int i = start;
+        for (; i < upper; i += DOUBLES.length()) {
+
+            DoubleVector x = load(xs, i), y = load(ys, i), z = load(zs, i);
+            x.mul(m[0]).add(y.mul(m[4])).add(z.mul(m[8])).add(m[12]).intoArray(outX, i);
+            x.mul(m[1]).add(y.mul(m[5])).add(z.mul(m[9])).add(m[13]).intoArray(outY, i);
+            x.mul(m[2]).add(y.mul(m[6])).add(z.mul(m[10])).add(m[14]).intoArray(outZ, i);
+
+        }
+
+        super.transformPoints(ma, xs, ys, zs, i, end, outX, outY, outZ);
+
+    }
+
+    @Override
+    public void projectPoints(Matrix ma, float[] xs, float[] ys, float[] zs, int start, int end,
+                              double[] outX, double[] outY, double[] outZ, double[] outW) {
+
+        double[] m = ma.m;
+        int upper = start + DOUBLES.loopBound(end - start);
+        int i = start;
+        for (; i < upper; i += DOUBLES.length()) {
+
+            DoubleVector x = load(xs, i), y = load(ys, i), z = load(zs, i);
+            x.mul(m[0]).add(y.mul(m[4])).add(z.mul(m[8])).add(m[12]).intoArray(outX, i);
+            x.mul(m[1]).add(y.mul(m[5])).add(z.mul(m[9])).add(m[13]).intoArray(outY, i);
+            x.mul(m[2]).add(y.mul(m[6])).add(z.mul(m[10])).add(m[14]).intoArray(outZ, i);
+            x.mul(m[3]).add(y.mul(m[7])).add(z.mul(m[11])).add(m[15]).intoArray(outW, i);
+
+        }
+
+        super.projectPoints(ma, xs, ys, zs, i, end, outX, outY, outZ, outW);
+
+    }
+
+    @Override
+    public void fillSpan(int[] color, float[] depth, int index, int count, float z, float dz,
+                         int rgb, boolean depthTest) {
+
+        // short spans only occur at the right edge of the screen
+        if (count != SPAN) {
+
+            super.fillSpan(color, depth, index, count, z, dz, rgb, depthTest);
+            return;
+
+        }
+
+        FloatVector zs = LANE_OFFSET.mul(dz).add(z);
+        if (!depthTest) {
+
+            zs.intoArray(depth, index);
+            IntVector.broadcast(EDGES, rgb).intoArray(color, index);
+            return;
+
+        }
+
+        FloatVector old = FloatVector.fromArray(DEPTHS, depth, index);
+        VectorMask<Float> nearer = zs.compare(VectorOperators.LT, old);
+        write(color, depth, index, old, zs, rgb, nearer);
+
+    }
+
+    @Override
+    public void scanSpan(int[] color, float[] depth, int index, int count,
+                         long e01, long e12, long e20, long a01, long a12, long a20,
+                         float z, float dz, int rgb, boolean depthTest) {
+
+        // the edge functions are evaluated as ints, so every value along the span must fit in one
+        int last = count - 1;
+        if (count != SPAN || !fitsInt(e01, e01 + a01 * last) || !fitsInt(e12, e12 + a12 * last)
+                          || !fitsInt(e20, e20 + a20 * last)) {
+
+            super.scanSpan(color, depth, index, count, e01, e12, e20, a01, a12, a20, z, dz, rgb, depthTest);
+            return;
+
+        }
+
+        // the products may wrap, but each sum is exact because it fits in an int
+        IntVector v01 = LANE_INDEX.mul((int)a01).add((int)e01);
+        IntVector v12 = LANE_INDEX.mul((int)a12).add((int)e12);
+        IntVector v20 = LANE_INDEX.mul((int)a20).add((int)e20);
+        VectorMask<Integer> inside = v01.or(v12).or(v20).compare(VectorOperators.GE, 0);
+        if (!inside.anyTrue())
+            return;
+
+        FloatVector zs = LANE_OFFSET.mul(dz).add(z);
+        FloatVector old = FloatVector.fromArray(DEPTHS, depth, index);
+        VectorMask<Float> covered = inside.cast(DEPTHS);
+        if (depthTest)
+            covered = covered.and(zs.compare(VectorOperators.LT, old));
+
+        write(color, depth, index, old, zs, rgb, covered);
+
+    }
+
+    @Override
+    public void clear(int[] color, int rgb, float[] depth, float z) {
+
+        IntVector fill = IntVector.broadcast(IntVector.SPECIES_PREFERRED, rgb);
+        int upper = IntVector.SPECIES_PREFERRED.loopBound(color.length);
+        int i = 0;
+        for (; i < upper; i += IntVector.SPECIES_PREFERRED.length())
+            fill.intoArray(color, i);
+
+        for (; i < color.length; i++)
+            color[i] = rgb;
+
+        FloatVector far = FloatVector.broadcast(FloatVector.SPECIES_PREFERRED, z);
+        upper = FloatVector.SPECIES_PREFERRED.loopBound(depth.length);
+        i = 0;
+        for (; i < upper; i += FloatVector.SPECIES_PREFERRED.length())
+            far.intoArray(depth, i);
+
+        for (; i < depth.length; i++)
+            depth[i] = z;
+
+    }
+
+    /** Writes the new depths and the color to the lanes of a block row selected by a mask. The row belongs
+     *  to one tile, and so to one thread, which lets it be rewritten whole rather than with masked stores. */
+    private static void write(int[] color, float[] depth, int index, FloatVector old, FloatVector zs,
+                              int rgb, VectorMask<Float> mask) {
+
+        old.blend(zs, mask).intoArray(depth, index);
+        IntVector.fromArray(EDGES, color, index).blend(rgb, mask.cast(EDGES)).intoArray(color, index);
+
+    }
+
+    /** Loads floats starting at index i and widens them to doubles. */
+    private static DoubleVector load(float[] a, int i) {
+
+        return (DoubleVector) FloatVector.fromArray(POSITIONS, a, i).convertShape(VectorOperators.F2D, DOUBLES, 0);
+
+    }
+
+    /** Returns true if both ends of a linear run of values fit in an int, so that every value between does. */
+    private static boolean fitsInt(long first, long last) {
+
+        return first == (int)first && last == (int)last;
+
+    }
+
+}
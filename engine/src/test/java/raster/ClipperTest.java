@@ -0,0 +1,195 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// ClipperTest Class -- 3D Engine
+
+/*
+Checks Clipper against each of its planes one at a time, that
+triangles only crossing the screen edges are left whole inside
+the guard band, and that whatever it returns for random
+triangles lies inside every plane it was clipped against.
+ */
+
+package raster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ClipperTest {
+
+    private static final double EPSILON = 1e-9;
+
+    private final Clipper clipper = new Clipper();
+
+    @ParameterizedTest
+    @ValueSource(ints = {Clipper.NEAR, Clipper.FAR, Clipper.GUARD_LEFT, Clipper.GUARD_RIGHT,
+                         Clipper.GUARD_BOTTOM, Clipper.GUARD_TOP})
+    void oneVertexOutsideLeavesAQuad(int plane) {
+
+        double[][] v = {inside(0.1, 0.2), inside(-0.3, 0.4), outside(plane)};
+        int n = clip(v, plane);
+
+        assertEquals(4, n);
+        int onPlane = 0;
+        for (int i = 0; i < n; i++) {
+
+            double d = distance(plane, i);
+            assertTrue(d >= -EPSILON, "vertex " + i + " is outside the plane");
+            if (Math.abs(d) < EPSILON)
+                onPlane++;
+
+        }
+
+        assertEquals(2, onPlane, "both new vertices should lie on the plane");
+
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {Clipper.NEAR, Clipper.FAR, Clipper.GUARD_LEFT, Clipper.GUARD_RIGHT,
+                         Clipper.GUARD_BOTTOM, Clipper.GUARD_TOP})
+    void twoVerticesOutsideLeaveATriangle(int plane) {
+
+        double[][] v = {inside(0.1, 0.2), outside(plane), outside(plane)};
+
+        assertEquals(3, clip(v, plane));
+        boolean kept = false;
+        for (int i = 0; i < 3; i++) {
+
+            assertTrue(distance(plane, i) >= -EPSILON, "vertex " + i + " is outside the plane");
+            kept |= clipper.x(i) == v[0][0] && clipper.y(i) == v[0][1] && clipper.z(i) == v[0][2];
+
+        }
+
+        assertTrue(kept, "the inside vertex should be kept as it was");
+
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {Clipper.NEAR, Clipper.FAR, Clipper.GUARD_LEFT, Clipper.GUARD_RIGHT,
+                         Clipper.GUARD_BOTTOM, Clipper.GUARD_TOP})
+    void everyVertexOutsideLeavesNothing(int plane) {
+
+        assertEquals(0, clip(new double[][] {outside(plane), outside(plane), outside(plane)}, plane));
+
+    }
+
+    @Test
+    void trianglesCrossingOnlyTheScreenEdgesAreLeftWhole() {
+
+        // two and a half screens wide, inside the guard band of eight
+        double[][] v = {{-2.5, -0.5, 0.5, 1}, {2.5, -0.5, 0.5, 1}, {0, 2.5, 0.5, 1}};
+        int codes = 0;
+        for (double[] p : v)
+            codes |= Clipper.outcode(p[0], p[1], p[2], p[3]);
+
+        assertTrue((codes & (Clipper.VIEW_LEFT | Clipper.VIEW_RIGHT | Clipper.VIEW_TOP)) != 0);
+        assertEquals(0, codes & Clipper.CLIP_PLANES);
+
+        assertEquals(3, clip(v, Clipper.CLIP_PLANES));
+        for (int i = 0; i < 3; i++) {
+
+            assertEquals(v[i][0], clipper.x(i));
+            assertEquals(v[i][1], clipper.y(i));
+
+        }
+
+    }
+
+    @Test
+    void outcodesMarkTheGuardBandAndTheScreenSeparately() {
+
+        assertEquals(0, Clipper.outcode(0, 0, 0.5, 1));
+        assertEquals(Clipper.VIEW_RIGHT, Clipper.outcode(Clipper.GUARD_BAND - 1, 0, 0.5, 1));
+        assertEquals(Clipper.VIEW_RIGHT | Clipper.GUARD_RIGHT, Clipper.outcode(Clipper.GUARD_BAND + 1, 0, 0.5, 1));
+        assertEquals(Clipper.NEAR, Clipper.outcode(0, 0, -0.1, 1));
+        assertEquals(Clipper.FAR, Clipper.outcode(0, 0, 1.1, 1));
+
+    }
+
+    @Test
+    void randomTrianglesEndInsideEveryPlane() {
+
+        Random random = new Random(7);
+        for (int trial = 0; trial < 10000; trial++) {
+
+            double[][] v = new double[3][];
+            for (int k = 0; k < 3; k++)
+                v[k] = new double[] {random.nextGaussian() * 20, random.nextGaussian() * 20,
+                                     random.nextGaussian() * 2, random.nextDouble() * 4 - 1};
+
+            int n = clip(v, Clipper.CLIP_PLANES);
+            assertTrue(n == 0 || n >= 3 && n <= 9, "polygon of " + n + " vertices");
+            for (int i = 0; i < n; i++) {
+
+                // near clipping keeps w positive, so the divide is always safe
+                assertTrue(clipper.w(i) >= -EPSILON);
+                for (int plane = Clipper.NEAR; plane <= Clipper.GUARD_TOP; plane <<= 1)
+                    assertTrue(distance(plane, i) >= -1e-6 * (1 + Math.abs(clipper.w(i))));
+
+            }
+
+        }
+
+    }
+
+    private int clip(double[][] v, int planes) {
+
+        double[] xs = new double[3], ys = new double[3], zs = new double[3], ws = new double[3];
+        for (int k = 0; k < 3; k++) {
+
+            xs[k] = v[k][0];
+            ys[k] = v[k][1];
+            zs[k] = v[k][2];
+            ws[k] = v[k][3];
+
+        }
+
+        return clipper.clipTriangle(xs, ys, zs, ws, 0, 1, 2, planes);
+
+    }
+
+    /** Returns the signed distance of clipped vertex i from a plane, positive inside. */
+    private double distance(int plane, int i) {
+
+        double x = clipper.x(i), y = clipper.y(i), z = clipper.z(i), w = clipper.w(i);
+        switch (plane) {
+
+            case Clipper.NEAR:         return z;
+            case Clipper.FAR:          return w - z;
+            case Clipper.GUARD_LEFT:   return Clipper.GUARD_BAND * w + x;
+            case Clipper.GUARD_RIGHT:  return Clipper.GUARD_BAND * w - x;
+            case Clipper.GUARD_BOTTOM: return Clipper.GUARD_BAND * w + y;
+            default:                   return Clipper.GUARD_BAND * w - y;
+
+        }
+
+    }
+
+    private static double[] inside(double x, double y) {
+
+        return new double[] {x, y, 0.5, 1};
+
+    }
+
+    /** Returns a point outside one plane and inside all the others. */
+    private static double[] outside(int plane) {
+
+        double far = Clipper.GUARD_BAND * 1.5;
+        switch (plane) {
+
+            case Clipper.NEAR:         return new double[] {0.2, -0.1, -0.5, 1};
+            case Clipper.FAR:          return new double[] {0.2, -0.1, 1.5, 1};
+            case Clipper.GUARD_LEFT:   return new double[] {-far, 0.3, 0.5, 1};
+            case Clipper.GUARD_RIGHT:  return new double[] {far, 0.3, 0.5, 1};
+            case Clipper.GUARD_BOTTOM: return new double[] {0.3, -far, 0.5, 1};
+            default:                   return new double[] {0.3, far, 0.5, 1};
+
+        }
+
+    }
+
+}
@@ -0,0 +1,148 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// DepthSorterTest Class -- 3D Engine
+
+/*
+Checks that DepthSorter's radix sort puts triangles in the same
+order as a stable comparator sort from furthest to closest, on one
+thread and in parallel chunks, and that sortBackToFront moves each
+triangle's coordinates and color together.
+ */
+
+package raster;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class DepthSorterTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void startPool() {
+
+        pool = new ForkJoinPool(4);
+
+    }
+
+    @AfterAll
+    static void stopPool() {
+
+        pool.shutdown();
+
+    }
+
+    @ParameterizedTest
+    @CsvSource({"0, false, false", "1, false, false", "1000, false, false", "1000, true, true",
+                "50000, false, false", "50000, true, false", "50000, false, true", "50017, true, true"})
+    void matchesStableComparatorSort(int n, boolean parallel, boolean ties) {
+
+        // with ties set there are only a few distinct depths, so most triangles share one
+        TriangleBuffer tris = randomTriangles(n, ties, n * 31 + (parallel ? 1 : 0));
+
+        DepthSorter sorter = new DepthSorter();
+        sorter.setPool(parallel ? pool : null);
+        int[] order = Arrays.copyOf(sorter.backToFront(tris), n);
+
+        assertArrayEquals(comparatorOrder(tris), order);
+
+    }
+
+    @Test
+    void parallelMatchesSerialAcrossManyChunks() {
+
+        TriangleBuffer tris = randomTriangles(5 * DepthSorter.CHUNK_SIZE + 123, true, 7);
+        int n = tris.size();
+
+        DepthSorter serial = new DepthSorter();
+        int[] expected = Arrays.copyOf(serial.backToFront(tris), n);
+
+        DepthSorter parallel = new DepthSorter();
+        parallel.setPool(pool);
+        assertArrayEquals(expected, Arrays.copyOf(parallel.backToFront(tris), n));
+        assertArrayEquals(comparatorOrder(tris), expected);
+
+    }
+
+    @Test
+    void reusedSorterShrinksToTheNextBuffer() {
+
+        // a sorter that has grown its arrays must only use the first size() entries of the next buffer
+        DepthSorter sorter = new DepthSorter();
+        sorter.setPool(pool);
+        sorter.backToFront(randomTriangles(3 * DepthSorter.CHUNK_SIZE, false, 1));
+
+        TriangleBuffer small = randomTriangles(500, true, 2);
+        assertArrayEquals(comparatorOrder(small), Arrays.copyOf(sorter.backToFront(small), 500));
+
+    }
+
+    @Test
+    void sortBackToFrontMovesWholeTriangles() {
+
+        TriangleBuffer tris = randomTriangles(2000, true, 3);
+        int n = tris.size();
+        float[] coords = Arrays.copyOf(tris.coords(), 9 * n);
+        int[] colors = Arrays.copyOf(tris.colors(), n);
+        int[] order = comparatorOrder(tris);
+
+        new DepthSorter().sortBackToFront(tris);
+
+        for (int i = 0; i < n; i++) {
+
+            assertArrayEquals(Arrays.copyOfRange(coords, 9 * order[i], 9 * order[i] + 9),
+                              Arrays.copyOfRange(tris.coords(), 9 * i, 9 * i + 9), "triangle " + i);
+            assertEquals(colors[order[i]], tris.colors()[i], "color " + i);
+
+        }
+
+    }
+
+    /** Returns the triangle indexes sorted by descending average Z with a stable comparator sort. Ties come
+     *  out highest index first, as they did when the list was sorted by ascending Z and then reversed. */
+    private static int[] comparatorOrder(TriangleBuffer tris) {
+
+        int n = tris.size();
+        float[] coords = tris.coords();
+        float[] depth = new float[n];
+        Integer[] order = new Integer[n];
+        for (int t = 0; t < n; t++) {
+
+            depth[t] = (coords[9 * t + 2] + coords[9 * t + 5] + coords[9 * t + 8]) / 3.0f;
+            order[t] = n - 1 - t;
+
+        }
+
+        Arrays.sort(order, (a, b) -> Float.compare(depth[b], depth[a]));
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+
+    }
+
+    /** Returns n triangles with depths on both sides of zero, each with its index as its color. */
+    private static TriangleBuffer randomTriangles(int n, boolean ties, long seed) {
+
+        Random random = new Random(seed);
+        TriangleBuffer tris = new TriangleBuffer(Math.max(1, n));
+        for (int t = 0; t < n; t++) {
+
+            float z = ties ? random.nextInt(16) - 8 : (float) (random.nextGaussian() * 100);
+            tris.add(random.nextFloat(), random.nextFloat(), z,
+                     random.nextFloat(), random.nextFloat(), z,
+                     random.nextFloat(), random.nextFloat(), ties ? z : z + random.nextFloat(), t);
+
+        }
+
+        return tris;
+
+    }
+
+}
@@ -0,0 +1,242 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// FrameWriterTest Class -- 3D Engine
+
+/*
+Checks that FrameWriter saves frames in the order they were handed
+over whatever order its encoders finish in, in each of its formats,
+and that a frame which cannot be saved stops the frames after it
+and is reported to the caller.
+ */
+
+package raster;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FrameWriterTest {
+
+    // small and odd, so a frame is not a round number of bytes
+    private static final int WIDTH = 17, HEIGHT = 11;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void ppmFramesFollowOneAnotherInOrder() throws IOException {
+
+        File file = dir.resolve("out.ppm").toFile();
+        int frames = 40;
+
+        // a small ring and several encoders, so frames are often finished out of order
+        try (FrameWriter writer = new FrameWriter(file, FrameWriter.PPM, WIDTH, HEIGHT, 30, 3, 4)) {
+
+            writeFrames(writer, frames);
+
+        }
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        byte[] header = ("P6\n" + WIDTH + " " + HEIGHT + "\n255\n").getBytes(StandardCharsets.US_ASCII);
+        int frameSize = header.length + 3 * WIDTH * HEIGHT;
+        assertEquals(frames * frameSize, bytes.length);
+
+        for (int f = 0; f < frames; f++) {
+
+            int at = f * frameSize;
+            assertArrayEquals(header, Arrays.copyOfRange(bytes, at, at + header.length), "header of frame " + f);
+            at += header.length;
+
+            int[] pixels = frame(f);
+            for (int i = 0; i < pixels.length; i++, at += 3) {
+
+                int rgb = (bytes[at] & 0xFF) << 16 | (bytes[at + 1] & 0xFF) << 8 | (bytes[at + 2] & 0xFF);
+                assertEquals(pixels[i], rgb, "pixel " + i + " of frame " + f);
+
+            }
+
+        }
+
+    }
+
+    @Test
+    void y4mFramesFollowTheStreamHeaderInOrder() throws IOException {
+
+        File file = dir.resolve("out.y4m").toFile();
+        int frames = 20;
+        try (FrameWriter writer = new FrameWriter(file, FrameWriter.Y4M, WIDTH, HEIGHT, 24, 2, 3)) {
+
+            // solid grays, whose luma goes up with the frame number
+            int[] pixels = new int[WIDTH * HEIGHT];
+            for (int f = 0; f < frames; f++) {
+
+                int gray = 10 * f;
+                Arrays.fill(pixels, gray << 16 | gray << 8 | gray);
+                writer.write(pixels);
+
+            }
+
+        }
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        byte[] header = ("YUV4MPEG2 W" + WIDTH + " H" + HEIGHT + " F24:1 Ip A1:1 C444\n").getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(header, Arrays.copyOf(bytes, header.length));
+
+        int n = WIDTH * HEIGHT, frameSize = 6 + 3 * n;
+        assertEquals(header.length + frames * frameSize, bytes.length);
+
+        for (int f = 0; f < frames; f++) {
+
+            int at = header.length + f * frameSize;
+            assertEquals("FRAME\n", new String(bytes, at, 6, StandardCharsets.US_ASCII));
+
+            // gray keeps neutral chroma, and luma is scaled into the studio range above 16
+            int gray = 10 * f, luma = (220 * gray + 128 >> 8) + 16;
+            for (int i = 0; i < n; i++) {
+
+                assertEquals(luma, bytes[at + 6 + i] & 0xFF, "luma of frame " + f);
+                assertEquals(128, bytes[at + 6 + n + i] & 0xFF, "Cb of frame " + f);
+                assertEquals(128, bytes[at + 6 + 2 * n + i] & 0xFF, "Cr of frame " + f);
+
+            }
+
+        }
+
+    }
+
+    @Test
+    void pngFramesAreNumberedInOrder() throws IOException {
+
+        File out = dir.resolve("frames").toFile();
+        int frames = 12;
+        try (FrameWriter writer = new FrameWriter(out, FrameWriter.PNG, WIDTH, HEIGHT, 30, 4, 4)) {
+
+            writeFrames(writer, frames);
+            writer.close();
+            assertEquals(frames, writer.framesWritten());
+
+        }
+
+        String[] names = out.list();
+        Arrays.sort(names);
+        assertEquals(frames, names.length);
+
+        for (int f = 0; f < frames; f++) {
+
+            assertEquals(String.format("frame_%05d.png", f + 1), names[f]);
+            BufferedImage image = ImageIO.read(new File(out, names[f]));
+            int[] pixels = image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+            for (int i = 0; i < pixels.length; i++)
+                pixels[i] &= 0xFFFFFF;
+
+            assertArrayEquals(frame(f), pixels, "frame " + f);
+
+        }
+
+    }
+
+    @Test
+    void failedFrameStopsTheRestAndIsReported() throws IOException {
+
+        // a directory in the way of the third frame's file
+        File out = dir.resolve("frames").toFile();
+        assertTrue(new File(out, "frame_00003.png").mkdirs());
+
+        FrameWriter writer = new FrameWriter(out, FrameWriter.PNG, WIDTH, HEIGHT, 30, 2, 2);
+        int handed = 0;
+        try {
+
+            // write reports the failure once it has happened, which depends on timing
+            for (; handed < 10; handed++)
+                writer.write(frame(handed));
+
+        } catch (IOException expected) {
+
+            assertTrue(handed > 2, "frame " + handed + " was refused before anything failed");
+
+        }
+
+        IOException e = assertThrows(IOException.class, writer::close);
+        assertTrue(e.getMessage().contains(out.toString()), e.getMessage());
+        assertTrue(e.getCause() instanceof IOException, String.valueOf(e.getCause()));
+
+        // the two frames before the failure are saved and nothing after it is
+        assertEquals(2, writer.framesWritten());
+        assertTrue(new File(out, "frame_00002.png").isFile());
+        assertFalse(new File(out, "frame_00004.png").exists());
+
+        // the writer stays closed, and closing again does not throw
+        assertThrows(IOException.class, () -> writer.write(frame(0)));
+        writer.close();
+
+    }
+
+    @Test
+    void aFrameOfTheWrongSizeDoesNotTakeABuffer() throws IOException {
+
+        File file = dir.resolve("out.ppm").toFile();
+        try (FrameWriter writer = new FrameWriter(file, FrameWriter.PPM, WIDTH, HEIGHT, 30, 2, 1)) {
+
+            // more refused frames than the ring has buffers, after which writing must still go on
+            for (int i = 0; i < 5; i++)
+                assertThrows(IllegalArgumentException.class, () -> writer.write(new int[WIDTH * HEIGHT - 1]));
+
+            writeFrames(writer, 3);
+            writer.close();
+            assertEquals(3, writer.framesWritten());
+
+        }
+
+    }
+
+    @Test
+    void unusableOutputIsRejectedUpFront() throws IOException {
+
+        File file = dir.resolve("taken").toFile();
+        assertTrue(file.createNewFile());
+
+        // a PNG sequence needs a directory, and a stream needs a file
+        assertThrows(IOException.class, () -> new FrameWriter(file, FrameWriter.PNG, WIDTH, HEIGHT, 30, 2, 1));
+        assertThrows(IOException.class, () -> new FrameWriter(dir.toFile(), FrameWriter.PPM, WIDTH, HEIGHT, 30, 2, 1));
+        assertThrows(IllegalArgumentException.class, () -> new FrameWriter(file, 7, WIDTH, HEIGHT, 30, 2, 1));
+
+    }
+
+    /** Hands over n different frames, drawing each into the same array as a renderer would. */
+    private static void writeFrames(FrameWriter writer, int n) throws IOException {
+
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int f = 0; f < n; f++) {
+
+            System.arraycopy(frame(f), 0, pixels, 0, pixels.length);
+            writer.write(pixels);
+
+        }
+
+    }
+
+    /** Returns the pixels of frame f, which differ from every other frame's. */
+    private static int[] frame(int f) {
+
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++)
+            pixels[i] = (f * 7919 + i * 104729) & 0xFFFFFF;
+
+        return pixels;
+
+    }
+
+}
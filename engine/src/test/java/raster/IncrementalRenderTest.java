@@ -0,0 +1,165 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// IncrementalRenderTest Class -- 3D Engine
+
+/*
+Checks that a Renderer drawing only what changed gives exactly the
+pixels of one drawing every frame in full. Two Renderers watch the
+same scene while meshes move, change color, are hidden behind an
+occluder, and sit still, and their frames are compared after every
+change, including the frames the incremental one skips or only
+partly redraws.
+ */
+
+package raster;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class IncrementalRenderTest {
+
+    private static final int WIDTH = 320, HEIGHT = 240;
+    private static final int FRAMES = 150;
+
+    @ParameterizedTest
+    @CsvSource({"false, false", "true, false", "false, true", "true, true"})
+    void matchesFullRedraw(boolean subpixel, boolean painter) {
+
+        Renderer full = renderer(false, subpixel, painter);
+        Renderer incremental = renderer(true, subpixel, painter);
+
+        // each Renderer gets its own camera, since making the view matrix normalizes the look direction
+        Camera fullCamera = new Camera(), incrementalCamera = new Camera();
+        Matrix world = Matrix.makeIdentity();
+
+        Random random = new Random(subpixel ? 11 : 7);
+        Mesh shape = TestMeshes.sphere(12, 16);
+
+        // a wall that hides whatever moves behind it, and a row of meshes and instances in front of and behind it
+        List<Mesh> meshes = new ArrayList<>();
+        Mesh wall = new Mesh();
+        wall.setGeometry(new float[] {-30, 30, 30, -30}, new float[] {-3, -3, 3, 3}, new float[4],
+                         new int[] {0, 1, 2, 0, 2, 3, 0, 2, 1, 0, 3, 2});
+        wall.setTransform(Matrix.makeTranslation(0, 0, 25));
+        wall.setOccluder(true);
+        meshes.add(wall);
+
+        for (int i = 0; i < 12; i++) {
+
+            Mesh m = new Mesh();
+            m.setGeometry(shape.xs(), shape.ys(), shape.zs(), shape.indices());
+            m.setTransform(randomPlace(random));
+            m.setColor(new Color(random.nextInt(0xFFFFFF)));
+            meshes.add(m);
+
+        }
+
+        InstanceSet set = new InstanceSet(shape);
+        for (int i = 0; i < 20; i++)
+            set.add(randomPlace(random), random.nextInt(0xFFFFFF));
+
+        List<InstanceSet> instances = List.of(set);
+        Rectangle region = new Rectangle();
+        int skipped = 0, partial = 0, kept = 0;
+
+        for (int frame = 0; frame < FRAMES; frame++) {
+
+            // the first frame of all is drawn as it is; after that most frames change one thing, some nothing
+            int change = frame == 0 ? -1 : random.nextInt(8);
+            if (change == 0) {
+
+                Mesh m = meshes.get(1 + random.nextInt(12));
+                m.setTransform(Matrix.multiply(m.getTransform(), Matrix.makeTranslation(
+                               random.nextGaussian() * 0.3, random.nextGaussian() * 0.3, random.nextGaussian())));
+
+            } else if (change == 1) {
+
+                meshes.get(1 + random.nextInt(12)).setColor(new Color(random.nextInt(0xFFFFFF)));
+
+            } else if (change == 2) {
+
+                set.setTransform(random.nextInt(set.size()), randomPlace(random));
+
+            } else if (change == 3) {
+
+                set.setColor(random.nextInt(set.size()), random.nextInt(0xFFFFFF));
+
+            } else if (change == 4) {
+
+                // move a mesh out of sight, behind the camera or behind the wall
+                meshes.get(1 + random.nextInt(12)).setTransform(Matrix.makeTranslation(
+                           random.nextDouble() * 40 - 20, 0, random.nextBoolean() ? -5 : 40));
+
+            } else if (change == 5 && random.nextInt(4) == 0) {
+
+                wall.setTransform(Matrix.makeTranslation(random.nextGaussian(), 0, 25));
+
+            } else if (change == 6 && random.nextInt(4) == 0) {
+
+                // step the camera aside for one frame. Away from the origin its look direction keeps turning
+                // toward its position, which changes the view every frame, so it comes straight back
+                fullCamera.position.x = incrementalCamera.position.x = 0.2;
+
+            }
+
+            full.render(meshes, instances, fullCamera, world);
+            incremental.render(meshes, instances, incrementalCamera, world);
+            assertArrayEquals(full.pixels(), incremental.pixels(), "frame " + frame + " after change " + change);
+            fullCamera.position.x = incrementalCamera.position.x = 0;
+
+            incremental.lastDirtyRegion(region);
+            if (region.isEmpty()) {
+
+                skipped++;
+
+            } else if (region.width < WIDTH || region.height < HEIGHT) {
+
+                partial++;
+                kept += incremental.meshesKept();
+
+            }
+
+        }
+
+        // both shortcuts must actually have been taken for the comparison to mean anything
+        assertTrue(skipped > 0, "no frame was skipped");
+        assertTrue(partial > 0, "no frame was partly redrawn");
+        assertTrue(kept > 0, "no partial frame kept any mesh from the frame before");
+        assertEquals(skipped, incremental.framesSkipped());
+        assertEquals(0, full.framesSkipped());
+
+        full.shutdown();
+        incremental.shutdown();
+
+    }
+
+    private static Renderer renderer(boolean incremental, boolean subpixel, boolean painter) {
+
+        RenderSettings s = new RenderSettings();
+        s.width = WIDTH;
+        s.height = HEIGHT;
+        s.incremental = incremental;
+        s.subpixel = subpixel;
+        s.painterMode = painter;
+        return new Renderer(s);
+
+    }
+
+    /** Returns a translation somewhere in front of the camera, on either side of the wall. */
+    private static Matrix randomPlace(Random random) {
+
+        return Matrix.makeTranslation(random.nextDouble() * 30 - 15, random.nextDouble() * 20 - 10,
+                                      8 + random.nextDouble() * 40);
+
+    }
+
+}
@@ -0,0 +1,187 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// KernelsTest Class -- 3D Engine
+
+/*
+Checks that the vector kernels give exactly the results of the
+scalar ones, value for value: on vertex ranges whose length is not
+a multiple of the vector width, on pixel spans inside and outside
+triangles, including edge functions too large for the int lanes,
+and on clearing the frame. The build runs the tests with the
+jdk.incubator.vector module, so these always run.
+ */
+
+package raster;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class KernelsTest {
+
+    private final Kernels scalar = new Kernels();
+    private final Kernels vector = new VectorKernels();
+    private final Random random = new Random(3);
+
+    @Test
+    void vectorKernelsAreChosenWhenSupported() {
+
+        assertEquals(VectorKernels.isSupported(), Kernels.get() instanceof VectorKernels, Kernels.describe());
+
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void pointsMatch(boolean project) {
+
+        int n = 203;
+        float[] xs = randomFloats(n), ys = randomFloats(n), zs = randomFloats(n);
+        Matrix m = Matrix.multiply(Matrix.makeRotationY(0.7), Matrix.makeTranslation(3, -2, 9));
+        if (project)
+            m.m[3] = 0.37;
+
+        for (int trial = 0; trial < 200; trial++) {
+
+            // ranges of every length up to a few vectors, starting anywhere, so the tails vary
+            int start = random.nextInt(n), end = Math.min(n, start + random.nextInt(40));
+
+            double[][] expected = filled(4, n), actual = filled(4, n);
+            if (project) {
+
+                scalar.projectPoints(m, xs, ys, zs, start, end, expected[0], expected[1], expected[2], expected[3]);
+                vector.projectPoints(m, xs, ys, zs, start, end, actual[0], actual[1], actual[2], actual[3]);
+
+            } else {
+
+                scalar.transformPoints(m, xs, ys, zs, start, end, expected[0], expected[1], expected[2]);
+                vector.transformPoints(m, xs, ys, zs, start, end, actual[0], actual[1], actual[2]);
+
+            }
+
+            for (int c = 0; c < 4; c++)
+                assertArrayEquals(expected[c], actual[c], "component " + c + " of " + start + " to " + end);
+
+        }
+
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void fillSpansMatch(boolean depthTest) {
+
+        int[] colorA = new int[64], colorB = new int[64];
+        float[] depthA = randomFloats(64), depthB = depthA.clone();
+
+        for (int trial = 0; trial < 500; trial++) {
+
+            // full block rows and the short spans at the right edge of the screen
+            int count = random.nextBoolean() ? 8 : random.nextInt(9);
+            int index = random.nextInt(64 - count + 1);
+            float z = random.nextFloat() * 2 - 1, dz = (random.nextFloat() - 0.5f) * 0.1f;
+            int rgb = random.nextInt(0xFFFFFF);
+
+            scalar.fillSpan(colorA, depthA, index, count, z, dz, rgb, depthTest);
+            vector.fillSpan(colorB, depthB, index, count, z, dz, rgb, depthTest);
+            assertArrayEquals(colorA, colorB, "colors after span " + trial);
+            assertArrayEquals(depthA, depthB, "depths after span " + trial);
+
+        }
+
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void scanSpansMatch(boolean depthTest) {
+
+        int[] colorA = new int[64], colorB = new int[64];
+        float[] depthA = randomFloats(64), depthB = depthA.clone();
+
+        for (int trial = 0; trial < 2000; trial++) {
+
+            int count = random.nextInt(4) == 0 ? random.nextInt(9) : 8;
+            int index = random.nextInt(64 - count + 1);
+            long[] e = new long[3], a = new long[3];
+            for (int k = 0; k < 3; k++) {
+
+                // mostly edges that cross the span, some that reach past the range of an int
+                // and must take the scalar path, and some whose steps wrap when multiplied as ints
+                int kind = random.nextInt(4);
+                if (kind == 0) {
+
+                    e[k] = Integer.MAX_VALUE - random.nextInt(16);
+                    a[k] = random.nextInt(8);
+
+                } else if (kind == 1) {
+
+                    e[k] = Integer.MIN_VALUE + random.nextInt(16);
+                    a[k] = -random.nextInt(8);
+
+                } else if (kind == 2) {
+
+                    // every value along the span fits, but seven steps overflow an int
+                    long sign = random.nextBoolean() ? 1 : -1;
+                    e[k] = -sign * (2_000_000_000L + random.nextInt(1000));
+                    a[k] = sign * (500_000_000L + random.nextInt(1000));
+
+                } else {
+
+                    e[k] = random.nextInt(2000) - 1000;
+                    a[k] = random.nextInt(500) - 250;
+
+                }
+
+            }
+
+            float z = random.nextFloat() * 2 - 1, dz = (random.nextFloat() - 0.5f) * 0.1f;
+            int rgb = random.nextInt(0xFFFFFF);
+
+            scalar.scanSpan(colorA, depthA, index, count, e[0], e[1], e[2], a[0], a[1], a[2], z, dz, rgb, depthTest);
+            vector.scanSpan(colorB, depthB, index, count, e[0], e[1], e[2], a[0], a[1], a[2], z, dz, rgb, depthTest);
+            assertArrayEquals(colorA, colorB, "colors after span " + trial + " " + Arrays.toString(e) + " " + Arrays.toString(a));
+            assertArrayEquals(depthA, depthB, "depths after span " + trial);
+
+        }
+
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 7, 8, 63, 64, 1001, 301 * 203})
+    void clearsMatch(int size) {
+
+        int[] colorA = new int[size], colorB = new int[size];
+        float[] depthA = randomFloats(size), depthB = depthA.clone();
+
+        scalar.clear(colorA, 0x191919, depthA, Float.POSITIVE_INFINITY);
+        vector.clear(colorB, 0x191919, depthB, Float.POSITIVE_INFINITY);
+        assertArrayEquals(colorA, colorB);
+        assertArrayEquals(depthA, depthB);
+
+    }
+
+    private float[] randomFloats(int n) {
+
+        float[] values = new float[n];
+        for (int i = 0; i < n; i++)
+            values[i] = (float) random.nextGaussian() * 10;
+
+        return values;
+
+    }
+
+    /** Returns arrays of n values that no kernel writes, so untouched entries are compared too. */
+    private static double[][] filled(int arrays, int n) {
+
+        double[][] values = new double[arrays][n];
+        for (double[] a : values)
+            Arrays.fill(a, -12345.0);
+
+        return values;
+
+    }
+
+}
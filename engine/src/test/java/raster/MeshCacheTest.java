@@ -0,0 +1,185 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// MeshCacheTest Class -- 3D Engine
+
+/*
+Checks that a MeshCache file gives back exactly the geometry,
+normals, bounds, and detail levels that were saved, and that it
+stops being used once the .obj beside it changes.
+ */
+
+package raster;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class MeshCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private Path source;
+
+    @BeforeEach
+    void writeSource() throws IOException {
+
+        // a bumpy grid with enough triangles to be given detail levels
+        StringBuilder obj = new StringBuilder();
+        int n = 41;
+        for (int y = 0; y < n; y++)
+            for (int x = 0; x < n; x++)
+                obj.append("v ").append(x).append(' ').append(y).append(' ').append((x * 7 + y * 3) % 5 * 0.1).append('\n');
+
+        for (int y = 0; y < n - 1; y++) {
+
+            for (int x = 0; x < n - 1; x++) {
+
+                int v = y * n + x + 1;
+                obj.append("f ").append(v).append(' ').append(v + 1).append(' ').append(v + n + 1)
+                   .append(' ').append(v + n).append('\n');
+
+            }
+
+        }
+
+        source = dir.resolve("grid.obj");
+        Files.write(source, obj.toString().getBytes(StandardCharsets.US_ASCII));
+
+    }
+
+    @Test
+    void roundTripsGeometryNormalsBoundsAndLevels() throws IOException {
+
+        Mesh parsed = new Mesh();
+        assertTrue(parsed.loadFromFile(source.toString()));
+        assertTrue(Files.isRegularFile(MeshCache.cacheFileFor(source)));
+        assertTrue(parsed.lodCount() > 1);
+
+        Mesh cached = new Mesh();
+        assertTrue(new MeshCache().load(source, cached));
+
+        assertEquals(parsed.lodCount(), cached.lodCount());
+        for (int level = 0; level < parsed.lodCount(); level++)
+            assertSameGeometry(parsed.lod(level), cached.lod(level));
+
+    }
+
+    @Test
+    void ignoresTheCacheOnceTheSourceTimeChanges() throws IOException {
+
+        assertTrue(new Mesh().loadFromFile(source.toString()));
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 5000));
+
+        assertFalse(new MeshCache().load(source, new Mesh()));
+
+    }
+
+    @Test
+    void ignoresTheCacheOnceTheSourceSizeChanges() throws IOException {
+
+        assertTrue(new Mesh().loadFromFile(source.toString()));
+        FileTime time = Files.getLastModifiedTime(source);
+        Files.write(source, "# one more line\n".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(source, time);
+
+        assertFalse(new MeshCache().load(source, new Mesh()));
+
+    }
+
+    @Test
+    void onlyTheHashCatchesAnEditKeepingSizeAndTime() throws IOException {
+
+        assertTrue(new Mesh().loadFromFile(source.toString()));
+        FileTime time = Files.getLastModifiedTime(source);
+        byte[] bytes = Files.readAllBytes(source);
+        bytes[2] = (byte)(bytes[2] == '0' ? '1' : '0');
+        Files.write(source, bytes);
+        Files.setLastModifiedTime(source, time);
+
+        assertTrue(new MeshCache(false).load(source, new Mesh()));
+        assertFalse(new MeshCache(true).load(source, new Mesh()));
+
+    }
+
+    @Test
+    void aTruncatedCacheIsAMiss() throws IOException {
+
+        Mesh parsed = new Mesh();
+        assertTrue(parsed.loadFromFile(source.toString()));
+        Path cache = MeshCache.cacheFileFor(source);
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.WRITE)) {
+
+            channel.truncate(Files.size(cache) - 4);
+
+        }
+
+        assertFalse(new MeshCache().load(source, new Mesh()));
+
+        // loading falls back to the .obj and writes a fresh cache
+        Mesh reloaded = new Mesh();
+        assertTrue(reloaded.loadFromFile(source.toString()));
+        assertSameGeometry(parsed, reloaded);
+        assertTrue(new MeshCache().load(source, new Mesh()));
+
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-1, 41 * 41, Integer.MAX_VALUE})
+    void anIndexOutOfRangeIsAMiss(int index) throws IOException {
+
+        Mesh parsed = new Mesh();
+        assertTrue(parsed.loadFromFile(source.toString()));
+
+        // every size in the file still matches, only one index of the full detail mesh points nowhere
+        Path cache = MeshCache.cacheFileFor(source);
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.WRITE)) {
+
+            ByteBuffer value = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, index);
+            channel.write(value, 64 + 12L * parsed.vertexCount() + 4L * 100);
+
+        }
+
+        assertFalse(new MeshCache().load(source, new Mesh()));
+
+        // loading falls back to the .obj and writes a fresh cache
+        Mesh reloaded = new Mesh();
+        assertTrue(reloaded.loadFromFile(source.toString()));
+        assertSameGeometry(parsed, reloaded);
+        assertTrue(new MeshCache().load(source, new Mesh()));
+
+    }
+
+    private static void assertSameGeometry(Mesh expected, Mesh actual) {
+
+        assertArrayEquals(expected.xs(), actual.xs());
+        assertArrayEquals(expected.ys(), actual.ys());
+        assertArrayEquals(expected.zs(), actual.zs());
+        assertArrayEquals(expected.indices(), actual.indices());
+        assertArrayEquals(expected.normalXs(), actual.normalXs());
+        assertArrayEquals(expected.normalYs(), actual.normalYs());
+        assertArrayEquals(expected.normalZs(), actual.normalZs());
+
+        Bounds a = expected.bounds(), b = actual.bounds();
+        assertArrayEquals(new float[] {a.minX, a.minY, a.minZ, a.maxX, a.maxY, a.maxZ, a.centerX, a.centerY, a.centerZ, a.radius},
+                          new float[] {b.minX, b.minY, b.minZ, b.maxX, b.maxY, b.maxZ, b.centerX, b.centerY, b.centerZ, b.radius});
+
+    }
+
+}
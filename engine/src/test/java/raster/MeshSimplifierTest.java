@@ -0,0 +1,145 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// MeshSimplifierTest Class -- 3D Engine
+
+/*
+Checks that MeshSimplifier reduces a closed mesh to about the number
+of triangles asked for, and that a Mesh does not switch between detail
+levels while its screen area stays inside the LOD_HYSTERESIS margin.
+ */
+
+package raster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class MeshSimplifierTest {
+
+    private Mesh sphere;
+
+    @BeforeEach
+    void buildSphere() {
+
+        // 2 * 100 * 99 = 19800 triangles, enough for several detail levels
+        sphere = TestMeshes.sphere(100, 100);
+
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10000, 4000, 1000, 200})
+    void simplifyLandsNearTheTarget(int target) {
+
+        Mesh out = new Mesh();
+        new MeshSimplifier().simplify(sphere.xs(), sphere.ys(), sphere.zs(), sphere.indices(), target, out);
+
+        // each collapse removes two triangles, so the count can stop a little under the target
+        int count = out.triangleCount();
+        assertTrue(count <= target && count >= target * 0.95, "asked for " + target + " triangles, got " + count);
+
+        // the result should still be a sphere: every vertex near the unit radius, every index in range
+        for (int v = 0; v < out.vertexCount(); v++) {
+
+            double radius = Math.sqrt(out.xs()[v] * out.xs()[v] + out.ys()[v] * out.ys()[v] + out.zs()[v] * out.zs()[v]);
+            assertEquals(1.0, radius, 0.1, "vertex " + v);
+
+        }
+
+        for (int i : out.indices())
+            assertTrue(i >= 0 && i < out.vertexCount());
+
+    }
+
+    @Test
+    void buildLodsHalvesEachLevel() {
+
+        sphere.buildLods();
+        assertTrue(sphere.lodCount() > 2, "only " + sphere.lodCount() + " levels");
+
+        for (int level = 1; level < sphere.lodCount(); level++) {
+
+            int previous = sphere.lod(level - 1).triangleCount();
+            int count = sphere.lod(level).triangleCount();
+            assertTrue(count <= previous / 2 && count >= previous / 2 * 0.95,
+                       "level " + level + " has " + count + " triangles after " + previous);
+
+        }
+
+    }
+
+    @Test
+    void levelsStayInsideTheFullBounds() {
+
+        // collapses on a convex surface put merged vertices outside it, past the bounds of the full Mesh
+        sphere.buildLods();
+        Bounds full = sphere.bounds();
+        for (int level = 1; level < sphere.lodCount(); level++) {
+
+            Mesh lod = sphere.lod(level);
+            for (int v = 0; v < lod.vertexCount(); v++) {
+
+                float x = lod.xs()[v], y = lod.ys()[v], z = lod.zs()[v];
+                assertTrue(x >= full.minX && x <= full.maxX && y >= full.minY && y <= full.maxY
+                           && z >= full.minZ && z <= full.maxZ, "level " + level + " vertex " + v + " is outside the box");
+
+                double dx = x - full.centerX, dy = y - full.centerY, dz = z - full.centerZ;
+                assertTrue(Math.sqrt(dx * dx + dy * dy + dz * dz) <= full.radius,
+                           "level " + level + " vertex " + v + " is outside the sphere");
+
+            }
+
+        }
+
+    }
+
+    @Test
+    void selectLodHoldsInsideTheMargin() {
+
+        sphere.buildLods();
+        for (int level = 1; level < sphere.lodCount(); level++) {
+
+            double count = sphere.lod(level).triangleCount();
+
+            // the area at which the level has just enough triangles, and the area at which it also has the margin
+            double enough = count * Mesh.PIXELS_PER_TRIANGLE;
+            double spare = enough / (1 + Mesh.LOD_HYSTERESIS);
+
+            // coming from the finer level, the coarser one is only taken once the margin is there
+            assertEquals(level - 1, sphere.selectLod(enough * 0.99, level - 1));
+            assertEquals(level - 1, sphere.selectLod(spare * 1.01, level - 1));
+            assertEquals(level, sphere.selectLod(spare * 0.99, level - 1));
+
+            // coming from the coarser level, it is kept all the way up to where it stops being enough
+            assertEquals(level, sphere.selectLod(spare * 1.01, level));
+            assertEquals(level, sphere.selectLod(enough * 0.99, level));
+            assertEquals(level - 1, sphere.selectLod(enough * 1.01, level));
+
+        }
+
+    }
+
+    @Test
+    void updateLodDoesNotFlickerNearAThreshold() {
+
+        sphere.buildLods();
+        double enough = sphere.lod(2).triangleCount() * Mesh.PIXELS_PER_TRIANGLE;
+        double spare = enough / (1 + Mesh.LOD_HYSTERESIS);
+
+        // settle on level 1, then wobble the area around the point where level 2 becomes enough
+        sphere.updateLod(enough * 1.01);
+        assertEquals(1, sphere.updateLod(enough * 1.01));
+        for (int frame = 0; frame < 20; frame++)
+            assertEquals(1, sphere.updateLod(frame % 2 == 0 ? enough * 0.98 : enough * 1.02));
+
+        // once the margin is reached the level drops, and wobbling inside the margin keeps it there
+        assertEquals(2, sphere.updateLod(spare * 0.99));
+        for (int frame = 0; frame < 20; frame++)
+            assertEquals(2, sphere.updateLod(frame % 2 == 0 ? spare * 1.02 : enough * 0.98));
+
+    }
+
+}
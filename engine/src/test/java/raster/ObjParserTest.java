@@ -0,0 +1,139 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// ObjParserTest Class -- 3D Engine
+
+/*
+Checks the face forms ObjParser accepts, that polygons are split
+into fans and relative indexes resolved, that faces naming
+missing vertices are rejected, and that a file parsed in
+parallel chunks comes out the same as one parsed whole.
+ */
+
+package raster;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ObjParserTest {
+
+    private static final String SQUARE = "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void splitsQuadsIntoFans() throws IOException {
+
+        Mesh mesh = parse(SQUARE + "f 1 2 3 4\n");
+
+        assertEquals(4, mesh.vertexCount());
+        assertArrayEquals(new int[] {0, 1, 2, 0, 2, 3}, mesh.indices());
+        assertArrayEquals(new float[] {0, 1, 1, 0}, mesh.xs());
+        assertArrayEquals(new float[] {0, 0, 1, 1}, mesh.ys());
+
+    }
+
+    @Test
+    void resolvesNegativeIndexesFromTheCurrentVertex() throws IOException {
+
+        // each relative index counts back from the vertices read so far, not from the end of the file
+        Mesh mesh = parse("v 0 0 0\nv 1 0 0\nv 1 1 0\nf -3 -2 -1\nv 0 1 0\nf -4 -2 -1\n");
+
+        assertArrayEquals(new int[] {0, 1, 2, 0, 2, 3}, mesh.indices());
+
+    }
+
+    @Test
+    void ignoresTextureAndNormalIndexes() throws IOException {
+
+        String attributes = "vt 0 0\nvt 1 0\nvt 1 1\nvn 0 0 1\n";
+        int[] expected = {0, 1, 2};
+
+        assertArrayEquals(expected, parse(SQUARE + attributes + "f 1/1/1 2/2/1 3/3/1\n").indices());
+        assertArrayEquals(expected, parse(SQUARE + attributes + "f 1//1 2//1 3//1\n").indices());
+        assertArrayEquals(expected, parse(SQUARE + attributes + "f 1/1 2/2 3/3\n").indices());
+        assertArrayEquals(expected, parse(SQUARE + attributes + "f -4/-3/-1 -3/-2/-1 -2/-1/-1\n").indices());
+
+    }
+
+    @Test
+    void rejectsIndexesPastTheLastVertex() {
+
+        assertThrows(IOException.class, () -> parse(SQUARE + "f 1 2 5\n"));
+
+    }
+
+    @Test
+    void rejectsIndexZeroAndRelativeIndexesBeforeTheFirstVertex() {
+
+        assertThrows(IOException.class, () -> parse(SQUARE + "f 0 1 2\n"));
+        assertThrows(IOException.class, () -> parse(SQUARE + "f -5 -2 -1\n"));
+
+    }
+
+    @Test
+    void parallelChunksMatchASingleChunk() throws IOException {
+
+        // large enough to be split, with relative indexes reaching back across chunk boundaries
+        StringBuilder obj = new StringBuilder();
+        int n = 0;
+        while (obj.length() < 3 * ObjParser.MIN_CHUNK_SIZE) {
+
+            obj.append("v ").append(n * 0.5).append(' ').append(-n).append(" 1.25e-1\n");
+            n++;
+            if (n >= 3)
+                obj.append(n % 2 == 0 ? "f -3 -2 -1\n" : "f " + (n - 2) + " " + (n - 1) + " " + n + "\n");
+
+        }
+
+        Path file = write(obj.toString());
+        Mesh serial = new Mesh(), parallel = new Mesh();
+        new ObjParser(null).load(file, serial);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+
+            new ObjParser(pool).load(file, parallel);
+
+        } finally {
+
+            pool.shutdown();
+
+        }
+
+        assertEquals(n, serial.vertexCount());
+        assertArrayEquals(serial.xs(), parallel.xs());
+        assertArrayEquals(serial.ys(), parallel.ys());
+        assertArrayEquals(serial.zs(), parallel.zs());
+        assertArrayEquals(serial.indices(), parallel.indices());
+        for (int t = 0; t < serial.triangleCount(); t++)
+            assertArrayEquals(new int[] {t, t + 1, t + 2}, Arrays.copyOfRange(serial.indices(), 3 * t, 3 * t + 3));
+
+    }
+
+    private Mesh parse(String obj) throws IOException {
+
+        Mesh mesh = new Mesh();
+        new ObjParser(null).load(write(obj), mesh);
+        return mesh;
+
+    }
+
+    private Path write(String obj) throws IOException {
+
+        Path file = Files.createTempFile(dir, "mesh", ".obj");
+        Files.write(file, obj.getBytes(StandardCharsets.US_ASCII));
+        return file;
+
+    }
+
+}
@@ -0,0 +1,110 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// RasterizerTest Class -- 3D Engine
+
+/*
+Checks that rasterizing a buffer of triangles in parallel tiles
+gives exactly the pixels and depths of drawing it on one thread,
+with and without the depth test and in both snapping modes.
+ */
+
+package raster;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class RasterizerTest {
+
+    // an odd size, so the last row and column of tiles are partial
+    private static final int WIDTH = 301, HEIGHT = 203;
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void startPool() {
+
+        pool = new ForkJoinPool(4);
+
+    }
+
+    @AfterAll
+    static void stopPool() {
+
+        pool.shutdown();
+
+    }
+
+    @ParameterizedTest
+    @CsvSource({"true, false", "false, false", "true, true", "false, true"})
+    void tiledMatchesSerial(boolean depthTest, boolean subpixel) {
+
+        TriangleBuffer tris = randomTriangles(2000, 42);
+
+        Rasterizer serial = rasterizer(null, depthTest, subpixel);
+        serial.drawTriangles(tris);
+
+        Rasterizer tiled = rasterizer(pool, depthTest, subpixel);
+        tiled.drawTriangles(tris);
+
+        assertTrue(countNot(serial.colorBuffer(), 0) > WIDTH * HEIGHT / 2, "too little of the frame was drawn");
+        assertArrayEquals(serial.colorBuffer(), tiled.colorBuffer());
+        assertArrayEquals(serial.depthBuffer(), tiled.depthBuffer());
+
+    }
+
+    private static Rasterizer rasterizer(ForkJoinPool p, boolean depthTest, boolean subpixel) {
+
+        Rasterizer r = new Rasterizer(WIDTH, HEIGHT, new int[WIDTH * HEIGHT]);
+        r.setPool(p);
+        r.setDepthTest(depthTest);
+        r.setSubpixel(subpixel);
+        r.clear(0);
+        return r;
+
+    }
+
+    /** Makes triangles of every size, some reaching off screen, with overlapping depths. */
+    private static TriangleBuffer randomTriangles(int n, long seed) {
+
+        Random random = new Random(seed);
+        TriangleBuffer tris = new TriangleBuffer();
+        for (int t = 0; t < n; t++) {
+
+            float size = t % 50 == 0 ? 400 : 5 + random.nextFloat() * 60;
+            float cx = random.nextFloat() * (WIDTH + 40) - 20, cy = random.nextFloat() * (HEIGHT + 40) - 20;
+            float[] v = new float[9];
+            for (int k = 0; k < 3; k++) {
+
+                v[3 * k] = cx + (random.nextFloat() - 0.5f) * size;
+                v[3 * k + 1] = cy + (random.nextFloat() - 0.5f) * size;
+                v[3 * k + 2] = random.nextFloat();
+
+            }
+
+            tris.add(v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8], 1 + random.nextInt(0xFFFFFF));
+
+        }
+
+        return tris;
+
+    }
+
+    private static int countNot(int[] values, int value) {
+
+        int n = 0;
+        for (int v : values)
+            if (v != value)
+                n++;
+
+        return n;
+
+    }
+
+}
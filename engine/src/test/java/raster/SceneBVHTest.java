@@ -0,0 +1,241 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// SceneBVHTest Class -- 3D Engine
+
+/*
+Checks SceneBVH's frustum culling and raycasting against testing
+every object, on a scene of randomly placed, turned, and scaled
+meshes, before and after some of them move.
+ */
+
+package raster;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SceneBVHTest {
+
+    private final Random random = new Random(12);
+    private List<Mesh> meshes;
+    private SceneBVH scene;
+
+    @BeforeEach
+    void buildScene() {
+
+        meshes = new ArrayList<Mesh>();
+        for (int i = 0; i < 300; i++) {
+
+            Mesh mesh = tetrahedron();
+            mesh.setTransform(randomPlacement());
+            meshes.add(mesh);
+
+        }
+
+        scene = new SceneBVH(meshes);
+
+    }
+
+    @Test
+    void cullMatchesTestingEveryObject() {
+
+        int seen = 0;
+        for (int view = 0; view < 50; view++)
+            seen += assertCullMatches(randomFrustum());
+
+        // the views should see some objects but not all of them
+        assertTrue(seen > 0 && seen < 50 * meshes.size(), "the views saw " + seen + " objects");
+
+    }
+
+    @Test
+    void cullMatchesAfterObjectsMove() {
+
+        for (int i = 0; i < meshes.size(); i += 3) {
+
+            meshes.get(i).setTransform(randomPlacement());
+            scene.refit(i);
+
+        }
+
+        for (int view = 0; view < 20; view++)
+            assertCullMatches(randomFrustum());
+
+        for (Mesh mesh : meshes)
+            mesh.setTransform(randomPlacement());
+
+        scene.refit();
+        for (int view = 0; view < 20; view++)
+            assertCullMatches(randomFrustum());
+
+    }
+
+    @Test
+    void raycastMatchesTestingEveryTriangle() {
+
+        int hits = 0;
+        RayHit hit = new RayHit();
+        for (int ray = 0; ray < 2000; ray++) {
+
+            double ox = random.nextGaussian() * 30, oy = random.nextGaussian() * 30, oz = random.nextGaussian() * 30;
+            double dx = -ox + random.nextGaussian() * 20, dy = -oy + random.nextGaussian() * 20;
+            double dz = -oz + random.nextGaussian() * 20;
+
+            double expected = bruteForceRaycast(ox, oy, oz, dx, dy, dz);
+            boolean found = scene.raycast(ox, oy, oz, dx, dy, dz, hit);
+
+            assertEquals(expected < Double.POSITIVE_INFINITY, found, "ray " + ray);
+            if (found) {
+
+                hits++;
+                assertEquals(expected, hit.distance, 1e-9 * Math.max(1, expected), "ray " + ray);
+                assertEquals(meshes.get(hit.object), hit.mesh);
+
+            }
+
+        }
+
+        assertTrue(hits > 100, "too few rays hit anything to be a fair test");
+
+    }
+
+    /** Checks one frustum and returns how many objects it sees. */
+    private int assertCullMatches(Frustum frustum) {
+
+        int[] visible = new int[meshes.size()];
+        int count = scene.cull(frustum, visible);
+        int[] found = Arrays.copyOf(visible, count);
+        Arrays.sort(found);
+
+        int[] expected = new int[meshes.size()];
+        int n = 0;
+        for (int i = 0; i < meshes.size(); i++) {
+
+            float[] box = worldBox(meshes.get(i));
+            if (frustum.intersectsBox(box[0], box[1], box[2], box[3], box[4], box[5]))
+                expected[n++] = i;
+
+        }
+
+        assertArrayEquals(Arrays.copyOf(expected, n), found);
+        return n;
+
+    }
+
+    /** Returns the box around a Mesh's bounds placed by its transform, rounded outward as SceneBVH rounds it. */
+    private static float[] worldBox(Mesh mesh) {
+
+        double[] m = mesh.getTransform().m;
+        Bounds b = mesh.bounds();
+        float[] box = new float[6];
+        for (int col = 0; col < 3; col++) {
+
+            double lo = m[12 + col], hi = lo;
+            double[] products = {m[col] * b.minX, m[col] * b.maxX, m[4 + col] * b.minY, m[4 + col] * b.maxY,
+                                 m[8 + col] * b.minZ, m[8 + col] * b.maxZ};
+            for (int k = 0; k < 6; k += 2) {
+
+                lo += Math.min(products[k], products[k + 1]);
+                hi += Math.max(products[k], products[k + 1]);
+
+            }
+
+            box[col] = Math.nextDown((float)lo);
+            box[3 + col] = Math.nextUp((float)hi);
+
+        }
+
+        return box;
+
+    }
+
+    /** Returns the distance to the nearest triangle of any Mesh along a ray, tested in world space. */
+    private double bruteForceRaycast(double ox, double oy, double oz, double dx, double dy, double dz) {
+
+        double nearest = Double.POSITIVE_INFINITY;
+        for (Mesh mesh : meshes) {
+
+            double[] m = mesh.getTransform().m;
+            int[] indices = mesh.indices();
+            double[] p = new double[9];
+            for (int t = 0; t < mesh.triangleCount(); t++) {
+
+                for (int k = 0; k < 3; k++) {
+
+                    int v = indices[3 * t + k];
+                    double x = mesh.xs()[v], y = mesh.ys()[v], z = mesh.zs()[v];
+                    p[3 * k]     = x * m[0] + y * m[4] + z * m[8]  + m[12];
+                    p[3 * k + 1] = x * m[1] + y * m[5] + z * m[9]  + m[13];
+                    p[3 * k + 2] = x * m[2] + y * m[6] + z * m[10] + m[14];
+
+                }
+
+                nearest = Math.min(nearest, intersect(p, ox, oy, oz, dx, dy, dz));
+
+            }
+
+        }
+
+        return nearest;
+
+    }
+
+    /** Returns the distance along a ray to a triangle, or infinity if the ray misses it. */
+    private static double intersect(double[] p, double ox, double oy, double oz, double dx, double dy, double dz) {
+
+        double e1x = p[3] - p[0], e1y = p[4] - p[1], e1z = p[5] - p[2];
+        double e2x = p[6] - p[0], e2y = p[7] - p[1], e2z = p[8] - p[2];
+        double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        if (det == 0)
+            return Double.POSITIVE_INFINITY;
+
+        double sx = ox - p[0], sy = oy - p[1], sz = oz - p[2];
+        double u = (sx * px + sy * py + sz * pz) / det;
+        double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+        double v = (dx * qx + dy * qy + dz * qz) / det;
+        double t = (e2x * qx + e2y * qy + e2z * qz) / det;
+        return u >= 0 && v >= 0 && u + v <= 1 && t >= 0 ? t : Double.POSITIVE_INFINITY;
+
+    }
+
+    private Matrix randomPlacement() {
+
+        double scale = 0.5 + random.nextDouble() * 2;
+        Matrix m = Matrix.multiply(Matrix.makeRotationY(random.nextDouble() * 6.3),
+                                   Matrix.makeRotationX(random.nextDouble() * 6.3));
+        for (int i = 0; i < 12; i++)
+            m.m[i] *= scale;
+
+        return Matrix.multiply(m, Matrix.makeTranslation(random.nextGaussian() * 25, random.nextGaussian() * 25,
+                                                         random.nextGaussian() * 25));
+
+    }
+
+    private Frustum randomFrustum() {
+
+        Vector eye = new Vector(random.nextGaussian() * 20, random.nextGaussian() * 20, random.nextGaussian() * 20);
+        Vector target = new Vector(random.nextGaussian() * 10, random.nextGaussian() * 10, random.nextGaussian() * 10);
+        Matrix view = Matrix.makeLookAt(eye, target, new Vector(0, 1, 0));
+        Matrix projection = Matrix.makeProjection(60 + random.nextDouble() * 40, 0.75, 0.1, 20 + random.nextDouble() * 60);
+        return new Frustum().set(Matrix.multiply(view, projection));
+
+    }
+
+    private static Mesh tetrahedron() {
+
+        Mesh mesh = new Mesh();
+        mesh.setGeometry(new float[] {0, 1, 0, 0}, new float[] {0, 0, 1, 0}, new float[] {0, 0, 0, 1},
+                         new int[] {0, 2, 1, 0, 1, 3, 0, 3, 2, 1, 2, 3});
+        return mesh;
+
+    }
+
+}
@@ -0,0 +1,81 @@
+// Adam Rilatt
+// 10 / 17 / 26
+// TestMeshes Class -- 3D Engine
+
+/*
+This class builds the meshes the tests share, in memory, so that
+tests need no asset files and every test draws or simplifies the
+same shapes.
+ */
+
+package raster;
+
+final class TestMeshes {
+
+    private TestMeshes() {
+
+    }
+
+    /** Returns a closed unit sphere centered on the origin, with the given number of rings from pole to pole
+     *  and segments around. It has 2 * segments * (rings - 1) triangles, wound consistently. */
+    static Mesh sphere(int rings, int segments) {
+
+        int n = (rings - 1) * segments + 2;
+        float[] xs = new float[n], ys = new float[n], zs = new float[n];
+        for (int r = 1; r < rings; r++) {
+
+            double phi = Math.PI * r / rings;
+            for (int s = 0; s < segments; s++) {
+
+                double theta = 2 * Math.PI * s / segments;
+                int v = (r - 1) * segments + s;
+                xs[v] = (float) (Math.sin(phi) * Math.cos(theta));
+                ys[v] = (float) Math.cos(phi);
+                zs[v] = (float) (Math.sin(phi) * Math.sin(theta));
+
+            }
+
+        }
+
+        // the poles are single vertices, fanned to the first and last rings
+        int top = n - 2, bottom = n - 1;
+        ys[top] = 1;
+        ys[bottom] = -1;
+
+        int[] indices = new int[6 * segments * (rings - 1)];
+        int at = 0;
+        for (int s = 0; s < segments; s++) {
+
+            int next = (s + 1) % segments, last = (rings - 2) * segments;
+            indices[at++] = top;
+            indices[at++] = next;
+            indices[at++] = s;
+            indices[at++] = bottom;
+            indices[at++] = last + s;
+            indices[at++] = last + next;
+
+        }
+
+        for (int r = 0; r < rings - 2; r++) {
+
+            for (int s = 0; s < segments; s++) {
+
+                int a = r * segments + s, b = r * segments + (s + 1) % segments;
+                indices[at++] = a;
+                indices[at++] = b;
+                indices[at++] = b + segments;
+                indices[at++] = a;
+                indices[at++] = b + segments;
+                indices[at++] = a + segments;
+
+            }
+
+        }
+
+        Mesh m = new Mesh();
+        m.setGeometry(xs, ys, zs, indices);
+        return m;
+
+    }
+
+}